@@ -0,0 +1,59 @@
+package com.delinea.server.spring;
+
+/**
+ * JSON payloads shaped like the responses of Secret Server and Platform, used
+ * by the benchmarks.
+ */
+final class BenchmarkPayloads {
+    private BenchmarkPayloads() {
+    }
+
+    /**
+     * @param fields the number of items of the secret
+     * @return a {@code GET /api/v1/secrets/{id}} response body
+     */
+    static String secret(int id, int fields) {
+        final StringBuilder json = new StringBuilder(256 + fields * 256)
+                .append("{\"id\":").append(id)
+                .append(",\"name\":\"benchmark-").append(id).append('"')
+                .append(",\"secretTemplateId\":6001,\"secretTemplateName\":\"Password\",\"folderId\":12,\"siteId\":1")
+                .append(",\"active\":true,\"checkedOut\":false,\"checkoutEnabled\":false")
+                .append(",\"lastHeartBeatStatus\":\"Success\",\"lastHeartBeatCheck\":\"2024-01-01T00:00:00\"")
+                .append(",\"lastPasswordChangeAttempt\":\"2024-01-01T00:00:00\",\"items\":[");
+        for (int i = 0; i < fields; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"itemId\":").append(i + 1)
+                    .append(",\"fieldId\":").append(100 + i)
+                    .append(",\"fileAttachmentId\":0")
+                    .append(",\"fieldDescription\":\"Description of field ").append(i).append('"')
+                    .append(",\"fieldName\":\"Field ").append(i).append('"')
+                    .append(",\"slug\":\"field-").append(i).append('"')
+                    .append(",\"itemValue\":\"value-").append(i).append("-0123456789abcdef\"")
+                    .append(",\"isFile\":false,\"isPassword\":").append(i == 0)
+                    .append(",\"isNotes\":false,\"filename\":null}");
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * @param vaults the number of vaults
+     * @return a {@code GET /vaultbroker/api/vaults} response body
+     */
+    static String vaults(int vaults) {
+        final StringBuilder json = new StringBuilder(64 + vaults * 256).append("{\"vaults\":[");
+        for (int i = 0; i < vaults; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"vaultId\":\"").append(i).append("-2b1c-4f5e-9d8a-000000000000\"")
+                    .append(",\"name\":\"Vault ").append(i).append('"')
+                    .append(",\"type\":\"SecretServer\",\"isDefault\":").append(i == 0)
+                    .append(",\"isGlobalDefault\":").append(i == 0)
+                    .append(",\"isActive\":true,\"connection\":{\"url\":\"https://vault").append(i)
+                    .append(".example.com/SecretServer\",\"oAuthProfileId\":\"profile-").append(i).append("\"}}");
+        }
+        return json.append("]}").toString();
+    }
+}
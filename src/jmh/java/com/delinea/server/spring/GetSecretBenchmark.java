@@ -0,0 +1,104 @@
+package com.delinea.server.spring;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.client.InterceptingClientHttpRequestFactory;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+
+import com.delinea.server.spring.SecretServerFactoryBean.AccessGrant;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * End-to-end {@link SecretServer#getSecret(int, boolean)} against an in-process
+ * stub server, through the same pooled transport and interceptor chain that
+ * {@link SecretServerFactoryBean} sets up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class GetSecretBenchmark {
+    @Param({ "10" })
+    int fields;
+
+    private HttpServer server;
+    private HttpTransport transport;
+    private TokenManager tokenManager;
+    private SecretServer secretServer;
+
+    @Setup
+    public void setUp() throws Exception {
+        final byte[] body = BenchmarkPayloads.secret(1, fields).getBytes(StandardCharsets.UTF_8);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+        server.setExecutor(Executors.newFixedThreadPool(16));
+        server.createContext("/api/v1/secrets/", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            } catch (IOException e) {
+                // client went away
+            }
+        });
+        server.start();
+
+        final AccessGrant grant = new ObjectMapper().readValue("{\"access_token\":\"token\",\"expires_in\":3600}",
+                AccessGrant.class);
+        tokenManager = new TokenManager(new TokenManager.TokenSource() {
+            @Override
+            public AccessGrant authenticate() {
+                return grant;
+            }
+
+            @Override
+            public AccessGrant refresh(String refreshToken) {
+                return grant;
+            }
+        }, Duration.ofSeconds(60));
+        tokenManager.start();
+
+        transport = new HttpTransport(new HttpTransport.Settings());
+        secretServer = new SecretServer();
+        secretServer.setAutoComment("");
+        secretServer.setUriTemplateHandler(new DefaultUriBuilderFactory(
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v1"));
+        secretServer.setRequestFactory(new InterceptingClientHttpRequestFactory(transport.getRequestFactory(),
+                List.of(new AuthInterceptor(tokenManager))));
+    }
+
+    @TearDown
+    public void tearDown() {
+        transport.close();
+        tokenManager.close();
+        server.stop(0);
+    }
+
+    @Benchmark
+    public Secret getSecret() {
+        return secretServer.getSecret(1, false);
+    }
+}
@@ -0,0 +1,58 @@
+package com.delinea.server.spring;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.delinea.platform.model.VaultsResponseModel;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Jackson deserialization of {@link Secret} and {@link VaultsResponseModel}
+ * payloads of different sizes, using an {@link ObjectMapper} configured the way
+ * {@link org.springframework.web.client.RestTemplate} configures its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+    @Param({ "1", "10", "100" })
+    int size;
+
+    private ObjectMapper objectMapper;
+    private byte[] secret;
+    private byte[] vaults;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        secret = BenchmarkPayloads.secret(1, size).getBytes(StandardCharsets.UTF_8);
+        vaults = BenchmarkPayloads.vaults(size).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Secret deserializeSecret() throws IOException {
+        return objectMapper.readValue(secret, Secret.class);
+    }
+
+    @Benchmark
+    public VaultsResponseModel deserializeVaults() throws IOException {
+        return objectMapper.readValue(vaults, VaultsResponseModel.class);
+    }
+}
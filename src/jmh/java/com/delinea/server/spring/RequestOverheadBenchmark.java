@@ -0,0 +1,140 @@
+package com.delinea.server.spring;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.delinea.server.spring.SecretServerFactoryBean.AccessGrant;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The per-request work {@link SecretServer#getSecret(int, boolean)} does before
+ * any I/O: building the URI and running the {@link AuthInterceptor}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestOverheadBenchmark {
+    private static final ClientHttpResponse OK = new ClientHttpResponse() {
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return HttpStatus.OK;
+        }
+
+        @Override
+        public String getStatusText() {
+            return "OK";
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return HttpHeaders.EMPTY;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private DefaultUriBuilderFactory uriBuilderFactory;
+    private TokenManager tokenManager;
+    private AuthInterceptor authInterceptor;
+    private ClientHttpRequestExecution execution;
+    private URI uri;
+
+    @Setup
+    public void setUp() throws Exception {
+        uriBuilderFactory = new DefaultUriBuilderFactory("https://vault.example.com/SecretServer/api/v1");
+        final AccessGrant grant = new ObjectMapper().readValue(
+                "{\"access_token\":\"" + "x".repeat(600) + "\",\"expires_in\":3600}", AccessGrant.class);
+        tokenManager = new TokenManager(new TokenManager.TokenSource() {
+            @Override
+            public AccessGrant authenticate() {
+                return grant;
+            }
+
+            @Override
+            public AccessGrant refresh(String refreshToken) {
+                return grant;
+            }
+        }, Duration.ofSeconds(60));
+        tokenManager.start();
+        authInterceptor = new AuthInterceptor(tokenManager);
+        execution = (request, body) -> OK;
+        uri = URI.create("https://vault.example.com/SecretServer/api/v1/secrets/1");
+    }
+
+    @TearDown
+    public void tearDown() {
+        tokenManager.close();
+    }
+
+    /** The template and expansion steps of {@code getSecret}. */
+    @Benchmark
+    public URI buildSecretUri() {
+        final String template = UriComponentsBuilder.fromPath("/secrets/{id}")
+                .queryParam("autoComment", "Accessed by benchmark")
+                .build().toUriString();
+        return uriBuilderFactory.expand(template, Map.of("id", "1"));
+    }
+
+    @Benchmark
+    public ClientHttpResponse authInterceptor() throws IOException {
+        final HttpHeaders headers = new HttpHeaders();
+        final HttpRequest request = new HttpRequest() {
+            @Override
+            public HttpMethod getMethod() {
+                return HttpMethod.GET;
+            }
+
+            @Override
+            public URI getURI() {
+                return uri;
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+
+            @Override
+            public Map<String, Object> getAttributes() {
+                return Map.of();
+            }
+        };
+        return authInterceptor.intercept(request, new byte[0], execution);
+    }
+}
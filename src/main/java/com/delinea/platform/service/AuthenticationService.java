@@ -1,14 +1,27 @@
 package com.delinea.platform.service;
 
 import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
 
+import com.delinea.platform.model.OAuthTokens;
 import com.delinea.platform.model.ServerResponseModel;
+import com.delinea.platform.service.DiscoveryCache.Discovery;
 import com.delinea.server.spring.AuthenticationModel;
+import com.delinea.server.spring.jfr.ServerDetectionEvent;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -16,12 +29,21 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 /**
  * Handles authentication logic for both Secret Server and Platform.
  * <p>
- * Determines which type of login to perform based on health check endpoints.
+ * Determines which type of login to perform based on health check endpoints,
+ * and caches the result in an optional {@link DiscoveryCache}.
  */
 @Service
 public class AuthenticationService implements IAuthenticationService {
+	private static final Logger log = LoggerFactory.getLogger(AuthenticationService.class);
+	private static final ExecutorService PROBE_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "tss-sdk-health-check");
+		thread.setDaemon(true);
+		return thread;
+	});
+
 	private RestTemplate restTemplate ;
 	private PlatformLogin platformLogin = new PlatformLogin();
+	private DiscoveryCache discoveryCache;
 	
 	 /**
      * Sets the RestTemplate to be used for HTTP calls.
@@ -37,9 +59,49 @@ public class AuthenticationService implements IAuthenticationService {
 	        this.platformLogin.setRestTemplate(restTemplate);
 	    }
 
+	/**
+	 * Sets the cache of detected server types. Without one, every authentication
+	 * performs the health checks.
+	 *
+	 * @param discoveryCache the cache, or {@code null} to disable caching
+	 */
+	public void setDiscoveryCache(DiscoveryCache discoveryCache) {
+		this.discoveryCache = discoveryCache;
+	}
+
+	/**
+	 * Forgets the cached server type of a server URL, for example after
+	 * authentication against the cached type failed.
+	 *
+	 * @param serverURL the configured server URL
+	 */
+	public void invalidateDiscovery(String serverURL) {
+		if (discoveryCache != null && serverURL != null) {
+			discoveryCache.invalidate(serverURL.replaceFirst("/$", ""));
+		}
+	}
+
+	/**
+	 * Returns the vault URL cached for a Platform server URL, without any network
+	 * call.
+	 *
+	 * @param serverURL the configured server URL
+	 * @return the vault URL, or {@code null} if the server is not known to be
+	 *         Platform
+	 */
+	public String getCachedVaultURL(String serverURL) {
+		Discovery cached = discoveryCache != null && serverURL != null
+				? discoveryCache.get(serverURL.replaceFirst("/$", "")) : null;
+		return cached != null && cached.isPlatform() ? cached.getVaultURL() : null;
+	}
+
 	 /**
      * Determines whether to authenticate against Secret Server or Platform
      * by performing health checks, and proceeds accordingly.
+     * <p>
+     * Both health checks run at the same time and the first healthy answer
+     * decides. The result, and for Platform the vault URL, is cached so later
+     * calls skip the health checks and the vault lookup.
      *
      * @param authModel the authentication details
      * @return populated {@link AuthenticationModel} with token and state
@@ -47,23 +109,152 @@ public class AuthenticationService implements IAuthenticationService {
      */
     @Override
     public AuthenticationModel authenticateAsync(AuthenticationModel authModel) throws Exception {
-        try {
-            String platformHealthCheckUrl = authModel.getServerURL().replaceFirst("/$", "") + "/health";
-            String ssHealthCheckUrl = authModel.getServerURL().replaceFirst("/$", "") + "/api/v1/healthcheck";
-            boolean isSsHealthy = checkJsonResponseAsync(ssHealthCheckUrl);
-            if (isSsHealthy) {
+        String serverURL = authModel.getServerURL().replaceFirst("/$", "");
+        Discovery cached = discoveryCache != null ? discoveryCache.get(serverURL) : null;
+        if (cached != null) {
+            ServerDetectionEvent event = new ServerDetectionEvent();
+            if (event.shouldCommit()) {
+                event.serverUrl = serverURL;
+                event.serverType = serverType(cached.isPlatform());
+                event.cached = true;
+                event.commit();
+            }
+            if (!cached.isPlatform()) {
                 authModel.setPlatformLogin(false);
-            } else {
-                boolean isPlatformHealthy = checkJsonResponseAsync(platformHealthCheckUrl);
-                if (isPlatformHealthy) {
-                    authModel.setPlatformLogin(true);
-                    return platformLogin.platformAuthentication(authModel);
-                } 
+                return authModel;
+            }
+            authModel.setPlatformLogin(true);
+            authModel.setVaultURL(cached.getVaultURL());
+            authModel.setVaultType(cached.getVaultType());
+            try {
+                // an error in the result means Platform answered, so the cached discovery still holds
+                return platformLogin.platformAuthentication(authModel);
+            } catch (Exception e) {
+                if (!isDiscoveryOutdated(e)) {
+                    throw e;
+                }
+                log.warn("Platform authentication against {} failed, detecting the server type again: {}",
+                        serverURL, e.getMessage());
+            }
+            discoveryCache.invalidate(serverURL);
+            authModel.setVaultURL(null);
+            authModel.setVaultType(null);
+        }
+
+        Boolean isPlatform = detectPlatform(serverURL);
+        if (isPlatform == null) {
+            return authModel;
+        }
+        authModel.setPlatformLogin(isPlatform);
+        if (!isPlatform) {
+            if (discoveryCache != null) {
+                discoveryCache.put(serverURL, new Discovery(false, null, null, Instant.now()));
             }
             return authModel;
-        } catch (IOException e) {
-            throw new RuntimeException(e.getMessage(), e);
         }
+        AuthenticationModel result = platformLogin.platformAuthentication(authModel);
+        if (discoveryCache != null && result.getError() == null && result.getVaultURL() != null) {
+            discoveryCache.put(serverURL,
+                    new Discovery(true, result.getVaultURL(), result.getVaultType(), Instant.now()));
+        }
+        return result;
+    }
+
+    /**
+     * Tells whether a failed Platform login suggests the cached server type is
+     * wrong: the server could not be reached, or the Platform endpoints are not
+     * there. Rejected credentials do not qualify, so they are not tried twice.
+     */
+    private static boolean isDiscoveryOutdated(Exception e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ResourceAccessException || cause instanceof IOException) {
+                return true;
+            }
+            if (cause instanceof RestClientResponseException) {
+                return ((RestClientResponseException) cause).getStatusCode().value() == HttpStatus.NOT_FOUND.value();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs the Secret Server and Platform health checks in parallel.
+     *
+     * @return {@code true} for Platform, {@code false} for Secret Server, or
+     *         {@code null} if neither reported healthy
+     */
+    private Boolean detectPlatform(String serverURL) {
+        ServerDetectionEvent event = new ServerDetectionEvent();
+        event.begin();
+        Boolean isPlatform = null;
+        try {
+            isPlatform = probeAll(serverURL);
+            return isPlatform;
+        } finally {
+            if (event.shouldCommit()) {
+                event.serverUrl = serverURL;
+                event.serverType = serverType(isPlatform);
+                event.commit();
+            }
+        }
+    }
+
+    private static String serverType(Boolean isPlatform) {
+        return isPlatform == null ? "unknown" : isPlatform ? "Platform" : "Secret Server";
+    }
+
+    private Boolean probeAll(String serverURL) {
+        CompletableFuture<Boolean> ssHealthy = probe(serverURL + "/api/v1/healthcheck");
+        CompletableFuture<Boolean> platformHealthy = probe(serverURL + "/health");
+
+        CompletableFuture<Boolean> answer = new CompletableFuture<>();
+        CompletableFuture.allOf(
+                ssHealthy.thenAccept(healthy -> {
+                    if (healthy) {
+                        answer.complete(false);
+                    }
+                }),
+                platformHealthy.thenAccept(healthy -> {
+                    if (healthy) {
+                        answer.complete(true);
+                    }
+                })).whenComplete((ignored, error) -> answer.complete(null));
+
+        Boolean isPlatform = answer.join();
+        if (isPlatform == null) {
+            for (CompletableFuture<Boolean> probe : Arrays.asList(ssHealthy, platformHealthy)) {
+                if (probe.isCompletedExceptionally()) {
+                    try {
+                        probe.join();
+                    } catch (CompletionException e) {
+                        throw new RuntimeException(e.getCause().getMessage(), e.getCause());
+                    }
+                }
+            }
+        }
+        return isPlatform;
+    }
+
+    private CompletableFuture<Boolean> probe(String url) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return checkJsonResponseAsync(url);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, PROBE_EXECUTOR);
+    }
+
+    /**
+     * Exchanges a Platform refresh token for new tokens.
+     *
+     * @param authModel    the authentication details
+     * @param refreshToken the refresh token returned with the current access token
+     * @return the new tokens
+     * @throws Exception if the refresh token is rejected or the call fails
+     */
+    public OAuthTokens refreshPlatformToken(AuthenticationModel authModel, String refreshToken) throws Exception {
+        return platformLogin.refreshAccessToken(authModel, refreshToken);
     }
 
     private boolean checkJsonResponseAsync(String url) throws IOException {
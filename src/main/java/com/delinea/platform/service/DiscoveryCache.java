@@ -0,0 +1,177 @@
+package com.delinea.platform.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Remembers whether a server URL belongs to Secret Server or to Delinea
+ * Platform, and for Platform the URL of its default vault, so that
+ * authentication can skip the health checks and the vault lookup.
+ * <p>
+ * Results expire after a fixed time-to-live. When a file is configured, results
+ * are also written to it, so they survive a restart of the application.
+ */
+public class DiscoveryCache {
+    /** The outcome of detecting the type of a server. */
+    static final class Discovery {
+        private final boolean platform;
+        private final String vaultURL;
+        private final String vaultType;
+        private final Instant detectedAt;
+
+        Discovery(boolean platform, String vaultURL, String vaultType, Instant detectedAt) {
+            this.platform = platform;
+            this.vaultURL = vaultURL;
+            this.vaultType = vaultType;
+            this.detectedAt = detectedAt;
+        }
+
+        boolean isPlatform() {
+            return platform;
+        }
+
+        String getVaultURL() {
+            return vaultURL;
+        }
+
+        String getVaultType() {
+            return vaultType;
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(DiscoveryCache.class);
+
+    private final Duration ttl;
+    private final Path file;
+    private final Map<String, Discovery> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a cache.
+     *
+     * @param ttl  how long a detected server type stays valid
+     * @param file the file results are persisted to, or {@code null} to keep them
+     *             in memory only
+     */
+    public DiscoveryCache(Duration ttl, Path file) {
+        Assert.isTrue(ttl != null && !ttl.isNegative() && !ttl.isZero(), "ttl must be positive");
+        this.ttl = ttl;
+        this.file = file;
+        if (file != null) {
+            load();
+        }
+    }
+
+    /**
+     * Returns the live result for a server URL.
+     *
+     * @param serverURL the configured server URL
+     * @return the result, or {@code null} if there is none or it has expired
+     */
+    Discovery get(String serverURL) {
+        final Discovery discovery = entries.get(serverURL);
+        if (discovery != null && discovery.detectedAt.plus(ttl).isAfter(Instant.now())) {
+            return discovery;
+        }
+        return null;
+    }
+
+    /**
+     * Stores the result for a server URL.
+     *
+     * @param serverURL the configured server URL
+     * @param discovery the detected server type
+     */
+    void put(String serverURL, Discovery discovery) {
+        entries.put(serverURL, discovery);
+        store();
+    }
+
+    /**
+     * Forgets the result for a server URL, so the next authentication detects the
+     * server type again.
+     *
+     * @param serverURL the configured server URL
+     */
+    void invalidate(String serverURL) {
+        if (entries.remove(serverURL) != null) {
+            store();
+        }
+    }
+
+    private void load() {
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        final Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Ignoring unreadable discovery cache {}: {}", file, e.getMessage());
+            return;
+        }
+        for (String name : properties.stringPropertyNames()) {
+            if (!name.endsWith(".platform")) {
+                continue;
+            }
+            final String serverURL = name.substring(0, name.length() - ".platform".length());
+            try {
+                entries.put(serverURL, new Discovery(Boolean.parseBoolean(properties.getProperty(name)),
+                        properties.getProperty(serverURL + ".vaultURL"),
+                        properties.getProperty(serverURL + ".vaultType"),
+                        Instant.ofEpochMilli(Long.parseLong(properties.getProperty(serverURL + ".detectedAt")))));
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring invalid discovery cache entry for {}", serverURL);
+            }
+        }
+    }
+
+    private synchronized void store() {
+        if (file == null) {
+            return;
+        }
+        final Properties properties = new Properties();
+        entries.forEach((serverURL, discovery) -> {
+            properties.setProperty(serverURL + ".platform", Boolean.toString(discovery.platform));
+            if (discovery.vaultURL != null) {
+                properties.setProperty(serverURL + ".vaultURL", discovery.vaultURL);
+            }
+            if (discovery.vaultType != null) {
+                properties.setProperty(serverURL + ".vaultType", discovery.vaultType);
+            }
+            properties.setProperty(serverURL + ".detectedAt", Long.toString(discovery.detectedAt.toEpochMilli()));
+        });
+        try {
+            final Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            final Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(temp)) {
+                    properties.store(out, "Delinea SDK server discovery cache");
+                }
+                try {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            log.warn("Unable to write discovery cache {}: {}", file, e.getMessage());
+        }
+    }
+}
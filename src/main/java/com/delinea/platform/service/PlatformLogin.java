@@ -12,12 +12,15 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
 
 import com.delinea.platform.model.OAuthTokens;
 import com.delinea.platform.model.VaultsResponseModel;
 import com.delinea.platform.model.VaultsResponseModel.Vault;
 import com.delinea.server.spring.AuthenticationModel;
+import com.delinea.server.spring.jfr.PlatformLoginEvent;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -40,16 +43,39 @@ public class PlatformLogin {
 
     /**
      * Authenticates the user on the Delinea Platform and retrieves vault info.
+     * The vault lookup is skipped if {@code authModel} already has a vault URL.
      *
      * @param authModel authentication credentials
      * @return updated AuthenticationModel with token and vault details
      * @throws Exception if authentication or vault retrieval fails
      */
     public AuthenticationModel platformAuthentication(AuthenticationModel authModel) throws Exception {
+        final PlatformLoginEvent event = new PlatformLoginEvent();
+        event.begin();
+        try {
+            final AuthenticationModel result = platformAuthentication(authModel, event);
+            event.success = result.getError() == null;
+            return result;
+        } catch (Exception ex) {
+            if (ex.getCause() instanceof RestClientResponseException) {
+                event.status = ((RestClientResponseException) ex.getCause()).getStatusCode().value();
+            }
+            throw ex;
+        } finally {
+            if (event.shouldCommit()) {
+                event.serverUrl = authModel.getServerURL();
+                event.commit();
+            }
+        }
+    }
+
+    private AuthenticationModel platformAuthentication(AuthenticationModel authModel, PlatformLoginEvent event)
+            throws Exception {
         try {
             // 1. Get Access Token
             ResponseEntity<String> tokenResponse = getAccessToken(authModel);
             if (tokenResponse.getStatusCode() != HttpStatus.OK) {
+                event.status = tokenResponse.getStatusCode().value();
                 return handleErrorResponse(tokenResponse.getBody());
             }
 
@@ -62,11 +88,17 @@ public class PlatformLogin {
             }
 
             authModel.setToken(authResponse.getAccessToken());
+            authModel.setRefreshToken(authResponse.getRefreshToken());
             authModel.setTokenExpiration(ZonedDateTime.now().plusSeconds(authResponse.getExpiresIn()));
 
-            // 2. Get Vault
+            // 2. Get Vault, unless it is already known
+            if (StringUtils.hasText(authModel.getVaultURL())) {
+                return authModel;
+            }
+            event.vaultLookup = true;
             ResponseEntity<String> vaultResponse = getVault(authModel, authResponse.getAccessToken());
             if (vaultResponse.getStatusCode() != HttpStatus.OK) {
+                event.status = vaultResponse.getStatusCode().value();
                 return handleErrorResponse(vaultResponse.getBody());
             }
 
@@ -94,6 +126,34 @@ public class PlatformLogin {
         }
     }
 
+    /**
+     * Exchanges a refresh token for new tokens on the Delinea Platform.
+     *
+     * @param authModel    authentication credentials
+     * @param refreshToken the refresh token returned with the current access token
+     * @return the new tokens
+     * @throws Exception if the refresh token is rejected or the call fails
+     */
+    public OAuthTokens refreshAccessToken(AuthenticationModel authModel, String refreshToken) throws Exception {
+        String apiUrl = authModel.getServerURL().replaceAll("/$", "") + "/identity/api/oauth2/token/xpmplatform";
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+
+        MultiValueMap<String, String> body = new LinkedMultiValueMap<>();
+        body.add("grant_type", "refresh_token");
+        body.add("refresh_token", refreshToken);
+        body.add("client_id", authModel.getUserName());
+        body.add("client_secret", authModel.getPassword());
+
+        HttpEntity<MultiValueMap<String, String>> requestEntity = new HttpEntity<>(body, headers);
+        ResponseEntity<String> response = restTemplate.exchange(apiUrl, HttpMethod.POST, requestEntity, String.class);
+        if (response.getStatusCode() != HttpStatus.OK) {
+            throw new Exception("Unable to refresh the access token: " + response.getBody());
+        }
+        return new ObjectMapper().readValue(response.getBody(), OAuthTokens.class);
+    }
+
     private AuthenticationModel handleErrorResponse(String errorMessage) {
         return new AuthenticationModel(errorMessage, true);
     }
@@ -0,0 +1,514 @@
+package com.delinea.server.spring;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.async.methods.SimpleRequestProducer;
+import org.apache.hc.client5.http.async.methods.SimpleResponseConsumer;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.io.CloseMode;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.Assert;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.UnknownHttpStatusCodeException;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.delinea.server.spring.LoadBalancer.Endpoint;
+import com.delinea.server.spring.TokenManager.Token;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * A non-blocking counterpart to {@link SecretServer} built on the Apache
+ * HttpClient 5 asynchronous client.
+ * <p>
+ * Every method returns a {@link CompletableFuture} immediately and never blocks
+ * the calling thread, which makes it safe to use from event-loop code. It shares
+ * authentication, token renewal and the secret cache with {@link SecretServer}.
+ * Failed requests complete the future with the same {@link RestClientException}
+ * types that {@link SecretServer} throws. File attachments honor the same spill
+ * threshold and lazy loading settings; a lazily loaded attachment is fetched,
+ * blocking, by the thread that first reads it.
+ * <p>
+ * Requests share the circuit breaker and the load balancer of
+ * {@link SecretServer}: they fail at once while the breaker is open, and are
+ * spread over the configured nodes, but never hedged. They do not pass through
+ * its request factory, so they are not retried and not held to its adaptive
+ * concurrency limit; only the connection pool bounds them. Applications that
+ * need those protections should use {@link SecretServer}, for example on a
+ * dedicated thread pool.
+ *
+ * <p>
+ * Use the {@link AsyncSecretServerFactoryBean} to create and initialize it.
+ */
+public class AsyncSecretServer implements AutoCloseable {
+    private static final String SECRET_ID_URI = "/secrets/{id}";
+    private static final String SECRET_FILE_ATTACHMENT_URI = SECRET_ID_URI + "/fields/{slug}";
+    private static final int DEFAULT_ATTACHMENT_CONCURRENCY = 4;
+    private static final long DEFAULT_ATTACHMENT_SPILL_THRESHOLD = 1024 * 1024;
+
+    private final CloseableHttpAsyncClient client;
+    private final TokenManager tokenManager;
+    private final Supplier<String> apiBaseUrl;
+    private final String autoComment;
+    private final SecretCache secretCache;
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private int attachmentConcurrency = DEFAULT_ATTACHMENT_CONCURRENCY;
+    private boolean lazyFileAttachments;
+    private long attachmentSpillThreshold = DEFAULT_ATTACHMENT_SPILL_THRESHOLD;
+    private SdkMetrics metrics = SdkMetrics.NOOP;
+    private CircuitBreaker circuitBreaker;
+    private LoadBalancer loadBalancer;
+
+    /**
+     * Creates an asynchronous client.
+     *
+     * @param client       a started asynchronous HTTP client, closed with this object
+     * @param tokenManager the source of access tokens
+     * @param apiBaseUrl   returns the base URL of the Secret Server REST API,
+     *                     which may only be known once authenticated
+     * @param autoComment  the comment recorded in the audit log, or blank for none
+     * @param secretCache  the cache shared with {@link SecretServer}, or {@code null}
+     */
+    AsyncSecretServer(CloseableHttpAsyncClient client, TokenManager tokenManager, Supplier<String> apiBaseUrl,
+            String autoComment, SecretCache secretCache) {
+        this.client = client;
+        this.tokenManager = tokenManager;
+        this.apiBaseUrl = apiBaseUrl;
+        this.autoComment = autoComment == null ? "" : autoComment;
+        this.secretCache = secretCache;
+    }
+
+    /**
+     * Sets the maximum number of file attachments of one secret that are fetched
+     * at the same time.
+     *
+     * @param attachmentConcurrency a positive number of concurrent fetches
+     */
+    public void setAttachmentConcurrency(int attachmentConcurrency) {
+        Assert.isTrue(attachmentConcurrency > 0, "attachmentConcurrency must be positive");
+        this.attachmentConcurrency = attachmentConcurrency;
+    }
+
+    /**
+     * Sets whether file attachments are fetched only when their value is first
+     * read, rather than with the secret.
+     *
+     * @param lazyFileAttachments true to fetch file attachments on first access
+     */
+    public void setLazyFileAttachments(boolean lazyFileAttachments) {
+        this.lazyFileAttachments = lazyFileAttachments;
+    }
+
+    /**
+     * Sets the largest file attachment kept in memory. Larger attachments are
+     * written to a temporary file as they arrive.
+     *
+     * @param attachmentSpillThreshold a non-negative number of bytes
+     */
+    public void setAttachmentSpillThreshold(long attachmentSpillThreshold) {
+        Assert.isTrue(attachmentSpillThreshold >= 0, "attachmentSpillThreshold must not be negative");
+        this.attachmentSpillThreshold = attachmentSpillThreshold;
+    }
+
+    /**
+     * Sets where requests and file attachment transfers are recorded.
+     *
+     * @param metrics the metrics
+     */
+    void setMetrics(SdkMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Sets the circuit breaker that requests report to and that rejects them
+     * while it is open.
+     *
+     * @param circuitBreaker the circuit breaker, or {@code null} for none
+     */
+    void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Sets the load balancer that chooses the node of each request.
+     *
+     * @param loadBalancer the load balancer, or {@code null} to send every
+     *                     request to the configured URL
+     */
+    void setLoadBalancer(LoadBalancer loadBalancer) {
+        this.loadBalancer = loadBalancer;
+    }
+
+    /**
+     * Fetch a {@link Secret} from Delinea Secret Server without blocking.
+     *
+     * @param id                   - the integer ID of the secret to be fetched
+     * @param fetchFileAttachments - whether to fetch {@code fileAttachments} so
+     *                             {@link Secret.Field#getValue()} returns the
+     *                             contents instead of the default placeholder
+     * @return a future completed with the {@link Secret}
+     */
+    public CompletableFuture<Secret> getSecretAsync(final int id, final boolean fetchFileAttachments) {
+        if (secretCache != null) {
+            final Secret cached = secretCache.get(id, fetchFileAttachments);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
+
+        return apiBaseUrl()
+                .thenCompose(baseUrl -> execute(() -> SimpleRequestBuilder.get(secretUri(baseUrl, id)).build()))
+                .thenApply(response -> readJson(response, Secret.class))
+                .thenCompose(secret -> fetchFileAttachments && secret != null
+                        ? fetchFileAttachments(id, secret) : CompletableFuture.completedFuture(secret))
+                .thenApply(secret -> {
+                    if (secretCache != null) {
+                        secretCache.put(id, fetchFileAttachments, secret);
+                    }
+                    return secret;
+                });
+    }
+
+    private URI secretUri(final String baseUrl, final int id) {
+        final UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(baseUrl + SECRET_ID_URI);
+        if (!autoComment.isBlank()) {
+            builder.queryParam("autoComment", autoComment);
+        }
+        return builder.encode().buildAndExpand(id).toUri();
+    }
+
+    /**
+     * Fetch a {@link Secret} from Delinea Secret Server without blocking,
+     * including {@code fileAttachments}.
+     *
+     * @see #getSecretAsync(int, boolean)
+     *
+     * @param id - the integer ID of the secret to be fetched
+     * @return a future completed with the {@link Secret}
+     */
+    public CompletableFuture<Secret> getSecretAsync(final int id) {
+        return getSecretAsync(id, true);
+    }
+
+    /**
+     * Fetch several secrets from Delinea Secret Server without blocking.
+     * <p>
+     * At most {@link GetSecretsOptions#getConcurrency()} requests are outstanding
+     * at the same time. The returned future always completes normally; a failure
+     * to fetch one secret is reported in that secret's {@link SecretResult}.
+     *
+     * @param ids     - the integer IDs of the secrets to be fetched
+     * @param options - the concurrency limit and whether to fetch
+     *                {@code fileAttachments}
+     * @return a future completed with one {@link SecretResult} per ID, in the
+     *         same order as {@code ids}
+     */
+    public CompletableFuture<List<SecretResult>> getSecretsAsync(final Collection<Integer> ids,
+            final GetSecretsOptions options) {
+        Assert.notNull(ids, "ids must not be null");
+        Assert.notNull(options, "options must not be null");
+        Assert.isTrue(options.getConcurrency() > 0, "concurrency must be positive");
+        Assert.noNullElements(ids, "ids must not contain null");
+
+        final List<Integer> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        return FanOut.mapAsync(distinctIds, options.getConcurrency(),
+                id -> getSecretAsync(id, options.isFetchFileAttachments())
+                        .handle((secret, error) -> new SecretResult(id, secret, error == null ? null
+                                : toRestClientException(error))))
+                .thenApply(results -> {
+                    final Map<Integer, SecretResult> byId = results.stream()
+                            .collect(Collectors.toMap(SecretResult::getId, Function.identity()));
+                    return ids.stream().map(byId::get).collect(Collectors.toList());
+                });
+    }
+
+    /**
+     * Fetch several secrets from Delinea Secret Server without blocking,
+     * including {@code fileAttachments}, using the default
+     * {@link GetSecretsOptions}.
+     *
+     * @see #getSecretsAsync(Collection, GetSecretsOptions)
+     *
+     * @param ids - the integer IDs of the secrets to be fetched
+     * @return a future completed with one {@link SecretResult} per ID
+     */
+    public CompletableFuture<List<SecretResult>> getSecretsAsync(final Collection<Integer> ids) {
+        return getSecretsAsync(ids, new GetSecretsOptions());
+    }
+
+    /**
+     * Fetch the raw contents of a file attachment without blocking.
+     * <p>
+     * The whole attachment is held in memory, whatever the spill threshold. For
+     * large attachments, fetch the secret with its file attachments and read
+     * them with {@link Secret.Field#openStream()}.
+     *
+     * @param id   - the integer ID of the secret
+     * @param slug - the slug of the file attachment field
+     * @return a future completed with the bytes of the attachment
+     */
+    public CompletableFuture<byte[]> getAttachmentAsync(final int id, final String slug) {
+        Assert.hasText(slug, "slug must not be empty");
+        return apiBaseUrl().thenCompose(baseUrl -> {
+            final URI uri = UriComponentsBuilder.fromUriString(baseUrl + SECRET_FILE_ATTACHMENT_URI)
+                    .encode().buildAndExpand(id, slug).toUri();
+            return execute(() -> SimpleRequestBuilder.get(uri).build());
+        }).thenApply(response -> {
+            checkStatus(response);
+            final byte[] body = response.getBodyBytes();
+            metrics.recordAttachmentBytes(body == null ? 0 : body.length);
+            return body == null ? new byte[0] : body;
+        });
+    }
+
+    /** Closes the underlying HTTP client. */
+    @Override
+    public void close() {
+        client.close(CloseMode.GRACEFUL);
+    }
+
+    private CompletableFuture<Secret> fetchFileAttachments(final int id, final Secret secret) {
+        final List<Secret.Field> attachments = secret.getFields().stream()
+                .filter(field -> field.getFileAttachmentId() > 0)
+                .collect(Collectors.toList());
+        final URI base = URI.create(apiBaseUrl.get());
+        if (lazyFileAttachments) {
+            attachments.forEach(field -> field.deferContent(() -> {
+                try {
+                    return fetchFileAttachment(base, id, field.getSlug()).join();
+                } catch (CompletionException e) {
+                    throw toRestClientException(e);
+                }
+            }));
+            return CompletableFuture.completedFuture(secret);
+        }
+        return FanOut.mapAsync(attachments, attachmentConcurrency,
+                field -> fetchFileAttachment(base, id, field.getSlug()).thenApply(content -> {
+                    field.setContent(content);
+                    return field;
+                })).thenApply(fields -> secret);
+    }
+
+    /** Streams a file attachment into memory or, past the spill threshold, a temporary file. */
+    private CompletableFuture<FieldContent> fetchFileAttachment(final URI base, final int id, final String slug) {
+        final URI uri = UriComponentsBuilder.fromUri(base).path(SECRET_FILE_ATTACHMENT_URI)
+                .encode().buildAndExpand(id, slug).toUri();
+        return execute(() -> SimpleRequestBuilder.get(uri).build(),
+                () -> new SpillingResponseConsumer(attachmentSpillThreshold), SpillingResponseConsumer.Result::getCode)
+                .thenApply(response -> {
+                    if (response.getCode() >= 400) {
+                        try {
+                            checkStatus(response.toSimpleResponse());
+                        } catch (IOException e) {
+                            throw new ResourceAccessException("I/O error reading the error response for \""
+                                    + uri + "\": " + e.getMessage(), e);
+                        }
+                    }
+                    final FieldContent content = response.getContent();
+                    metrics.recordAttachmentBytes(content.size());
+                    return content;
+                });
+    }
+
+    /**
+     * Resolves the API base URL once a token is available, so that a request
+     * made while a deferred authentication is running is built against the
+     * vault URL it finds.
+     */
+    private CompletableFuture<String> apiBaseUrl() {
+        return tokenManager.getTokenAsync().thenApply(token -> apiBaseUrl.get());
+    }
+
+    /**
+     * Sends a request with the current bearer token. On {@code 401 Unauthorized}
+     * the token is renewed once, shared with any concurrent renewal, and the
+     * request is rebuilt and replayed. The recorded time includes the replay.
+     */
+    private CompletableFuture<SimpleHttpResponse> execute(final Supplier<SimpleHttpRequest> request) {
+        return execute(request, SimpleResponseConsumer::create, SimpleHttpResponse::getCode);
+    }
+
+    /**
+     * Does the same as {@link #execute(Supplier)}, reading the response with a
+     * new consumer from {@code consumer} for every exchange.
+     */
+    private <T> CompletableFuture<T> execute(final Supplier<SimpleHttpRequest> request,
+            final Supplier<? extends AsyncResponseConsumer<T>> consumer, final ToIntFunction<T> status) {
+        final long started = System.nanoTime();
+        final SimpleHttpRequest first = request.get();
+        final CompletableFuture<T> result = tokenManager.getTokenAsync()
+                .thenCompose(token -> send(first, consumer.get(), status, token)
+                .thenCompose(response -> {
+                    if (status.applyAsInt(response) != HttpStatus.UNAUTHORIZED.value()) {
+                        return CompletableFuture.completedFuture(response);
+                    }
+                    return tokenManager.renewAsync(token).handle((renewed, error) -> error != null
+                            ? CompletableFuture.completedFuture(response)
+                            : send(request.get(), consumer.get(), status, renewed)).thenCompose(Function.identity());
+                }));
+        if (!metrics.isEnabled()) {
+            return result;
+        }
+        final String path = first.getPath();
+        final String endpoint = MetricsInterceptor.endpointOf(
+                path == null || path.indexOf('?') < 0 ? path : path.substring(0, path.indexOf('?')));
+        return result.whenComplete((response, error) -> metrics.recordRequest(endpoint, first.getMethod(),
+                response != null ? status.applyAsInt(response) : 0, System.nanoTime() - started));
+    }
+
+    /**
+     * Sends one exchange, through the circuit breaker and to the node the load
+     * balancer chooses, and reports the outcome to both.
+     */
+    private <T> CompletableFuture<T> send(final SimpleHttpRequest request, final AsyncResponseConsumer<T> consumer,
+            final ToIntFunction<T> status, final Token token) {
+        if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+            consumer.releaseResources();
+            final IOException open = new IOException("Secret Server circuit breaker is open for another "
+                    + circuitBreaker.getRemainingOpenTime().toMillis() + " ms");
+            return CompletableFuture.failedFuture(new ResourceAccessException("I/O error on " + request.getMethod()
+                    + " request for \"" + request.getRequestUri() + "\": " + open.getMessage(), open));
+        }
+        final Endpoint endpoint = route(request);
+        request.setHeader(HttpHeaders.AUTHORIZATION, token.getAuthorizationHeader());
+        final long started = System.nanoTime();
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        client.execute(SimpleRequestProducer.create(request), consumer, new FutureCallback<T>() {
+            @Override
+            public void completed(T response) {
+                final int code = status.applyAsInt(response);
+                if (circuitBreaker != null) {
+                    if (RetryingClientHttpRequestFactory.isFailure(code)) {
+                        circuitBreaker.onFailure();
+                    } else {
+                        circuitBreaker.onSuccess();
+                    }
+                }
+                if (endpoint != null) {
+                    loadBalancer.onResponse(endpoint, code, System.nanoTime() - started);
+                }
+                future.complete(response);
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                if (circuitBreaker != null) {
+                    circuitBreaker.onFailure();
+                }
+                if (endpoint != null) {
+                    loadBalancer.onError(endpoint, ex);
+                }
+                future.completeExceptionally(new ResourceAccessException(
+                        "I/O error on " + request.getMethod() + " request for \"" + request.getRequestUri() + "\": "
+                                + ex.getMessage(),
+                        ex instanceof IOException ? (IOException) ex : new IOException(ex)));
+            }
+
+            @Override
+            public void cancelled() {
+                if (circuitBreaker != null) {
+                    circuitBreaker.onAbandoned();
+                }
+                if (endpoint != null) {
+                    loadBalancer.onAbandoned(endpoint);
+                }
+                future.cancel(false);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Points a request to a Secret Server node at the node the load balancer
+     * chooses. Requests to other URLs, such as a Platform vault, are left alone.
+     *
+     * @return the chosen node, or {@code null} if the request was left alone
+     */
+    private Endpoint route(final SimpleHttpRequest request) {
+        if (loadBalancer == null) {
+            return null;
+        }
+        final String relative;
+        try {
+            relative = loadBalancer.relativize(request.getUri());
+        } catch (URISyntaxException e) {
+            return null;
+        }
+        if (relative == null) {
+            return null;
+        }
+        final Endpoint endpoint = loadBalancer.choose(null);
+        request.setUri(URI.create(endpoint.getBaseUrl() + relative));
+        loadBalancer.onStart(endpoint);
+        return endpoint;
+    }
+
+    private <T> T readJson(final SimpleHttpResponse response, final Class<T> type) {
+        checkStatus(response);
+        try {
+            final byte[] body = response.getBodyBytes();
+            return body == null || body.length == 0 ? null : objectMapper.readValue(body, type);
+        } catch (IOException e) {
+            throw new RestClientException("Error while extracting response for type [" + type.getName() + "]", e);
+        }
+    }
+
+    private static void checkStatus(final SimpleHttpResponse response) {
+        final int code = response.getCode();
+        if (code < 400) {
+            return;
+        }
+        final HttpHeaders headers = new HttpHeaders();
+        for (Header header : response.getHeaders()) {
+            headers.add(header.getName(), header.getValue());
+        }
+        final byte[] body = response.getBodyBytes();
+        final Charset charset = charsetOf(response.getContentType());
+        final String statusText = response.getReasonPhrase() == null ? "" : response.getReasonPhrase();
+        if (code < 500) {
+            throw HttpClientErrorException.create(HttpStatusCode.valueOf(code), statusText, headers, body, charset);
+        } else if (code < 600) {
+            throw HttpServerErrorException.create(HttpStatusCode.valueOf(code), statusText, headers, body, charset);
+        }
+        throw new UnknownHttpStatusCodeException(code, statusText, headers, body, charset);
+    }
+
+    private static Charset charsetOf(final ContentType contentType) {
+        return contentType != null && contentType.getCharset() != null ? contentType.getCharset()
+                : StandardCharsets.UTF_8;
+    }
+
+    private static RuntimeException toRestClientException(final Throwable error) {
+        final Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+        return cause instanceof RuntimeException ? (RuntimeException) cause
+                : new RestClientException(cause.getMessage(), cause);
+    }
+}
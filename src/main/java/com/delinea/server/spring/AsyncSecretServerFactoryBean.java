@@ -0,0 +1,61 @@
+package com.delinea.server.spring;
+
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates an {@link AsyncSecretServer} that shares authentication, token
+ * renewal, the secret cache, the circuit breaker and the load balancer with the
+ * {@link SecretServer} created by {@link SecretServerFactoryBean}.
+ */
+@Component
+public class AsyncSecretServerFactoryBean implements FactoryBean<AsyncSecretServer>, DisposableBean {
+    @Autowired
+    private SecretServerFactoryBean secretServerFactoryBean;
+
+    private AsyncSecretServer asyncSecretServer;
+
+    @Override
+    public synchronized AsyncSecretServer getObject() throws Exception {
+        if (asyncSecretServer == null) {
+            final TokenManager tokenManager = secretServerFactoryBean.getTokenManager();
+            final CloseableHttpAsyncClient client = HttpTransport
+                    .createAsyncClient(secretServerFactoryBean.getTransportSettings());
+            final AsyncSecretServer server = new AsyncSecretServer(client, tokenManager,
+                    secretServerFactoryBean::getApiBaseUrl, secretServerFactoryBean.getAutoComment(),
+                    secretServerFactoryBean.getSecretCache());
+            final Integer attachmentConcurrency = secretServerFactoryBean.getAttachmentConcurrency();
+            if (attachmentConcurrency != null) {
+                server.setAttachmentConcurrency(attachmentConcurrency);
+            }
+            server.setLazyFileAttachments(secretServerFactoryBean.isLazyFileAttachments());
+            final Long attachmentSpillThreshold = secretServerFactoryBean.getAttachmentSpillThreshold();
+            if (attachmentSpillThreshold != null) {
+                server.setAttachmentSpillThreshold(attachmentSpillThreshold);
+            }
+            server.setMetrics(secretServerFactoryBean.getMetrics());
+            server.setCircuitBreaker(secretServerFactoryBean.getCircuitBreaker());
+            server.setLoadBalancer(secretServerFactoryBean.getLoadBalancer());
+            asyncSecretServer = server;
+        }
+        return asyncSecretServer;
+    }
+
+    @Override
+    public Class<?> getObjectType() {
+        return AsyncSecretServer.class;
+    }
+
+    /**
+     * Closes the asynchronous HTTP client.
+     */
+    @Override
+    public synchronized void destroy() {
+        if (asyncSecretServer != null) {
+            asyncSecretServer.close();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.delinea.server.spring;
+
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import com.delinea.server.spring.TokenManager.Token;
+
+/**
+ * Adds the bearer token to each request and recovers from {@code 401
+ * Unauthorized} responses.
+ * <p>
+ * When a request is rejected, the token it was sent with is renewed through
+ * {@link TokenManager#renew(Token)}, which coalesces all concurrent callers onto a
+ * single re-authentication, and the request is replayed once with the new token.
+ * If the renewal fails the original {@code 401} response is returned.
+ */
+class AuthInterceptor implements ClientHttpRequestInterceptor {
+    private static final Logger log = LoggerFactory.getLogger(AuthInterceptor.class);
+
+    private final TokenManager tokenManager;
+
+    /**
+     * Creates an interceptor that takes its tokens from {@code tokenManager}.
+     *
+     * @param tokenManager the source of access tokens
+     */
+    AuthInterceptor(TokenManager tokenManager) {
+        this.tokenManager = tokenManager;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        final Token token;
+        try {
+            token = tokenManager.getToken();
+        } catch (IllegalStateException e) {
+            throw new IOException("Unable to obtain an access token: " + e.getMessage(), e);
+        }
+        request.getHeaders().set(HttpHeaders.AUTHORIZATION, token.getAuthorizationHeader());
+        final ClientHttpResponse response = execution.execute(request, body);
+        if (!HttpStatus.UNAUTHORIZED.equals(response.getStatusCode())) {
+            return response;
+        }
+
+        final Token renewed;
+        try {
+            renewed = tokenManager.renew(token);
+        } catch (RuntimeException e) {
+            log.warn("Re-authentication after 401 Unauthorized failed: {}", e.getMessage());
+            return response;
+        }
+        response.close();
+        Retries.record();
+        request.getHeaders().set(HttpHeaders.AUTHORIZATION, renewed.getAuthorizationHeader());
+        return execution.execute(request, body);
+    }
+}
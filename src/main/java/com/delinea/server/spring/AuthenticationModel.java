@@ -19,6 +19,7 @@ public class AuthenticationModel {
     private String password;
     private String serverURL;
     private String token;
+    private String refreshToken;
     private ZonedDateTime tokenExpiration;
     private boolean isPlatformLogin;
     private String error;
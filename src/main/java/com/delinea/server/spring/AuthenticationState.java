@@ -0,0 +1,22 @@
+package com.delinea.server.spring;
+
+/**
+ * How far the first authentication of a {@link SecretServer} has got.
+ * <p>
+ * With {@code authentication.deferred = true} the {@link SecretServer} bean is
+ * created before it has authenticated, and this is how an application can tell
+ * whether it is ready, for example from a readiness probe.
+ */
+public enum AuthenticationState {
+    /** The first authentication has not finished yet. */
+    PENDING,
+
+    /** An access token has been obtained; requests are sent without waiting. */
+    AUTHENTICATED,
+
+    /**
+     * The last attempt failed. Attempts continue in the background and on each
+     * request.
+     */
+    FAILED
+}
@@ -0,0 +1,94 @@
+package com.delinea.server.spring;
+
+import java.time.Duration;
+
+/**
+ * Stops calls to Secret Server while it is failing.
+ * <p>
+ * After {@code failureThreshold} consecutive failures the breaker opens and
+ * rejects every call for {@code openDuration}. It then lets a single trial call
+ * through: if that succeeds the breaker closes, otherwise it opens again.
+ */
+class CircuitBreaker {
+    /** The states of the breaker. */
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    /**
+     * Creates a closed breaker.
+     *
+     * @param failureThreshold the consecutive failures that open the breaker
+     * @param openDuration     how long the breaker stays open before a trial call
+     */
+    CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    /**
+     * Asks permission for a call. A caller that is granted permission must
+     * report the outcome with {@link #onSuccess()}, {@link #onFailure()} or
+     * {@link #onAbandoned()}.
+     *
+     * @return whether the call may be made
+     */
+    synchronized boolean tryAcquire() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.HALF_OPEN && !trialInFlight) {
+            trialInFlight = true;
+            return true;
+        }
+        return false;
+    }
+
+    /** Records a successful call, closing the breaker. */
+    synchronized void onSuccess() {
+        failures = 0;
+        trialInFlight = false;
+        state = State.CLOSED;
+    }
+
+    /** Records a failed call, opening the breaker at the threshold or after a failed trial. */
+    synchronized void onFailure() {
+        trialInFlight = false;
+        if (state == State.HALF_OPEN || ++failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+            failures = 0;
+        }
+    }
+
+    /**
+     * Records a call that ended without an outcome, for example because it
+     * failed before reaching Secret Server, so that another trial call is let
+     * through.
+     */
+    synchronized void onAbandoned() {
+        trialInFlight = false;
+    }
+
+    /** @return the time left before a trial call is allowed, or zero */
+    synchronized Duration getRemainingOpenTime() {
+        return state != State.OPEN ? Duration.ZERO
+                : Duration.ofNanos(Math.max(0, openNanos - (System.nanoTime() - openedAt)));
+    }
+
+    /** @return the current state */
+    synchronized State getState() {
+        return state;
+    }
+}
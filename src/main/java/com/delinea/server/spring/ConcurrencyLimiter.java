@@ -0,0 +1,168 @@
+package com.delinea.server.spring;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import lombok.Data;
+
+/**
+ * Limits the requests to Secret Server that run at the same time, adapting the
+ * limit to how the server copes: additive increase, multiplicative decrease.
+ * <p>
+ * While the limit is in use and response times stay within
+ * {@code latencyTolerance} times the baseline, the limit grows by about one per
+ * round trip. A {@code 429} or {@code 503}, an I/O error, or a short-term average response time above the tolerance multiplies it by
+ * {@code backoffRatio}. Requests that were already running when the limit was
+ * cut do not cut it again. The baseline is a long-term average of the response
+ * times, so a steady mix of fast and slow requests does not count as overload,
+ * while a sudden slowdown does until the baseline has caught up with it.
+ * <p>
+ * Callers beyond the limit wait, for at most {@code maxWait}.
+ */
+class ConcurrencyLimiter {
+    private static final int BASELINE_WINDOW = 500;
+    private static final double SHORT_SMOOTHING = 0.1;
+    private static final double LONG_SMOOTHING = 2.0 / (BASELINE_WINDOW + 1);
+
+    /** Concurrency limit settings. */
+    @Data
+    static class Settings {
+        private boolean enabled;
+        private int initialLimit = 20;
+        private int minLimit = 1;
+        private int maxLimit = 200;
+        private double backoffRatio = 0.9;
+        private double latencyTolerance = 2.0;
+        private Duration maxWait = Duration.ofSeconds(5);
+    }
+
+    /** A granted permit, to be passed back to {@link ConcurrencyLimiter#release}. */
+    static final class Permit {
+        private final long startedAt;
+
+        private Permit(long startedAt) {
+            this.startedAt = startedAt;
+        }
+    }
+
+    private final Settings settings;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final LongAdder rejected = new LongAdder();
+    private double limit;
+    private int inFlight;
+    private long decreasedAt = System.nanoTime();
+    private double shortTermNanos;
+    private double longTermNanos;
+    private int samples;
+
+    /**
+     * Creates a limiter at the initial limit.
+     *
+     * @param settings the limits and how quickly they adapt
+     */
+    ConcurrencyLimiter(Settings settings) {
+        this.settings = settings;
+        this.limit = settings.getInitialLimit();
+    }
+
+    /**
+     * Waits until fewer requests than the limit are running.
+     *
+     * @return the permit, or {@code null} if none became free within the
+     *         maximum wait
+     * @throws InterruptedException if interrupted while waiting
+     */
+    Permit acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            long remaining = settings.getMaxWait().toNanos();
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) {
+                    rejected.increment();
+                    return null;
+                }
+                remaining = available.awaitNanos(remaining);
+            }
+            inFlight++;
+            return new Permit(System.nanoTime());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a permit and adapts the limit to the outcome of its request.
+     *
+     * @param permit    the permit
+     * @param overload  whether the request met a {@code 429}, a {@code 503}, an
+     *                  I/O error or a retry
+     */
+    void release(Permit permit, boolean overload) {
+        release(permit, overload, System.nanoTime() - permit.startedAt);
+    }
+
+    /**
+     * Returns a permit, as {@link #release(Permit, boolean)} does, with the
+     * response time given rather than measured.
+     *
+     * @param permit    the permit
+     * @param overload  whether the request met a {@code 429}, a {@code 503}, an
+     *                  I/O error or a retry
+     * @param nanos     the response time of the request
+     */
+    void release(Permit permit, boolean overload, long nanos) {
+        final long now = System.nanoTime();
+        lock.lock();
+        try {
+            final boolean saturated = inFlight * 2 >= limit;
+            inFlight--;
+            if (!overload) {
+                samples++;
+                shortTermNanos = samples == 1 ? nanos : shortTermNanos + SHORT_SMOOTHING * (nanos - shortTermNanos);
+                // a plain average until the window has filled, so the first samples do not weigh too much
+                final double smoothing = Math.max(LONG_SMOOTHING, 1.0 / samples);
+                longTermNanos = samples == 1 ? nanos : longTermNanos + smoothing * (nanos - longTermNanos);
+            }
+            if (overload || shortTermNanos > settings.getLatencyTolerance() * longTermNanos) {
+                if (permit.startedAt - decreasedAt > 0) {
+                    limit = Math.max(settings.getMinLimit(), limit * settings.getBackoffRatio());
+                    decreasedAt = now;
+                }
+            } else if (saturated) {
+                limit = Math.min(settings.getMaxLimit(), limit + 1 / limit);
+            }
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return the current limit */
+    int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return the requests running now */
+    int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return the callers turned away after waiting the maximum time */
+    long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,114 @@
+package com.delinea.server.spring;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Map;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Runs each request under a permit from a {@link ConcurrencyLimiter}.
+ * <p>
+ * This sits below {@link RetryingClientHttpRequestFactory}, so each attempt
+ * takes its own permit and a request backing off before a retry holds none.
+ * The permit is returned as soon as the response headers arrive.
+ */
+class ConcurrencyLimitingClientHttpRequestFactory implements ClientHttpRequestFactory {
+    /**
+     * Thrown when no permit became free in time. The request was never sent,
+     * so it says nothing about the health of the server.
+     */
+    static final class LimitReachedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        LimitReachedException(String message) {
+            super(message);
+        }
+    }
+
+    private final ClientHttpRequestFactory delegate;
+    private final ConcurrencyLimiter limiter;
+
+    /**
+     * Wraps a request factory.
+     *
+     * @param delegate creates the requests that are actually sent
+     * @param limiter  grants the permits
+     */
+    ConcurrencyLimitingClientHttpRequestFactory(ClientHttpRequestFactory delegate, ConcurrencyLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        return new LimitedRequest(delegate.createRequest(uri, httpMethod));
+    }
+
+    private static boolean isOverload(int status) {
+        return status == 429 || status == 503;
+    }
+
+    private class LimitedRequest implements ClientHttpRequest {
+        private final ClientHttpRequest request;
+
+        LimitedRequest(ClientHttpRequest request) {
+            this.request = request;
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return request.getMethod();
+        }
+
+        @Override
+        public URI getURI() {
+            return request.getURI();
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return request.getAttributes();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return request.getHeaders();
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            return request.getBody();
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            final ConcurrencyLimiter.Permit permit;
+            try {
+                permit = limiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to send " + getMethod() + " " + getURI());
+            }
+            if (permit == null) {
+                throw new LimitReachedException("Secret Server concurrency limit of " + limiter.getLimit()
+                        + " requests reached");
+            }
+
+            boolean overload = true;
+            try {
+                final ClientHttpResponse response = request.execute();
+                overload = isOverload(response.getStatusCode().value());
+                return response;
+            } finally {
+                limiter.release(permit, overload);
+            }
+        }
+    }
+}
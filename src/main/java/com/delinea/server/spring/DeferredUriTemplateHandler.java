@@ -0,0 +1,61 @@
+package com.delinea.server.spring;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+import org.springframework.web.util.UriTemplateHandler;
+
+/**
+ * Expands request URIs against an API base URL that is only known once the
+ * first authentication has finished, which for Delinea Platform is where the
+ * vault URL comes from.
+ * <p>
+ * The first expansion waits for that authentication, or makes it, through
+ * {@link TokenManager#getToken()}. Later ones use the resolved base URL without
+ * waiting.
+ */
+class DeferredUriTemplateHandler implements UriTemplateHandler {
+    private final TokenManager tokenManager;
+    private final Supplier<String> baseUrl;
+    private volatile UriTemplateHandler delegate;
+
+    /**
+     * Creates a handler.
+     *
+     * @param tokenManager authenticates
+     * @param baseUrl      returns the API base URL once authenticated
+     */
+    DeferredUriTemplateHandler(TokenManager tokenManager, Supplier<String> baseUrl) {
+        this.tokenManager = tokenManager;
+        this.baseUrl = baseUrl;
+    }
+
+    @Override
+    public URI expand(String uriTemplate, Map<String, ?> uriVariables) {
+        return delegate().expand(uriTemplate, uriVariables);
+    }
+
+    @Override
+    public URI expand(String uriTemplate, Object... uriVariables) {
+        return delegate().expand(uriTemplate, uriVariables);
+    }
+
+    private UriTemplateHandler delegate() {
+        UriTemplateHandler handler = delegate;
+        if (handler == null) {
+            try {
+                tokenManager.getToken();
+            } catch (IllegalStateException e) {
+                throw new ResourceAccessException("Unable to obtain an access token: " + e.getMessage(),
+                        new IOException(e.getMessage(), e));
+            }
+            handler = new DefaultUriBuilderFactory(baseUrl.get());
+            delegate = handler;
+        }
+        return handler;
+    }
+}
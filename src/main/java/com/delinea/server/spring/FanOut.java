@@ -0,0 +1,172 @@
+package com.delinea.server.spring;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs a function over a list of items on a shared pool of daemon threads,
+ * never using more than a given number of threads at once.
+ * <p>
+ * The calling thread takes part in the work, so nested fan-outs cannot starve
+ * each other of threads. {@link #mapAsync} does the same for functions that
+ * return futures, without blocking any thread.
+ */
+final class FanOut {
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static final ThreadFactory THREAD_FACTORY = runnable -> {
+        final Thread thread = new Thread(runnable, "tss-sdk-worker-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    };
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(THREAD_FACTORY);
+
+    private FanOut() {
+    }
+
+    /**
+     * Runs {@code supplier} on the shared pool.
+     *
+     * @param supplier the task
+     * @return a future completed with the result of {@code supplier}
+     */
+    static <R> CompletableFuture<R> supplyAsync(Supplier<R> supplier) {
+        return CompletableFuture.supplyAsync(supplier, EXECUTOR);
+    }
+
+    /**
+     * Applies {@code function} to each item, running at most {@code parallelism}
+     * calls at the same time.
+     * <p>
+     * If a call throws, no further items are started and the first exception is
+     * rethrown once the calls already running have finished.
+     *
+     * @param items       the items to process
+     * @param parallelism the maximum number of concurrent calls
+     * @param function    the function to apply
+     * @return the results, in the same order as {@code items}
+     */
+    static <T, R> List<R> map(List<T> items, int parallelism, Function<? super T, ? extends R> function) {
+        final int size = items.size();
+        final int workers = Math.min(Math.max(parallelism, 1), size);
+        if (workers <= 1) {
+            final List<R> results = new ArrayList<>(size);
+            for (T item : items) {
+                results.add(function.apply(item));
+            }
+            return results;
+        }
+
+        final Object[] results = new Object[size];
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        final Runnable worker = () -> {
+            int index;
+            while (failure.get() == null && (index = next.getAndIncrement()) < size) {
+                try {
+                    results[index] = function.apply(items.get(index));
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        };
+
+        final CompletableFuture<?>[] helpers = new CompletableFuture<?>[workers - 1];
+        for (int i = 0; i < helpers.length; i++) {
+            helpers[i] = CompletableFuture.runAsync(worker, EXECUTOR);
+        }
+        worker.run();
+        try {
+            CompletableFuture.allOf(helpers).join();
+        } catch (CompletionException e) {
+            failure.compareAndSet(null, new IllegalStateException(e.getCause()));
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        @SuppressWarnings("unchecked")
+        final List<R> list = (List<R>) Arrays.asList(results);
+        return list;
+    }
+
+    /**
+     * Applies an asynchronous {@code function} to each item, keeping at most
+     * {@code parallelism} of the returned futures outstanding at the same time.
+     * <p>
+     * No thread is blocked while waiting. If a future fails, no further items are
+     * started and the returned future fails with the same exception.
+     *
+     * @param items       the items to process
+     * @param parallelism the maximum number of outstanding futures
+     * @param function    the function to apply
+     * @return the results, in the same order as {@code items}
+     */
+    static <T, R> CompletableFuture<List<R>> mapAsync(List<T> items, int parallelism,
+            Function<? super T, CompletableFuture<R>> function) {
+        final int size = items.size();
+        final Object[] results = new Object[size];
+        final CompletableFuture<List<R>> done = new CompletableFuture<>();
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger remaining = new AtomicInteger(size);
+        if (size == 0) {
+            done.complete(new ArrayList<>());
+            return done;
+        }
+
+        final Runnable[] lane = new Runnable[1];
+        lane[0] = () -> {
+            int index;
+            while (!done.isDone() && (index = next.getAndIncrement()) < size) {
+                final int slot = index;
+                CompletableFuture<R> future;
+                try {
+                    future = function.apply(items.get(slot));
+                } catch (RuntimeException e) {
+                    future = CompletableFuture.failedFuture(e);
+                }
+                if (!future.isDone()) {
+                    // continue this lane on whichever thread completes the future
+                    future.whenComplete((result, error) -> {
+                        if (complete(done, results, remaining, slot, result, error)) {
+                            lane[0].run();
+                        }
+                    });
+                    return;
+                }
+                final CompletableFuture<R> finished = future;
+                finished.handle((result, error) -> complete(done, results, remaining, slot, result, error));
+            }
+        };
+        for (int i = 0; i < Math.min(Math.max(parallelism, 1), size); i++) {
+            lane[0].run();
+        }
+        return done;
+    }
+
+    private static <R> boolean complete(CompletableFuture<List<R>> done, Object[] results,
+            AtomicInteger remaining, int slot, Object result, Throwable error) {
+        if (error != null) {
+            done.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error);
+            return false;
+        }
+        results[slot] = result;
+        if (remaining.decrementAndGet() == 0) {
+            @SuppressWarnings("unchecked")
+            final List<R> list = (List<R>) Arrays.asList(results);
+            done.complete(list);
+            return false;
+        }
+        return true;
+    }
+}
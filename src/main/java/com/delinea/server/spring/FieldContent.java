@@ -0,0 +1,327 @@
+package com.delinea.server.spring;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * The raw bytes of a file attachment held by a {@link Secret.Field}.
+ * <p>
+ * Small attachments are kept in memory. Attachments larger than the spill
+ * threshold are written to a temporary file, so heap use does not grow with the
+ * size of the attachment. The file is deleted once the content is no longer
+ * reachable. A cache with off-heap storage moves
+ * in-memory contents, and text field values, to {@link OffHeapValues}.
+ */
+abstract class FieldContent {
+    static final int BUFFER_SIZE = 8192;
+    static final Cleaner CLEANER = Cleaner.create();
+
+    /** Replaces the values of a {@link Secret} instance once it is closed. */
+    static final FieldContent WIPED = new Wiped();
+
+    private final Charset charset;
+
+    private FieldContent(Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * Opens a new stream over the bytes of this content.
+     *
+     * @return a stream the caller must close
+     * @throws IOException if a spilled file cannot be read
+     */
+    abstract InputStream openStream() throws IOException;
+
+    /** @return the charset used by {@link #asString()} */
+    Charset charset() {
+        return charset;
+    }
+
+    /** @return the number of bytes of this content */
+    abstract long size();
+
+    /** @return the approximate number of bytes of memory, on or off the heap, retained by this content */
+    abstract long heapSize();
+
+    /** @return the number of bytes {@link #moveTo(OffHeapValues)} appends */
+    long inMemorySize() {
+        return 0;
+    }
+
+    /**
+     * Moves this content to an off-heap buffer, if it is held on the heap.
+     *
+     * @param values the buffer, with room for {@link #inMemorySize()} bytes
+     * @return the content to use instead of this one
+     */
+    FieldContent moveTo(OffHeapValues values) {
+        return this;
+    }
+
+    /**
+     * Decodes this content to a string using the charset reported by Secret
+     * Server.
+     *
+     * @return the decoded content
+     */
+    String asString() {
+        try (InputStream in = openStream()) {
+            return new String(in.readAllBytes(), charset);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Decodes this content to characters, without creating a string that
+     * cannot be wiped.
+     *
+     * @return the decoded content, which the caller may overwrite once done
+     */
+    char[] asChars() {
+        final byte[] bytes;
+        try (InputStream in = openStream()) {
+            bytes = in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            return decode(ByteBuffer.wrap(bytes), charset);
+        } finally {
+            Arrays.fill(bytes, (byte) 0);
+        }
+    }
+
+    /**
+     * Decodes bytes to an exactly sized array, zeroing the decoder's buffer.
+     *
+     * @param bytes   the bytes to decode
+     * @param charset their charset
+     * @return the characters
+     */
+    static char[] decode(ByteBuffer bytes, Charset charset) {
+        final CharBuffer decoded = charset.decode(bytes);
+        try {
+            return Arrays.copyOfRange(decoded.array(), decoded.arrayOffset() + decoded.position(),
+                    decoded.arrayOffset() + decoded.limit());
+        } finally {
+            Arrays.fill(decoded.array(), '\0');
+        }
+    }
+
+    /**
+     * Reads a stream to its end, spilling to a temporary file once more than
+     * {@code spillThreshold} bytes have been read.
+     *
+     * @param in             the stream to read; not closed by this method
+     * @param charset        the charset used by {@link #asString()}
+     * @param spillThreshold the largest number of bytes kept in memory
+     * @return the content
+     * @throws IOException if the stream or the temporary file fails
+     */
+    static FieldContent read(InputStream in, Charset charset, long spillThreshold) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final byte[] chunk = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            buffer.write(chunk, 0, read);
+            if (buffer.size() > spillThreshold) {
+                return spill(buffer, in, charset);
+            }
+        }
+        return new InMemory(buffer.toByteArray(), charset);
+    }
+
+    private static FieldContent spill(ByteArrayOutputStream buffer, InputStream in, Charset charset)
+            throws IOException {
+        final Path file = createTempFile();
+        try (OutputStream out = Files.newOutputStream(file)) {
+            buffer.writeTo(out);
+            final long size = buffer.size() + in.transferTo(out);
+            return new Spilled(file, size, charset);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    /**
+     * Creates the temporary file a {@link Spilled} content is written to.
+     *
+     * @return the new, empty file
+     * @throws IOException if the file cannot be created
+     */
+    static Path createTempFile() throws IOException {
+        return Files.createTempFile("tss-attachment-", ".bin");
+    }
+
+    /** Content held in a heap byte array. */
+    static final class InMemory extends FieldContent {
+        private final byte[] bytes;
+
+        InMemory(byte[] bytes, Charset charset) {
+            super(charset);
+            this.bytes = bytes;
+        }
+
+        @Override
+        InputStream openStream() {
+            return new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        long size() {
+            return bytes.length;
+        }
+
+        @Override
+        long heapSize() {
+            return 16 + bytes.length;
+        }
+
+        @Override
+        long inMemorySize() {
+            return bytes.length;
+        }
+
+        @Override
+        FieldContent moveTo(OffHeapValues values) {
+            final FieldContent moved = new OffHeap(values, values.append(bytes), bytes.length, charset());
+            Arrays.fill(bytes, (byte) 0);
+            return moved;
+        }
+    }
+
+    /** Content held in a range of an {@link OffHeapValues} buffer. */
+    static final class OffHeap extends FieldContent {
+        private final OffHeapValues values;
+        private final int offset;
+        private final int length;
+
+        OffHeap(OffHeapValues values, int offset, int length, Charset charset) {
+            super(charset);
+            this.values = values;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        InputStream openStream() {
+            return new InputStream() {
+                private int position;
+
+                @Override
+                public int read() {
+                    final byte[] one = new byte[1];
+                    return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+                }
+
+                @Override
+                public int read(byte[] target, int off, int len) {
+                    if (position >= length) {
+                        return -1;
+                    }
+                    final int count = Math.min(len, length - position);
+                    values.get(offset + position, target, off, count);
+                    position += count;
+                    return count;
+                }
+            };
+        }
+
+        @Override
+        String asString() {
+            final byte[] bytes = new byte[length];
+            values.get(offset, bytes, 0, length);
+            try {
+                return new String(bytes, charset());
+            } finally {
+                Arrays.fill(bytes, (byte) 0);
+            }
+        }
+
+        @Override
+        char[] asChars() {
+            return values.decode(offset, length, charset());
+        }
+
+        @Override
+        long size() {
+            return length;
+        }
+
+        @Override
+        long heapSize() {
+            return 32 + length;
+        }
+    }
+
+    /** Content of a closed secret instance, which can no longer be read. */
+    private static final class Wiped extends FieldContent {
+        private Wiped() {
+            super(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        InputStream openStream() {
+            throw new IllegalStateException("The values of this secret have been wiped");
+        }
+
+        @Override
+        long size() {
+            return 0;
+        }
+
+        @Override
+        long heapSize() {
+            return 0;
+        }
+    }
+
+    /** Content held in a temporary file. */
+    static final class Spilled extends FieldContent {
+        private final Path file;
+        private final long size;
+
+        Spilled(Path file, long size, Charset charset) {
+            super(charset);
+            this.file = file;
+            this.size = size;
+            CLEANER.register(this, () -> {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    // left in the temporary directory
+                }
+            });
+        }
+
+        @Override
+        InputStream openStream() throws IOException {
+            return Files.newInputStream(file);
+        }
+
+        @Override
+        long size() {
+            return size;
+        }
+
+        @Override
+        long heapSize() {
+            return 64;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.delinea.server.spring;
+
+import lombok.Data;
+
+/**
+ * Options for {@link SecretServer#getSecrets(java.util.Collection, GetSecretsOptions)}.
+ */
+@Data
+public class GetSecretsOptions {
+    /** The default maximum number of secrets fetched at the same time. */
+    public static final int DEFAULT_CONCURRENCY = 8;
+
+    /** The maximum number of secrets fetched at the same time. */
+    private int concurrency = DEFAULT_CONCURRENCY;
+
+    /** Whether to fetch {@code fileAttachments} for each secret. */
+    private boolean fetchFileAttachments = true;
+}
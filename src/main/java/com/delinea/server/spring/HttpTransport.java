@@ -0,0 +1,199 @@
+package com.delinea.server.spring;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.auth.AuthScope;
+import org.apache.hc.client5.http.auth.UsernamePasswordCredentials;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClientBuilder;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.auth.BasicCredentialsProvider;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.util.StringUtils;
+
+import com.delinea.server.spring.jfr.ConnectionLeaseEvent;
+
+import lombok.Data;
+
+/**
+ * The pooled, keep-alive HTTP transport shared by every call the SDK makes:
+ * health checks, authentication and Secret Server requests.
+ * <p>
+ * Sharing one connection pool lets all of those calls reuse the same TLS
+ * connections instead of performing a new handshake for each client.
+ */
+class HttpTransport implements AutoCloseable {
+    /** Connection pool, timeout and proxy settings. */
+    @Data
+    static class Settings {
+        private int maxConnections = 50;
+        private int maxConnectionsPerRoute = 20;
+        private Duration connectTimeout = Duration.ofSeconds(10);
+        private Duration responseTimeout = Duration.ofSeconds(30);
+        private Duration leaseTimeout = Duration.ofSeconds(10);
+        private Duration connectionTtl = Duration.ofMinutes(5);
+        private Duration idleEviction = Duration.ofMinutes(1);
+        private String proxyHost;
+        private int proxyPort;
+        private String proxyUsername;
+        private String proxyPassword;
+    }
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final HttpComponentsClientHttpRequestFactory requestFactory;
+
+    /**
+     * Builds the connection pool and HTTP client.
+     *
+     * @param settings the pool, timeout and proxy settings
+     */
+    HttpTransport(Settings settings) {
+        this.connectionManager = new LeaseRecordingConnectionManager();
+        connectionManager.setMaxTotal(settings.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(settings.getMaxConnectionsPerRoute());
+        connectionManager.setDefaultConnectionConfig(connectionConfig(settings));
+
+        final HttpClientBuilder builder = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig(settings))
+                // retries are handled by RetryingClientHttpRequestFactory
+                .disableAutomaticRetries()
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(settings.getIdleEviction().toMillis()));
+
+        if (StringUtils.hasText(settings.getProxyHost())) {
+            builder.setProxy(new HttpHost(settings.getProxyHost(), settings.getProxyPort()));
+            builder.setDefaultCredentialsProvider(proxyCredentials(settings));
+        }
+
+        this.httpClient = builder.build();
+        this.requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+    }
+
+    /**
+     * Builds and starts a non-blocking client with its own connection pool,
+     * configured from the same settings as the shared blocking client.
+     *
+     * @param settings the pool, timeout and proxy settings
+     * @return a started client the caller must close
+     */
+    static CloseableHttpAsyncClient createAsyncClient(Settings settings) {
+        final HttpAsyncClientBuilder builder = HttpAsyncClients.custom()
+                .setConnectionManager(PoolingAsyncClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(settings.getMaxConnections())
+                        .setMaxConnPerRoute(settings.getMaxConnectionsPerRoute())
+                        .setDefaultConnectionConfig(connectionConfig(settings))
+                        .build())
+                .setDefaultRequestConfig(requestConfig(settings))
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(settings.getIdleEviction().toMillis()));
+
+        if (StringUtils.hasText(settings.getProxyHost())) {
+            builder.setProxy(new HttpHost(settings.getProxyHost(), settings.getProxyPort()));
+            builder.setDefaultCredentialsProvider(proxyCredentials(settings));
+        }
+
+        final CloseableHttpAsyncClient client = builder.build();
+        client.start();
+        return client;
+    }
+
+    /**
+     * Records a {@link ConnectionLeaseEvent} for every wait for a pooled
+     * connection.
+     */
+    private static class LeaseRecordingConnectionManager extends PoolingHttpClientConnectionManager {
+        @Override
+        public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+            final LeaseRequest request = super.lease(id, route, requestTimeout, state);
+            return new LeaseRequest() {
+                @Override
+                public ConnectionEndpoint get(Timeout timeout)
+                        throws InterruptedException, ExecutionException, TimeoutException {
+                    final ConnectionLeaseEvent event = new ConnectionLeaseEvent();
+                    event.begin();
+                    try {
+                        final ConnectionEndpoint endpoint = request.get(timeout);
+                        event.leased = true;
+                        return endpoint;
+                    } finally {
+                        if (event.shouldCommit()) {
+                            event.route = route.getTargetHost().toURI();
+                            event.pending = getStats(route).getPending();
+                            event.commit();
+                        }
+                    }
+                }
+
+                @Override
+                public boolean cancel() {
+                    return request.cancel();
+                }
+            };
+        }
+    }
+
+    private static ConnectionConfig connectionConfig(Settings settings) {
+        return ConnectionConfig.custom()
+                .setConnectTimeout(timeout(settings.getConnectTimeout()))
+                .setSocketTimeout(timeout(settings.getResponseTimeout()))
+                .setTimeToLive(TimeValue.ofMilliseconds(settings.getConnectionTtl().toMillis()))
+                .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                .build();
+    }
+
+    private static RequestConfig requestConfig(Settings settings) {
+        return RequestConfig.custom()
+                .setConnectionRequestTimeout(timeout(settings.getLeaseTimeout()))
+                .setResponseTimeout(timeout(settings.getResponseTimeout()))
+                .build();
+    }
+
+    private static BasicCredentialsProvider proxyCredentials(Settings settings) {
+        final BasicCredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+        if (StringUtils.hasText(settings.getProxyUsername()) && settings.getProxyPassword() != null) {
+            credentialsProvider.setCredentials(new AuthScope(settings.getProxyHost(), settings.getProxyPort()),
+                    new UsernamePasswordCredentials(settings.getProxyUsername(),
+                            settings.getProxyPassword().toCharArray()));
+        }
+        return credentialsProvider;
+    }
+
+    /** @return a request factory backed by the shared client */
+    ClientHttpRequestFactory getRequestFactory() {
+        return requestFactory;
+    }
+
+    /** @return the connection pool of the shared client */
+    PoolingHttpClientConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
+
+    /** Closes the client and all pooled connections. */
+    @Override
+    public void close() {
+        httpClient.close(CloseMode.GRACEFUL);
+    }
+
+    private static Timeout timeout(Duration duration) {
+        return Timeout.ofMilliseconds(duration.toMillis());
+    }
+}
@@ -0,0 +1,349 @@
+package com.delinea.server.spring;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StreamUtils;
+
+import com.delinea.platform.model.ServerResponseModel;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Spreads requests over several Secret Server nodes.
+ * <p>
+ * Each request goes to the better of two randomly chosen healthy nodes, scored
+ * by an exponentially weighted moving average of their response times
+ * multiplied by the requests they have in flight. A node is taken out after
+ * {@code unhealthyThreshold} consecutive I/O errors or {@code 5xx} responses,
+ * or when its {@code /api/v1/healthcheck} probe fails, and brought back once a
+ * probe succeeds. If every node is out, all of them are used again.
+ * <p>
+ * Response times of all nodes are also kept in a small window, from which the
+ * delay before a hedged request is taken.
+ */
+class LoadBalancer implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(LoadBalancer.class);
+    private static final String HEALTH_CHECK_PATH = "/api/v1/healthcheck";
+    private static final double EWMA_WEIGHT = 0.2;
+    private static final int WINDOW_SIZE = 256;
+    private static final int MIN_SAMPLES = 32;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /** One node and what is known about it. */
+    static final class Endpoint {
+        private final String baseUrl;
+        private final AtomicLong latencyNanos = new AtomicLong();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile boolean healthy = true;
+
+        Endpoint(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        /** @return the base URL, without a trailing slash */
+        String getBaseUrl() {
+            return baseUrl;
+        }
+
+        /** @return the moving average of the response time, or zero before the first response */
+        long getLatencyNanos() {
+            return latencyNanos.get();
+        }
+
+        /** @return whether requests are sent to this node */
+        boolean isHealthy() {
+            return healthy;
+        }
+
+        private long score() {
+            return latencyNanos.get() * (inFlight.get() + 1);
+        }
+
+        @Override
+        public String toString() {
+            return baseUrl;
+        }
+    }
+
+    private final List<Endpoint> endpoints;
+    private final String primaryBaseUrl;
+    private final ClientHttpRequestFactory probeFactory;
+    private final int unhealthyThreshold;
+    private final double hedgePercentile;
+    private final long hedgeMinDelayNanos;
+    private final AtomicLongArray window = new AtomicLongArray(WINDOW_SIZE);
+    private final AtomicLong samples = new AtomicLong();
+    private final LongAdder hedges = new LongAdder();
+    private volatile long hedgeDelayNanos = -1;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates a load balancer. Requests built against the first URL are
+     * redirected to the chosen node.
+     *
+     * @param baseUrls           the base URLs of the nodes
+     * @param probeFactory       sends the health probes
+     * @param unhealthyThreshold the consecutive failures that take a node out
+     * @param hedgePercentile    the response time percentile after which a
+     *                           hedged request is sent
+     * @param hedgeMinDelay      the shortest delay before a hedged request
+     */
+    LoadBalancer(List<String> baseUrls, ClientHttpRequestFactory probeFactory, int unhealthyThreshold,
+            double hedgePercentile, Duration hedgeMinDelay) {
+        final List<Endpoint> list = new ArrayList<>(baseUrls.size());
+        for (String baseUrl : baseUrls) {
+            list.add(new Endpoint(baseUrl.replaceFirst("/+$", "")));
+        }
+        this.endpoints = Collections.unmodifiableList(list);
+        this.primaryBaseUrl = endpoints.get(0).getBaseUrl();
+        this.probeFactory = probeFactory;
+        this.unhealthyThreshold = unhealthyThreshold;
+        this.hedgePercentile = hedgePercentile;
+        this.hedgeMinDelayNanos = hedgeMinDelay.toNanos();
+    }
+
+    /** @return the nodes, in configuration order */
+    List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    /** @return the base URL that requests are built against */
+    String getPrimaryBaseUrl() {
+        return primaryBaseUrl;
+    }
+
+    /** @return the number of hedged requests sent */
+    long getHedgeCount() {
+        return hedges.sum();
+    }
+
+    /**
+     * Returns the part of a request URI after the primary base URL.
+     *
+     * @param uri the request URI
+     * @return the path and query relative to the base URL, or {@code null} if
+     *         the URI is not below it, for example a Platform vault URL
+     */
+    String relativize(URI uri) {
+        final String url = uri.toString();
+        if (!url.regionMatches(true, 0, primaryBaseUrl, 0, primaryBaseUrl.length())) {
+            return null;
+        }
+        final String rest = url.substring(primaryBaseUrl.length());
+        return rest.isEmpty() || rest.charAt(0) == '/' || rest.charAt(0) == '?' ? rest : null;
+    }
+
+    /**
+     * Chooses the node for a request with the power of two choices.
+     *
+     * @param exclude a node not to choose unless it is the only one, or
+     *                {@code null}
+     * @return the node
+     */
+    Endpoint choose(Endpoint exclude) {
+        final List<Endpoint> candidates = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.healthy && endpoint != exclude) {
+                candidates.add(endpoint);
+            }
+        }
+        if (candidates.isEmpty()) {
+            for (Endpoint endpoint : endpoints) {
+                if (endpoint != exclude) {
+                    candidates.add(endpoint);
+                }
+            }
+        }
+        if (candidates.isEmpty()) {
+            return exclude;
+        }
+        final int size = candidates.size();
+        if (size == 1) {
+            return candidates.get(0);
+        }
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int first = random.nextInt(size);
+        final int second = (first + 1 + random.nextInt(size - 1)) % size;
+        final Endpoint a = candidates.get(first);
+        final Endpoint b = candidates.get(second);
+        return a.score() <= b.score() ? a : b;
+    }
+
+    /** @return the number of nodes requests are currently sent to */
+    int healthyCount() {
+        int count = 0;
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.healthy) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Records the start of a request to a node.
+     *
+     * @param endpoint the node
+     */
+    void onStart(Endpoint endpoint) {
+        endpoint.inFlight.incrementAndGet();
+    }
+
+    /**
+     * Records a response from a node.
+     *
+     * @param endpoint the node
+     * @param status   the response status
+     * @param nanos    the time until the response headers arrived
+     */
+    void onResponse(Endpoint endpoint, int status, long nanos) {
+        endpoint.inFlight.decrementAndGet();
+        if (status >= 500 && status != 501) {
+            onFailure(endpoint, "status " + status);
+            return;
+        }
+        endpoint.failures.set(0);
+        long previous;
+        do {
+            previous = endpoint.latencyNanos.get();
+        } while (!endpoint.latencyNanos.compareAndSet(previous,
+                previous == 0 ? nanos : (long) (previous + EWMA_WEIGHT * (nanos - previous))));
+        final long count = samples.incrementAndGet();
+        window.set((int) ((count - 1) % WINDOW_SIZE), nanos);
+        if (count >= MIN_SAMPLES && count % (MIN_SAMPLES / 2) == 0) {
+            hedgeDelayNanos = Math.max(hedgeMinDelayNanos, percentile(Math.min(count, WINDOW_SIZE)));
+        }
+    }
+
+    /**
+     * Records a request to a node that failed without a response.
+     *
+     * @param endpoint the node
+     * @param error    the I/O or other error
+     */
+    void onError(Endpoint endpoint, Exception error) {
+        endpoint.inFlight.decrementAndGet();
+        onFailure(endpoint, error.getMessage());
+    }
+
+    /**
+     * Records a request to a node that was cancelled before it completed.
+     *
+     * @param endpoint the node
+     */
+    void onAbandoned(Endpoint endpoint) {
+        endpoint.inFlight.decrementAndGet();
+    }
+
+    /** Records the sending of a hedged request. */
+    void onHedge() {
+        hedges.increment();
+    }
+
+    /**
+     * @return how long to wait for a response before sending a hedged request,
+     *         or -1 while too few response times are known
+     */
+    long getHedgeDelayNanos() {
+        return hedgeDelayNanos;
+    }
+
+    private void onFailure(Endpoint endpoint, String reason) {
+        if (endpoint.failures.incrementAndGet() >= unhealthyThreshold && endpoint.healthy && endpoints.size() > 1) {
+            endpoint.healthy = false;
+            log.warn("Taking {} out of rotation after {} consecutive failures ({})", endpoint,
+                    endpoint.failures.get(), reason);
+        }
+    }
+
+    private long percentile(long count) {
+        final long[] sorted = new long[(int) count];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = window.get(i);
+        }
+        Arrays.sort(sorted);
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(hedgePercentile / 100 * sorted.length) - 1)];
+    }
+
+    /**
+     * Starts probing every node on a background thread.
+     *
+     * @param interval the time between rounds of probes
+     */
+    synchronized void start(Duration interval) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "tss-sdk-node-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::probeAll, interval.toNanos(), interval.toNanos(),
+                TimeUnit.NANOSECONDS);
+    }
+
+    /** Probes every node once, taking failing nodes out and bringing healthy ones back. */
+    void probeAll() {
+        for (Endpoint endpoint : endpoints) {
+            final boolean healthy = probe(endpoint);
+            if (healthy && !endpoint.healthy) {
+                endpoint.failures.set(0);
+                endpoint.latencyNanos.set(0);
+                endpoint.healthy = true;
+                log.info("Bringing {} back into rotation", endpoint);
+            } else if (!healthy && endpoint.healthy && endpoints.size() > 1) {
+                endpoint.healthy = false;
+                log.warn("Taking {} out of rotation after a failed health check", endpoint);
+            }
+        }
+    }
+
+    private boolean probe(Endpoint endpoint) {
+        try (ClientHttpResponse response = probeFactory
+                .createRequest(URI.create(endpoint.getBaseUrl() + HEALTH_CHECK_PATH), HttpMethod.GET).execute()) {
+            if (response.getStatusCode().value() != 200) {
+                return false;
+            }
+            final String body = StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8);
+            try {
+                final ServerResponseModel model = MAPPER.readValue(body, ServerResponseModel.class);
+                return model != null && model.isHealthy();
+            } catch (IOException e) {
+                return body.contains("Healthy");
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("Health check of {} failed: {}", endpoint, e.getMessage());
+            return false;
+        }
+    }
+
+    /** Stops the health probes. */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+}
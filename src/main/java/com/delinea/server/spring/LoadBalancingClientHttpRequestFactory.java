@@ -0,0 +1,260 @@
+package com.delinea.server.spring;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import com.delinea.server.spring.LoadBalancer.Endpoint;
+
+import lombok.Data;
+
+/**
+ * Sends each request to the Secret Server node chosen by a
+ * {@link LoadBalancer}, replacing the primary base URL it was built against.
+ * Requests to other URLs, such as a Platform vault, are sent unchanged.
+ * <p>
+ * With hedging enabled, a GET that has not been answered within the configured
+ * percentile of recent response times is also sent to a second node, and the
+ * first successful response is used. The other one is closed when it arrives.
+ */
+class LoadBalancingClientHttpRequestFactory implements ClientHttpRequestFactory {
+
+    /** Load balancing, health check and hedging settings. */
+    @Data
+    static class Settings {
+        private Duration healthCheckInterval = Duration.ofSeconds(10);
+        private int unhealthyThreshold = 3;
+        private boolean hedging;
+        private double hedgePercentile = 95;
+        private Duration hedgeMinDelay = Duration.ofMillis(20);
+    }
+
+    private final ClientHttpRequestFactory delegate;
+    private final LoadBalancer loadBalancer;
+    private final boolean hedging;
+
+    /**
+     * Wraps a request factory.
+     *
+     * @param delegate     creates the requests that are actually sent
+     * @param loadBalancer chooses the nodes
+     * @param hedging      whether slow GETs are also sent to a second node
+     */
+    LoadBalancingClientHttpRequestFactory(ClientHttpRequestFactory delegate, LoadBalancer loadBalancer,
+            boolean hedging) {
+        this.delegate = delegate;
+        this.loadBalancer = loadBalancer;
+        this.hedging = hedging;
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        final String relative = loadBalancer.relativize(uri);
+        return relative == null ? delegate.createRequest(uri, httpMethod)
+                : new BalancedRequest(uri, relative, httpMethod);
+    }
+
+    private static boolean isFailure(ClientHttpResponse response) {
+        try {
+            final int status = response.getStatusCode().value();
+            return status >= 500 && status != 501;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private static void closeQuietly(Object response) {
+        if (response instanceof ClientHttpResponse) {
+            ((ClientHttpResponse) response).close();
+        }
+    }
+
+    /** Buffers the request so it can be sent to more than one node. */
+    private class BalancedRequest implements ClientHttpRequest {
+        private final URI uri;
+        private final String relative;
+        private final HttpMethod method;
+        private final HttpHeaders headers = new HttpHeaders();
+        private final Map<String, Object> attributes = new LinkedHashMap<>();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        BalancedRequest(URI uri, String relative, HttpMethod method) {
+            this.uri = uri;
+            this.relative = relative;
+            this.method = method;
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return method;
+        }
+
+        @Override
+        public URI getURI() {
+            return uri;
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public OutputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            final Endpoint first = loadBalancer.choose(null);
+            final long delay = loadBalancer.getHedgeDelayNanos();
+            if (!hedging || !HttpMethod.GET.equals(method) || delay < 0 || loadBalancer.healthyCount() < 2) {
+                return send(first);
+            }
+
+            final CompletableFuture<ClientHttpResponse> primary = sendAsync(first);
+            try {
+                return primary.get(delay, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // too slow: hedge below
+            } catch (ExecutionException e) {
+                throw unwrap(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                primary.thenAccept(ClientHttpResponse::close);
+                throw new InterruptedIOException("Interrupted while waiting for " + method + " " + uri);
+            }
+            final Endpoint second = loadBalancer.choose(first);
+            if (second == first) {
+                return join(primary);
+            }
+            loadBalancer.onHedge();
+            return join(firstSuccessful(List.of(primary, sendAsync(second))));
+        }
+
+        private ClientHttpResponse send(Endpoint endpoint) throws IOException {
+            final ClientHttpRequest request = delegate.createRequest(URI.create(endpoint.getBaseUrl() + relative),
+                    method);
+            request.getHeaders().putAll(headers);
+            request.getAttributes().putAll(attributes);
+            if (body.size() > 0) {
+                body.writeTo(request.getBody());
+            }
+            loadBalancer.onStart(endpoint);
+            final long started = System.nanoTime();
+            ClientHttpResponse response = null;
+            final int status;
+            try {
+                response = request.execute();
+                status = response.getStatusCode().value();
+            } catch (IOException | RuntimeException e) {
+                if (response != null) {
+                    response.close();
+                }
+                loadBalancer.onError(endpoint, e);
+                throw e;
+            }
+            loadBalancer.onResponse(endpoint, status, System.nanoTime() - started);
+            return response;
+        }
+
+        private CompletableFuture<ClientHttpResponse> sendAsync(Endpoint endpoint) {
+            return FanOut.supplyAsync(() -> {
+                try {
+                    return send(endpoint);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+
+        /**
+         * Completes with the first response that is not a server error, or
+         * once every attempt is done, with a server error response if there was
+         * one and the first I/O error otherwise.
+         */
+        private CompletableFuture<ClientHttpResponse> firstSuccessful(
+                List<CompletableFuture<ClientHttpResponse>> attempts) {
+            final CompletableFuture<ClientHttpResponse> winner = new CompletableFuture<>();
+            final Object[] fallback = new Object[1];
+            final int[] pending = { attempts.size() };
+            for (CompletableFuture<ClientHttpResponse> attempt : attempts) {
+                attempt.whenComplete((response, error) -> {
+                    synchronized (fallback) {
+                        pending[0]--;
+                        if (winner.isDone()) {
+                            closeQuietly(response);
+                        } else if (response != null && !isFailure(response)) {
+                            closeQuietly(fallback[0]);
+                            winner.complete(response);
+                        } else {
+                            if (fallback[0] == null || fallback[0] instanceof Throwable && response != null) {
+                                fallback[0] = response != null ? response : error;
+                            } else {
+                                closeQuietly(response);
+                            }
+                            if (pending[0] == 0) {
+                                if (fallback[0] instanceof ClientHttpResponse) {
+                                    winner.complete((ClientHttpResponse) fallback[0]);
+                                } else {
+                                    winner.completeExceptionally((Throwable) fallback[0]);
+                                }
+                            }
+                        }
+                    }
+                });
+            }
+            return winner;
+        }
+
+        private ClientHttpResponse join(CompletableFuture<ClientHttpResponse> future) throws IOException {
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                throw unwrap(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.thenAccept(ClientHttpResponse::close);
+                throw new InterruptedIOException("Interrupted while waiting for " + method + " " + uri);
+            }
+        }
+
+        private IOException unwrap(Throwable error) {
+            Throwable cause = error;
+            while ((cause instanceof CompletionException || cause instanceof UncheckedIOException)
+                    && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException) {
+                return (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            return new IOException(cause.getMessage(), cause);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.delinea.server.spring;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.regex.Pattern;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Times every request and records it in {@link SdkMetrics}, tagged with the
+ * endpoint, method and status code.
+ * <p>
+ * Installed outermost, so the recorded time includes authentication and any
+ * replay after {@code 401 Unauthorized}.
+ */
+class MetricsInterceptor implements ClientHttpRequestInterceptor {
+    private static final String[] ENDPOINT_ROOTS = { "/api/v1/", "/oauth2/", "/identity/", "/vaultbroker/",
+            "/health" };
+    private static final Pattern NUMERIC_SEGMENT = Pattern.compile("/\\d+(?=/|$)");
+    private static final Pattern FIELD_SLUG = Pattern.compile("/fields/[^/]+$");
+
+    private final SdkMetrics metrics;
+
+    /**
+     * @param metrics where requests are recorded
+     */
+    MetricsInterceptor(SdkMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        final long started = System.nanoTime();
+        int status = 0;
+        try {
+            final ClientHttpResponse response = execution.execute(request, body);
+            status = response.getStatusCode().value();
+            return response;
+        } finally {
+            metrics.recordRequest(endpointOf(request.getURI()), request.getMethod().name(), status,
+                    System.nanoTime() - started);
+        }
+    }
+
+    /**
+     * Reduces a request URI to a low-cardinality endpoint name: the path from
+     * the first known API root, with numeric IDs and field slugs replaced by
+     * placeholders, for example {@code /api/v1/secrets/{id}/fields/{slug}}.
+     *
+     * @param uri the request URI
+     * @return the endpoint name
+     */
+    static String endpointOf(URI uri) {
+        return endpointOf(uri.getRawPath());
+    }
+
+    /**
+     * @param path the request path, without the query string
+     * @return the endpoint name
+     * @see #endpointOf(URI)
+     */
+    static String endpointOf(String path) {
+        if (path == null) {
+            return "other";
+        }
+        int root = -1;
+        for (String candidate : ENDPOINT_ROOTS) {
+            final int index = path.indexOf(candidate);
+            if (index >= 0 && (root < 0 || index < root)) {
+                root = index;
+            }
+        }
+        if (root < 0) {
+            return "other";
+        }
+        final String endpoint = NUMERIC_SEGMENT.matcher(path.substring(root)).replaceAll("/{id}");
+        return FIELD_SLUG.matcher(endpoint).replaceAll("/fields/{slug}");
+    }
+}
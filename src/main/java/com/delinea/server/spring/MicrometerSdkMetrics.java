@@ -0,0 +1,183 @@
+package com.delinea.server.spring;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.BeanFactory;
+
+import com.delinea.server.spring.TokenManager.Token;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Publishes {@link SdkMetrics} to a Micrometer {@link MeterRegistry}. Only
+ * loaded when Micrometer is on the class path.
+ */
+final class MicrometerSdkMetrics implements SdkMetrics {
+    private static final String PREFIX = "tss.sdk.";
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> requestTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> renewalCounters = new ConcurrentHashMap<>();
+    private final Map<Integer, Counter> retryCounters = new ConcurrentHashMap<>();
+    private final Counter attachmentBytes;
+
+    private MicrometerSdkMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.attachmentBytes = Counter.builder(PREFIX + "attachment.bytes")
+                .description("File attachment bytes read from Secret Server")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * @param beanFactory the bean factory to look the registry up in
+     * @return the metrics, or {@code null} if no {@link MeterRegistry} bean is
+     *         defined
+     */
+    static SdkMetrics create(BeanFactory beanFactory) {
+        final MeterRegistry registry = beanFactory.getBeanProvider(MeterRegistry.class).getIfAvailable();
+        return registry != null ? new MicrometerSdkMetrics(registry) : null;
+    }
+
+    @Override
+    public void recordRequest(String endpoint, String method, int status, long nanoseconds) {
+        final String key = method + ' ' + endpoint + ' ' + status;
+        requestTimers.computeIfAbsent(key, ignored -> Timer.builder(PREFIX + "http.client.requests")
+                .description("Requests made by the Secret Server SDK")
+                .tags("endpoint", endpoint, "method", method,
+                        "status", status == 0 ? "IO_ERROR" : Integer.toString(status),
+                        "outcome", outcome(status))
+                .publishPercentileHistogram()
+                .register(registry))
+                .record(nanoseconds, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordRetry(int status) {
+        retryCounters.computeIfAbsent(status, ignored -> Counter.builder(PREFIX + "http.client.retries")
+                .description("Requests retried after an I/O error or a transient status")
+                .tags("status", status == 0 ? "IO_ERROR" : Integer.toString(status))
+                .register(registry))
+                .increment();
+    }
+
+    @Override
+    public void recordTokenRenewal(String grant, boolean success) {
+        final String result = success ? "success" : "failure";
+        renewalCounters.computeIfAbsent(grant + ' ' + result, ignored -> Counter.builder(PREFIX + "token.renewals")
+                .description("Attempts to obtain a new access token")
+                .tags("grant", grant, "result", result)
+                .register(registry))
+                .increment();
+    }
+
+    @Override
+    public void recordAttachmentBytes(long bytes) {
+        attachmentBytes.increment(bytes);
+    }
+
+    @Override
+    public void bindTokenManager(TokenManager tokenManager) {
+        Gauge.builder(PREFIX + "token.age", tokenManager, manager -> {
+            final Token token = manager.peekToken();
+            return token == null ? Double.NaN : Duration.between(token.getIssuedAt(), Instant.now()).toMillis() / 1000.0;
+        }).description("Time since the current access token was issued").baseUnit("seconds").register(registry);
+        Gauge.builder(PREFIX + "token.expires.in", tokenManager, manager -> {
+            final Token token = manager.peekToken();
+            return token == null || token.getExpiresAt() == null ? Double.NaN
+                    : Duration.between(Instant.now(), token.getExpiresAt()).toMillis() / 1000.0;
+        }).description("Time until the current access token expires").baseUnit("seconds").register(registry);
+        Gauge.builder(PREFIX + "authenticated", tokenManager,
+                manager -> manager.getState() == AuthenticationState.AUTHENTICATED ? 1 : 0)
+                .description("Whether the first authentication has succeeded").register(registry);
+    }
+
+    @Override
+    public void bindConnectionPool(PoolingHttpClientConnectionManager connectionManager) {
+        Gauge.builder(PREFIX + "http.pool.leased", connectionManager, pool -> pool.getTotalStats().getLeased())
+                .description("Pooled connections in use").register(registry);
+        Gauge.builder(PREFIX + "http.pool.available", connectionManager, pool -> pool.getTotalStats().getAvailable())
+                .description("Idle pooled connections").register(registry);
+        Gauge.builder(PREFIX + "http.pool.pending", connectionManager, pool -> pool.getTotalStats().getPending())
+                .description("Requests waiting for a pooled connection").register(registry);
+        Gauge.builder(PREFIX + "http.pool.max", connectionManager, pool -> pool.getTotalStats().getMax())
+                .description("Maximum number of pooled connections").register(registry);
+    }
+
+    @Override
+    public void bindSecretCache(SecretCache secretCache) {
+        FunctionCounter.builder(PREFIX + "cache.hits", secretCache, SecretCache::getHitCount)
+                .description("Secret reads served from the cache").register(registry);
+        FunctionCounter.builder(PREFIX + "cache.misses", secretCache, SecretCache::getMissCount)
+                .description("Secret reads not served from the cache").register(registry);
+        FunctionCounter.builder(PREFIX + "cache.evictions", secretCache, SecretCache::getEvictionCount)
+                .description("Secrets evicted to stay within the cache budget").register(registry);
+        Gauge.builder(PREFIX + "cache.size", secretCache, SecretCache::size)
+                .description("Cached secrets").register(registry);
+        Gauge.builder(PREFIX + "cache.bytes", secretCache, SecretCache::getEstimatedBytes)
+                .description("Estimated size of the cached secrets").baseUnit("bytes").register(registry);
+    }
+
+    @Override
+    public void bindCircuitBreaker(CircuitBreaker circuitBreaker) {
+        Gauge.builder(PREFIX + "circuit.breaker.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                .description("Secret Server circuit breaker state: 0 closed, 1 open, 2 half-open")
+                .register(registry);
+    }
+
+    @Override
+    public void bindConcurrencyLimiter(ConcurrencyLimiter limiter) {
+        Gauge.builder(PREFIX + "concurrency.limit", limiter, ConcurrencyLimiter::getLimit)
+                .description("Requests to Secret Server allowed to run at the same time").register(registry);
+        Gauge.builder(PREFIX + "concurrency.in.flight", limiter, ConcurrencyLimiter::getInFlight)
+                .description("Requests to Secret Server running now").register(registry);
+        FunctionCounter.builder(PREFIX + "concurrency.rejected", limiter, ConcurrencyLimiter::getRejectedCount)
+                .description("Requests not sent because the concurrency limit stayed reached").register(registry);
+    }
+
+    @Override
+    public void bindLoadBalancer(LoadBalancer loadBalancer) {
+        for (LoadBalancer.Endpoint endpoint : loadBalancer.getEndpoints()) {
+            Gauge.builder(PREFIX + "node.healthy", endpoint, node -> node.isHealthy() ? 1 : 0)
+                    .description("Whether requests are sent to the Secret Server node")
+                    .tags("node", endpoint.getBaseUrl()).register(registry);
+            Gauge.builder(PREFIX + "node.latency", endpoint, node -> node.getLatencyNanos() / 1e9)
+                    .description("Moving average of the Secret Server node's response time")
+                    .tags("node", endpoint.getBaseUrl()).baseUnit("seconds").register(registry);
+        }
+        FunctionCounter.builder(PREFIX + "http.client.hedged", loadBalancer, LoadBalancer::getHedgeCount)
+                .description("Reads also sent to a second node because the first was slow").register(registry);
+    }
+
+    @Override
+    public void bindSecretServer(SecretServer secretServer) {
+        FunctionCounter.builder(PREFIX + "secret.fetches", secretServer, SecretServer::getFetchCount)
+                .description("Secrets fetched from Secret Server").register(registry);
+        FunctionCounter.builder(PREFIX + "secret.coalesced", secretServer, SecretServer::getCoalescedCount)
+                .description("Secret reads that joined a fetch already in flight").register(registry);
+    }
+
+    private static String outcome(int status) {
+        if (status == 0) {
+            return "UNKNOWN";
+        } else if (status < 200) {
+            return "INFORMATIONAL";
+        } else if (status < 300) {
+            return "SUCCESS";
+        } else if (status < 400) {
+            return "REDIRECTION";
+        } else if (status < 500) {
+            return "CLIENT_ERROR";
+        }
+        return "SERVER_ERROR";
+    }
+}
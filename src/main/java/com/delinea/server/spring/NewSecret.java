@@ -0,0 +1,28 @@
+package com.delinea.server.spring;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lombok.Data;
+
+/**
+ * A secret to be created with {@link SecretServer#createSecret(NewSecret)}.
+ * Properties left {@code null} keep the defaults of the template.
+ */
+@Data
+public class NewSecret {
+    /** The template the secret is created from. */
+    private int secretTemplateId;
+
+    /** The folder the secret is created in. */
+    private Integer folderId;
+
+    /** The site the secret is assigned to. */
+    private Integer siteId;
+
+    /** The name of the secret. */
+    private String name;
+
+    /** The values of text fields by slug, for example {@code username} and {@code password}. */
+    private Map<String, String> fields = new LinkedHashMap<>();
+}
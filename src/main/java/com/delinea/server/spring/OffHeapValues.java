@@ -0,0 +1,121 @@
+package com.delinea.server.spring;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * The field values and in-memory file attachments of one cached
+ * {@link Secret}, held in a single direct buffer outside the Java heap.
+ * <p>
+ * One buffer per secret keeps the number of native allocations, and of the
+ * small heap objects that track them, independent of the number of fields.
+ * <p>
+ * Every {@link Secret} instance that reads from the buffer holds a reference
+ * to it: the instance stored in the cache and each one handed out to a caller.
+ * The buffer is overwritten with zeros once the last reference is released;
+ * reading afterwards fails with an {@link IllegalStateException}. All access
+ * is synchronized, so a read never observes a partly wiped value.
+ */
+final class OffHeapValues implements AutoCloseable {
+    private static final byte[] ZEROS = new byte[FieldContent.BUFFER_SIZE];
+
+    private final ByteBuffer buffer;
+    private int references = 1;
+    private boolean closed;
+
+    /**
+     * Allocates the buffer, with one reference held by the caller.
+     *
+     * @param capacity the total number of bytes that will be appended
+     */
+    OffHeapValues(int capacity) {
+        this.buffer = ByteBuffer.allocateDirect(capacity);
+    }
+
+    /**
+     * Appends bytes to the buffer.
+     *
+     * @param bytes the bytes to copy
+     * @return the offset of the copy
+     */
+    synchronized int append(byte[] bytes) {
+        final int offset = buffer.position();
+        buffer.put(bytes);
+        return offset;
+    }
+
+    /**
+     * Copies bytes out of the buffer.
+     *
+     * @param offset   the offset in the buffer
+     * @param target   where the bytes are copied to
+     * @param position the first index of {@code target} written
+     * @param length   the number of bytes to copy
+     */
+    synchronized void get(int offset, byte[] target, int position, int length) {
+        checkOpen();
+        buffer.duplicate().position(offset).get(target, position, length);
+    }
+
+    /**
+     * Decodes a range of the buffer without copying its bytes to the heap.
+     *
+     * @param offset  the offset in the buffer
+     * @param length  the number of bytes to decode
+     * @param charset the charset of the bytes
+     * @return the characters, which the caller may overwrite once done
+     */
+    synchronized char[] decode(int offset, int length, Charset charset) {
+        checkOpen();
+        return FieldContent.decode(buffer.duplicate().position(offset).limit(offset + length), charset);
+    }
+
+    /**
+     * Adds a reference, unless the buffer has already been wiped.
+     *
+     * @return whether the reference was added
+     */
+    synchronized boolean retain() {
+        if (closed) {
+            return false;
+        }
+        references++;
+        return true;
+    }
+
+    /** Releases a reference, wiping the buffer once none is left. */
+    synchronized void release() {
+        if (--references == 0) {
+            close();
+        }
+    }
+
+    /** @return the size of the buffer, in bytes */
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    /** @return whether the buffer has been wiped */
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /** Overwrites the buffer with zeros, whatever references remain. Later reads fail. */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        final ByteBuffer zeroed = buffer.duplicate().clear();
+        while (zeroed.hasRemaining()) {
+            zeroed.put(ZEROS, 0, Math.min(ZEROS.length, zeroed.remaining()));
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The values of this secret have been wiped");
+        }
+    }
+}
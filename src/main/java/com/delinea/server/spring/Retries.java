@@ -0,0 +1,24 @@
+package com.delinea.server.spring;
+
+/**
+ * Counts the requests sent again on the current thread, whether replayed after
+ * a rejected access token or retried after an I/O error or a transient status,
+ * so JFR events can report how many retries an operation needed by comparing
+ * the count before and after.
+ */
+final class Retries {
+    private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+
+    private Retries() {
+    }
+
+    /** Records one request sent again. */
+    static void record() {
+        COUNT.get()[0]++;
+    }
+
+    /** @return the number of requests sent again on this thread so far */
+    static int count() {
+        return COUNT.get()[0];
+    }
+}
@@ -0,0 +1,48 @@
+package com.delinea.server.spring;
+
+/**
+ * Limits the extra load that retries add to Secret Server.
+ * <p>
+ * Every request deposits {@code ratio} of a retry into the budget and every
+ * retry withdraws a whole one. The budget is also refilled at
+ * {@code minPerSecond}, so occasional retries are allowed even at low traffic.
+ * Retries are therefore capped at roughly {@code ratio} times the request rate
+ * plus {@code minPerSecond}, however many requests are failing.
+ */
+class RetryBudget {
+    private final double ratio;
+    private final double minPerSecond;
+    private final double capacity;
+    private double balance;
+    private long refilledAt = System.nanoTime();
+
+    /**
+     * Creates a full budget.
+     *
+     * @param ratio        the retries earned per request
+     * @param minPerSecond the retries allowed per second regardless of traffic
+     */
+    RetryBudget(double ratio, double minPerSecond) {
+        this.ratio = ratio;
+        this.minPerSecond = minPerSecond;
+        this.capacity = Math.max(1, minPerSecond);
+        this.balance = capacity;
+    }
+
+    /** Deposits the share of a retry earned by one request. */
+    synchronized void onRequest() {
+        balance = Math.min(capacity, balance + ratio);
+    }
+
+    /** @return whether a retry may be made, withdrawing it from the budget if so */
+    synchronized boolean tryRetry() {
+        final long now = System.nanoTime();
+        balance = Math.min(capacity, balance + minPerSecond * (now - refilledAt) / 1e9);
+        refilledAt = now;
+        if (balance < 1) {
+            return false;
+        }
+        balance -= 1;
+        return true;
+    }
+}
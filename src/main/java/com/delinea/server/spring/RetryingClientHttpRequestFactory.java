@@ -0,0 +1,276 @@
+package com.delinea.server.spring;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import lombok.Data;
+
+/**
+ * Retries idempotent requests that fail with an I/O error or a transient
+ * status, with exponential backoff and full jitter, and optionally guards them
+ * with a {@link CircuitBreaker}.
+ * <p>
+ * GET, HEAD and OPTIONS requests are retried, as are POSTs to the token
+ * endpoints. A {@code Retry-After} header on a {@code 429} or {@code 503}
+ * response replaces the computed backoff; if it asks for a longer wait than
+ * the maximum backoff, the response is returned as is. Every retry is drawn
+ * from a {@link RetryBudget} shared by all requests. If the circuit breaker
+ * opens while a request waits to be retried, the last response is returned,
+ * or the last I/O error rethrown, rather than a circuit breaker error.
+ * <p>
+ * Because this wraps the request factory rather than adding an interceptor,
+ * every exchange is covered, including the replay after {@code 401
+ * Unauthorized}.
+ */
+class RetryingClientHttpRequestFactory implements ClientHttpRequestFactory {
+    private static final Logger log = LoggerFactory.getLogger(RetryingClientHttpRequestFactory.class);
+    private static final Set<HttpMethod> IDEMPOTENT_METHODS = Set.of(HttpMethod.GET, HttpMethod.HEAD,
+            HttpMethod.OPTIONS);
+    private static final Set<Integer> RETRYABLE_STATUSES = Set.of(429, 502, 503, 504);
+
+    /** Retry and circuit breaker settings. */
+    @Data
+    static class Settings {
+        private int maxRetries = 2;
+        private Duration initialBackoff = Duration.ofMillis(100);
+        private Duration maxBackoff = Duration.ofSeconds(2);
+        private double budgetRatio = 0.1;
+        private double budgetMinPerSecond = 10;
+        private int circuitBreakerFailureThreshold = 5;
+        private Duration circuitBreakerOpenDuration = Duration.ofSeconds(30);
+    }
+
+    private final ClientHttpRequestFactory delegate;
+    private final Settings settings;
+    private final RetryBudget budget;
+    private final CircuitBreaker circuitBreaker;
+    private final SdkMetrics metrics;
+
+    /**
+     * Wraps a request factory.
+     *
+     * @param delegate       creates the requests that are actually sent
+     * @param settings       the retry settings
+     * @param budget         the budget shared with other factories
+     * @param circuitBreaker the breaker, or {@code null} for none
+     * @param metrics        where retries are recorded
+     */
+    RetryingClientHttpRequestFactory(ClientHttpRequestFactory delegate, Settings settings, RetryBudget budget,
+            CircuitBreaker circuitBreaker, SdkMetrics metrics) {
+        this.delegate = delegate;
+        this.settings = settings;
+        this.budget = budget;
+        this.circuitBreaker = circuitBreaker;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        return new RetryingRequest(uri, httpMethod);
+    }
+
+    private boolean isRetryable(URI uri, HttpMethod method) {
+        if (IDEMPOTENT_METHODS.contains(method)) {
+            return true;
+        }
+        final String path = uri.getPath();
+        return HttpMethod.POST.equals(method) && path != null
+                && (path.endsWith("/oauth2/token") || path.endsWith("/oauth2/token/xpmplatform"));
+    }
+
+    /** @return whether a response with this status counts against the circuit breaker */
+    static boolean isFailure(int status) {
+        return status >= 500 && status != 501;
+    }
+
+    /**
+     * Returns the delay before retry {@code retry} (1-based): a random duration
+     * up to {@code initialBackoff * 2^(retry - 1)}, capped at the maximum.
+     */
+    private long backoffNanos(int retry) {
+        final long ceiling = Math.min(settings.getMaxBackoff().toNanos(),
+                settings.getInitialBackoff().toNanos() << Math.min(retry - 1, 30));
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /** @return the wait requested by {@code Retry-After}, or -1 if absent or invalid */
+    private static long retryAfterNanos(HttpHeaders headers) {
+        final String value = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            try {
+                final ZonedDateTime at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(ZonedDateTime.now(at.getZone()), at).toNanos());
+            } catch (DateTimeParseException ignored) {
+                return -1;
+            }
+        }
+    }
+
+    /** Buffers the request so it can be sent again. */
+    private class RetryingRequest implements ClientHttpRequest {
+        private final URI uri;
+        private final HttpMethod method;
+        private final HttpHeaders headers = new HttpHeaders();
+        private final Map<String, Object> attributes = new LinkedHashMap<>();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        RetryingRequest(URI uri, HttpMethod method) {
+            this.uri = uri;
+            this.method = method;
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return method;
+        }
+
+        @Override
+        public URI getURI() {
+            return uri;
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public OutputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            final boolean retryable = settings.getMaxRetries() > 0 && isRetryable(uri, method);
+            budget.onRequest();
+            // the outcome of the previous attempt, returned or rethrown if the breaker stops the retry
+            ClientHttpResponse previousResponse = null;
+            IOException previousError = null;
+            for (int retry = 0;; retry++) {
+                if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+                    final IOException open = new IOException("Secret Server circuit breaker is open for another "
+                            + circuitBreaker.getRemainingOpenTime().toMillis() + " ms");
+                    if (previousResponse != null) {
+                        return previousResponse;
+                    }
+                    if (previousError != null) {
+                        previousError.addSuppressed(open);
+                        throw previousError;
+                    }
+                    throw open;
+                }
+                if (previousResponse != null) {
+                    previousResponse.close();
+                    previousResponse = null;
+                }
+                previousError = null;
+                final boolean lastAttempt = !retryable || retry >= settings.getMaxRetries();
+                ClientHttpResponse response = null;
+                final int status;
+                try {
+                    response = send();
+                    status = response.getStatusCode().value();
+                } catch (ConcurrencyLimitingClientHttpRequestFactory.LimitReachedException e) {
+                    // already waited for a permit, and the server was never asked
+                    if (circuitBreaker != null) {
+                        circuitBreaker.onAbandoned();
+                    }
+                    throw e;
+                } catch (IOException e) {
+                    if (response != null) {
+                        response.close();
+                    }
+                    if (circuitBreaker != null) {
+                        circuitBreaker.onFailure();
+                    }
+                    if (lastAttempt || !budget.tryRetry()) {
+                        throw e;
+                    }
+                    log.debug("Retrying {} {} after I/O error: {}", method, uri, e.getMessage());
+                    previousError = e;
+                    pause(retry + 1, -1, 0);
+                    continue;
+                } catch (RuntimeException e) {
+                    if (circuitBreaker != null) {
+                        circuitBreaker.onAbandoned();
+                    }
+                    throw e;
+                }
+
+                if (circuitBreaker != null) {
+                    if (isFailure(status)) {
+                        circuitBreaker.onFailure();
+                    } else {
+                        circuitBreaker.onSuccess();
+                    }
+                }
+                if (lastAttempt || !RETRYABLE_STATUSES.contains(status)) {
+                    return response;
+                }
+                final long retryAfter = retryAfterNanos(response.getHeaders());
+                if (retryAfter > settings.getMaxBackoff().toNanos() || !budget.tryRetry()) {
+                    return response;
+                }
+                log.debug("Retrying {} {} after status {}", method, uri, status);
+                previousResponse = response;
+                try {
+                    pause(retry + 1, retryAfter, status);
+                } catch (IOException e) {
+                    response.close();
+                    throw e;
+                }
+            }
+        }
+
+        private ClientHttpResponse send() throws IOException {
+            final ClientHttpRequest request = delegate.createRequest(uri, method);
+            request.getHeaders().putAll(headers);
+            request.getAttributes().putAll(attributes);
+            if (body.size() > 0) {
+                body.writeTo(request.getBody());
+            }
+            return request.execute();
+        }
+
+        private void pause(int retry, long retryAfterNanos, int status) throws IOException {
+            Retries.record();
+            metrics.recordRetry(status);
+            try {
+                TimeUnit.NANOSECONDS.sleep(retryAfterNanos >= 0 ? retryAfterNanos : backoffNanos(retry));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to retry " + method + " " + uri);
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.delinea.server.spring;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Objects;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores the SDK client credentials issued by {@code /api/v1/sdk-client-accounts}
+ * in an encrypted local file, so an application registers itself once instead
+ * of on every start.
+ * <p>
+ * The file is encrypted with AES-GCM using a key derived from the onboarding
+ * key, and is bound to the server URL and rule name it was issued for. Readers
+ * and writers take an exclusive lock on a sibling {@code .lock} file, so
+ * processes that share the file register at most once between them.
+ */
+class SdkClientCredentialStore {
+    /** A registered SDK client. */
+    static final class Credentials {
+        private final String clientId;
+        private final String clientSecret;
+
+        Credentials(String clientId, String clientSecret) {
+            this.clientId = clientId;
+            this.clientSecret = clientSecret;
+        }
+
+        String getClientId() {
+            return clientId;
+        }
+
+        String getClientSecret() {
+            return clientSecret;
+        }
+
+        boolean sameAs(Credentials other) {
+            return other != null && Objects.equals(clientId, other.clientId)
+                    && Objects.equals(clientSecret, other.clientSecret);
+        }
+    }
+
+    /** Registers a new SDK client with the server. */
+    interface Registration {
+        /**
+         * @return the issued credentials
+         * @throws Exception if registration fails
+         */
+        Credentials register() throws Exception;
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(SdkClientCredentialStore.class);
+    private static final int MAGIC = 0x54535343; // "TSSC"
+    private static final int VERSION = 1;
+    private static final int SALT_LENGTH = 16;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final int KEY_BITS = 256;
+    private static final int PBKDF2_ITERATIONS = 100_000;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final Path file;
+    private final Path lockFile;
+    private final char[] onboardingKey;
+    private final byte[] binding;
+
+    /**
+     * Creates a store.
+     *
+     * @param file          the credential file
+     * @param onboardingKey the onboarding key the encryption key is derived from
+     * @param serverUrl     the server the credentials were issued by
+     * @param ruleName      the onboarding rule the credentials were issued for
+     */
+    SdkClientCredentialStore(Path file, String onboardingKey, String serverUrl, String ruleName) {
+        this.file = file.toAbsolutePath();
+        this.lockFile = this.file.resolveSibling(this.file.getFileName() + ".lock");
+        this.onboardingKey = onboardingKey.toCharArray();
+        this.binding = (serverUrl + "\n" + ruleName).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the stored credentials, registering and storing new ones if there
+     * are none or if they are the {@code rejected} ones.
+     *
+     * @param rejected     credentials the server refused, or {@code null}
+     * @param registration registers a new SDK client
+     * @return usable credentials
+     * @throws Exception if registration fails
+     */
+    Credentials obtain(Credentials rejected, Registration registration) throws Exception {
+        Files.createDirectories(file.getParent());
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // released when the channel is closed
+            channel.lock();
+            final Credentials stored = read();
+            if (stored != null && !stored.sameAs(rejected)) {
+                return stored;
+            }
+            final Credentials registered = registration.register();
+            if (registered != null && registered.clientId != null && registered.clientSecret != null) {
+                write(registered);
+            }
+            return registered;
+        }
+    }
+
+    private Credentials read() {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                log.warn("Ignoring SDK client credential file {} with an unknown format", file);
+                return null;
+            }
+            final byte[] salt = in.readNBytes(SALT_LENGTH);
+            final byte[] iv = in.readNBytes(IV_LENGTH);
+            final byte[] plain = cipher(Cipher.DECRYPT_MODE, salt, iv).doFinal(in.readAllBytes());
+            try (DataInputStream fields = new DataInputStream(new ByteArrayInputStream(plain))) {
+                return new Credentials(fields.readUTF(), fields.readUTF());
+            } finally {
+                Arrays.fill(plain, (byte) 0);
+            }
+        } catch (IOException | GeneralSecurityException e) {
+            log.warn("Ignoring unreadable SDK client credential file {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private void write(Credentials credentials) throws IOException, GeneralSecurityException {
+        final byte[] salt = new byte[SALT_LENGTH];
+        final byte[] iv = new byte[IV_LENGTH];
+        RANDOM.nextBytes(salt);
+        RANDOM.nextBytes(iv);
+
+        final ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        try (DataOutputStream fields = new DataOutputStream(plain)) {
+            fields.writeUTF(credentials.getClientId());
+            fields.writeUTF(credentials.getClientSecret());
+        }
+        final byte[] plainBytes = plain.toByteArray();
+        final byte[] encrypted;
+        try {
+            encrypted = cipher(Cipher.ENCRYPT_MODE, salt, iv).doFinal(plainBytes);
+        } finally {
+            Arrays.fill(plainBytes, (byte) 0);
+        }
+
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(content)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.write(salt);
+            out.write(iv);
+            out.write(encrypted);
+        }
+
+        final Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            restrictToOwner(temp);
+            Files.write(temp, content.toByteArray());
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Cipher cipher(int mode, byte[] salt, byte[] iv) throws GeneralSecurityException {
+        final PBEKeySpec spec = new PBEKeySpec(onboardingKey, salt, PBKDF2_ITERATIONS, KEY_BITS);
+        final byte[] key;
+        try {
+            key = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+        }
+        final Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(mode, new SecretKeySpec(key, "AES"), new GCMParameterSpec(TAG_BITS, iv));
+        Arrays.fill(key, (byte) 0);
+        cipher.updateAAD(binding);
+        return cipher;
+    }
+
+    private static void restrictToOwner(Path path) {
+        try {
+            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException | IOException e) {
+            // not a POSIX file system; rely on the permissions of the directory
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.delinea.server.spring;
+
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Records what the SDK does: HTTP requests, token renewals, attachment
+ * transfers, connection pool and cache usage.
+ * <p>
+ * When Micrometer is on the class path and the application defines a
+ * {@code MeterRegistry} bean, the metrics are published to it. Otherwise
+ * {@link #NOOP} is used and nothing is recorded; in particular no interceptor
+ * is added to the request path.
+ */
+interface SdkMetrics {
+    /** Records nothing. */
+    SdkMetrics NOOP = new SdkMetrics() {
+    };
+
+    /**
+     * Records one HTTP request.
+     *
+     * @param endpoint    the request path with IDs replaced by placeholders
+     * @param method      the HTTP method
+     * @param status      the response status code, or {@code 0} if no response
+     *                    was received
+     * @param nanoseconds how long the request took
+     */
+    default void recordRequest(String endpoint, String method, int status, long nanoseconds) {
+    }
+
+    /**
+     * Records one retried request.
+     *
+     * @param status the status code that caused the retry, or {@code 0} for an
+     *               I/O error
+     */
+    default void recordRetry(int status) {
+    }
+
+    /**
+     * Records one attempt to obtain a new access token.
+     *
+     * @param grant   {@code refresh} or {@code authenticate}
+     * @param success whether a token was obtained
+     */
+    default void recordTokenRenewal(String grant, boolean success) {
+    }
+
+    /**
+     * Records file attachment bytes read from Secret Server.
+     *
+     * @param bytes the number of bytes
+     */
+    default void recordAttachmentBytes(long bytes) {
+    }
+
+    /**
+     * Publishes the age and remaining lifetime of the current access token.
+     *
+     * @param tokenManager the token manager
+     */
+    default void bindTokenManager(TokenManager tokenManager) {
+    }
+
+    /**
+     * Publishes leased, available and pending connection gauges.
+     *
+     * @param connectionManager the connection pool
+     */
+    default void bindConnectionPool(PoolingHttpClientConnectionManager connectionManager) {
+    }
+
+    /**
+     * Publishes cache hits, misses, evictions and size.
+     *
+     * @param secretCache the cache
+     */
+    default void bindSecretCache(SecretCache secretCache) {
+    }
+
+    /**
+     * Publishes the state of the circuit breaker guarding Secret Server.
+     *
+     * @param circuitBreaker the breaker
+     */
+    default void bindCircuitBreaker(CircuitBreaker circuitBreaker) {
+    }
+
+    /**
+     * Publishes the concurrency limit, the requests running under it and the
+     * callers turned away.
+     *
+     * @param limiter the limiter
+     */
+    default void bindConcurrencyLimiter(ConcurrencyLimiter limiter) {
+    }
+
+    /**
+     * Publishes the health and response time of each Secret Server node and the
+     * number of hedged requests.
+     *
+     * @param loadBalancer the load balancer
+     */
+    default void bindLoadBalancer(LoadBalancer loadBalancer) {
+    }
+
+    /**
+     * Publishes the number of secret fetches and of calls coalesced onto a
+     * fetch already in flight.
+     *
+     * @param secretServer the client
+     */
+    default void bindSecretServer(SecretServer secretServer) {
+    }
+
+    /** @return whether this instance records anything */
+    default boolean isEnabled() {
+        return this != NOOP;
+    }
+
+    /**
+     * Returns Micrometer-backed metrics if Micrometer is present and a
+     * {@code MeterRegistry} bean is defined, and {@link #NOOP} otherwise.
+     *
+     * @param beanFactory the bean factory to look the registry up in
+     * @return the metrics
+     */
+    static SdkMetrics create(BeanFactory beanFactory) {
+        if (beanFactory != null && ClassUtils.isPresent("io.micrometer.core.instrument.MeterRegistry",
+                SdkMetrics.class.getClassLoader())) {
+            final SdkMetrics metrics = MicrometerSdkMetrics.create(beanFactory);
+            if (metrics != null) {
+                return metrics;
+            }
+        }
+        return NOOP;
+    }
+}
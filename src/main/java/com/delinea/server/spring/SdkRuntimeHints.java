@@ -0,0 +1,48 @@
+package com.delinea.server.spring;
+
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.ReflectionHints;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+import com.delinea.platform.model.OAuthTokens;
+import com.delinea.platform.model.ServerResponseModel;
+import com.delinea.platform.model.VaultsResponseModel;
+
+/**
+ * Registers what a GraalVM native image of an application using the SDK needs
+ * at run time but cannot find by static analysis.
+ * <p>
+ * The JSON models are read and written by Jackson through reflection. On top of
+ * the constructors, accessors and {@code @JsonProperty} members registered by
+ * {@link BindingReflectionHintsRegistrar}, their declared fields are
+ * registered, since {@link SecretServerFactoryBean.AccessGrant} and some of
+ * the Platform models have no setters. HttpClient loads the public suffix list,
+ * used to verify TLS host names, and its version from the class path.
+ */
+class SdkRuntimeHints implements RuntimeHintsRegistrar {
+    private static final Class<?>[] JSON_TYPES = {
+            Secret.class,
+            Secret.Field.class,
+            SecretSummary.class,
+            SecretServerFactoryBean.AccessGrant.class,
+            OAuthTokens.class,
+            VaultsResponseModel.class,
+            VaultsResponseModel.Vault.class,
+            VaultsResponseModel.Connection.class,
+            ServerResponseModel.class
+    };
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        final ReflectionHints reflection = hints.reflection();
+        new BindingReflectionHintsRegistrar().registerReflectionHints(reflection, JSON_TYPES);
+        for (Class<?> type : JSON_TYPES) {
+            reflection.registerType(type, MemberCategory.DECLARED_FIELDS);
+        }
+
+        hints.resources().registerPattern("org/publicsuffix/list/effective_tld_names.dat");
+        hints.resources().registerPattern("org/apache/hc/client5/version.properties");
+    }
+}
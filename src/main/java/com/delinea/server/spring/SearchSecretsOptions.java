@@ -0,0 +1,34 @@
+package com.delinea.server.spring;
+
+import lombok.Data;
+
+/**
+ * Filters and paging for {@link SecretServer#searchSecrets(SearchSecretsOptions)}.
+ * Filters left {@code null} are not applied.
+ */
+@Data
+public class SearchSecretsOptions {
+    /** The default number of secrets requested per page. */
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    /** Only secrets in this folder. */
+    private Integer folderId;
+
+    /** Whether secrets in subfolders of {@link #folderId} are included. */
+    private boolean includeSubFolders;
+
+    /** Only secrets created from this template. */
+    private Integer secretTemplateId;
+
+    /** Only secrets assigned to this site. */
+    private Integer siteId;
+
+    /** Only secrets whose name or searchable fields contain this text. */
+    private String searchText;
+
+    /** Whether inactive (deleted) secrets are included. */
+    private boolean includeInactive;
+
+    /** The number of secrets requested per page. */
+    private int pageSize = DEFAULT_PAGE_SIZE;
+}
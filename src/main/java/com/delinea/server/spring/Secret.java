@@ -1,16 +1,31 @@
 package com.delinea.server.spring;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.Cleaner;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Objects;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Supplier;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
  * Java representation of a <i>Secret</i> retrieved from Secret Server.
+ * <p>
+ * Closing a secret only matters for secrets read from a {@link SecretCache}
+ * with off-heap storage; see {@link #close()}.
  */
-public class Secret {
+public class Secret implements AutoCloseable {
     /**
      * Java representation of an <i>Item</i> of a <i>Secret</i>.
      */
@@ -22,7 +37,11 @@ public class Secret {
         private String fieldName;
         private String filename;
         private String value;
+        private FieldContent offHeapValue;
+        private int valueHash;
         private String slug;
+        private FieldContent content;
+        private volatile Supplier<FieldContent> contentLoader;
 
         /**
          * Returns the item ID.
@@ -81,12 +100,80 @@ public class Secret {
 
         /**
          * Returns the value of the field.
+         * <p>
+         * If the value is a file attachment it is decoded from its raw bytes on
+         * each call; use {@link #openStream()} for large or binary attachments. If
+         * the attachment was deferred, it is loaded on the first call and kept for
+         * later calls.
          * 
          * @return the field value as a string
          */
         @JsonProperty("itemValue")
         public String getValue() {
-            return value;
+            final FieldContent loaded = loadContent();
+            if (loaded != null) {
+                return loaded.asString();
+            }
+            return offHeapValue != null ? offHeapValue.asString() : value;
+        }
+
+        /**
+         * Returns the value of the field as characters.
+         * <p>
+         * When the secret is held in a cache with off-heap storage, the value is
+         * decoded straight from the off-heap buffer and no {@link String} is
+         * created, so the caller can overwrite the array once done with it.
+         *
+         * @return a new array holding the field value, or {@code null} if the
+         *         field has no value
+         * @throws IllegalStateException if the secret has been
+         *                               {@link Secret#close() closed}
+         */
+        @JsonIgnore
+        public char[] getValueChars() {
+            final FieldContent loaded = loadContent();
+            if (loaded != null) {
+                return loaded.asChars();
+            }
+            if (offHeapValue != null) {
+                return offHeapValue.asChars();
+            }
+            return value != null ? value.toCharArray() : null;
+        }
+
+        /**
+         * Opens a stream over the raw bytes of the value of this field.
+         * <p>
+         * For file attachments this returns the bytes exactly as Secret Server
+         * sent them, without holding more than the configured spill threshold on
+         * the heap. For other fields it returns the UTF-8 encoding of
+         * {@link #getValue()}.
+         *
+         * @return a stream the caller must close
+         * @throws IOException if a spilled attachment cannot be read
+         */
+        public InputStream openStream() throws IOException {
+            final FieldContent loaded = loadContent();
+            if (loaded != null) {
+                return loaded.openStream();
+            }
+            if (offHeapValue != null) {
+                return offHeapValue.openStream();
+            }
+            return new ByteArrayInputStream(value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private FieldContent loadContent() {
+            if (contentLoader != null) {
+                synchronized (this) {
+                    final Supplier<FieldContent> loader = contentLoader;
+                    if (loader != null) {
+                        content = loader.get();
+                        contentLoader = null;
+                    }
+                }
+            }
+            return content;
         }
 
         /**
@@ -106,6 +193,134 @@ public class Secret {
         void setValue(final String value) {
             this.value = value;
         }
+
+        /**
+         * Sets the raw content of this file attachment field.
+         *
+         * @param content the downloaded attachment
+         */
+        void setContent(final FieldContent content) {
+            this.content = content;
+        }
+
+        /**
+         * Defers loading the content of this field until its value is first
+         * read.
+         *
+         * @param loader supplies the content when it is first needed
+         */
+        void deferContent(final Supplier<FieldContent> loader) {
+            this.contentLoader = loader;
+        }
+
+        /** @return whether the content of this field is deferred and not loaded yet */
+        boolean isContentDeferred() {
+            return contentLoader != null;
+        }
+
+        private void writeTo(final DataOutputStream out) throws IOException {
+            out.writeInt(id);
+            out.writeInt(fieldId);
+            out.writeInt(fileAttachmentId);
+            writeString(out, fieldDescription);
+            writeString(out, fieldName);
+            writeString(out, filename);
+            writeString(out, slug);
+            if (offHeapValue != null) {
+                out.writeInt((int) offHeapValue.size());
+                try (InputStream in = offHeapValue.openStream()) {
+                    in.transferTo(out);
+                }
+            } else {
+                writeString(out, value);
+            }
+            final FieldContent loaded = content;
+            out.writeBoolean(loaded != null);
+            if (loaded != null) {
+                out.writeUTF(loaded.charset().name());
+                out.writeLong(loaded.size());
+                try (InputStream in = loaded.openStream()) {
+                    in.transferTo(out);
+                }
+            }
+        }
+
+        private static Field readFrom(final DataInputStream in, final long spillThreshold) throws IOException {
+            final Field field = new Field();
+            field.id = in.readInt();
+            field.fieldId = in.readInt();
+            field.fileAttachmentId = in.readInt();
+            field.fieldDescription = readString(in);
+            field.fieldName = readString(in);
+            field.filename = readString(in);
+            field.slug = readString(in);
+            field.value = readString(in);
+            if (in.readBoolean()) {
+                final Charset charset = Charset.forName(in.readUTF());
+                final long size = in.readLong();
+                if (size < 0 || size > Integer.MAX_VALUE) {
+                    throw new IOException("Invalid attachment size " + size);
+                }
+                field.content = FieldContent.read(new ByteArrayInputStream(in.readNBytes((int) size)), charset,
+                        spillThreshold);
+            }
+            return field;
+        }
+
+        /**
+         * Returns the approximate number of heap bytes held by the value,
+         * without loading it if it was deferred.
+         *
+         * @return the heap size of the value
+         */
+        long peekValueSize() {
+            final FieldContent loaded = content;
+            if (loaded != null) {
+                return loaded.heapSize();
+            }
+            if (offHeapValue != null) {
+                return offHeapValue.heapSize();
+            }
+            return value == null ? 0 : 40 + 2L * value.length();
+        }
+
+        /** @return a copy of this field that reads the same values */
+        private Field copy() {
+            final Field copy = new Field();
+            copy.id = id;
+            copy.fieldId = fieldId;
+            copy.fileAttachmentId = fileAttachmentId;
+            copy.fieldDescription = fieldDescription;
+            copy.fieldName = fieldName;
+            copy.filename = filename;
+            copy.value = value;
+            copy.offHeapValue = offHeapValue;
+            copy.valueHash = valueHash;
+            copy.slug = slug;
+            synchronized (this) {
+                copy.content = content;
+                copy.contentLoader = contentLoader;
+            }
+            return copy;
+        }
+
+        /** Makes the off-heap values of this field unreadable. */
+        private void wipe() {
+            if (offHeapValue != null) {
+                offHeapValue = FieldContent.WIPED;
+            }
+            if (content instanceof FieldContent.OffHeap) {
+                content = FieldContent.WIPED;
+            }
+        }
+
+        /** @return the hash code of the value string, also once it has moved off the heap */
+        private int valueHash() {
+            if (offHeapValue != null) {
+                return valueHash;
+            }
+            return value != null ? value.hashCode() : 0;
+        }
     }
 
     private String name;
@@ -123,6 +338,9 @@ public class Secret {
     
     // List of Field objects
     private List<Field> fields = new ArrayList<>();
+    private OffHeapValues offHeapValues;
+    private Cleaner.Cleanable reference;
+    private boolean closed;
 
     /**
      * Returns the name of the secret.
@@ -242,6 +460,212 @@ public class Secret {
         return Collections.unmodifiableList(fields); // Return an unmodifiable view
     }
 
+    /**
+     * Returns a cheap fingerprint of the parts of this secret that change when it
+     * is edited or rotated: the last password change attempt and the slug, value,
+     * file name and file attachment ID of each field. File attachment contents
+     * are not read; a new upload changes the file attachment ID.
+     *
+     * @return the fingerprint
+     */
+    long fingerprint() {
+        long hash = lastPasswordChangeAttempt != null ? lastPasswordChangeAttempt.getTime() : 0;
+        hash = 31 * hash + Objects.hash(name, active);
+        for (Field field : fields) {
+            hash = 31 * hash + Objects.hash(field.slug, field.valueHash(), field.filename, field.fileAttachmentId);
+        }
+        return hash;
+    }
+
+    /**
+     * Moves the text field values and in-memory file attachments of this secret
+     * to one direct buffer outside the Java heap. Deferred file attachments
+     * stay on the heap once loaded, and spilled ones stay in their file.
+     * <p>
+     * This instance holds a reference to the buffer until it is closed or no
+     * longer reachable.
+     */
+    synchronized void moveValuesOffHeap() {
+        if (offHeapValues != null) {
+            return;
+        }
+        final List<byte[]> texts = new ArrayList<>(fields.size());
+        long capacity = 0;
+        for (Field field : fields) {
+            final byte[] text = field.value != null ? field.value.getBytes(StandardCharsets.UTF_8) : null;
+            texts.add(text);
+            capacity += (text != null ? text.length : 0) + (field.content != null ? field.content.inMemorySize() : 0);
+        }
+        if (capacity == 0 || capacity > Integer.MAX_VALUE) {
+            return;
+        }
+
+        final OffHeapValues values = new OffHeapValues((int) capacity);
+        for (int i = 0; i < fields.size(); i++) {
+            final Field field = fields.get(i);
+            final byte[] text = texts.get(i);
+            if (text != null) {
+                field.offHeapValue = new FieldContent.OffHeap(values, values.append(text), text.length,
+                        StandardCharsets.UTF_8);
+                field.valueHash = field.value.hashCode();
+                field.value = null;
+                Arrays.fill(text, (byte) 0);
+            }
+            if (field.content != null) {
+                field.content = field.content.moveTo(values);
+            }
+        }
+        offHeapValues = values;
+        reference = FieldContent.CLEANER.register(this, values::release);
+    }
+
+    /**
+     * Returns an instance that reads the same off-heap values as this one but
+     * is closed independently, so closing either leaves the other readable.
+     * Without off-heap values this instance is returned.
+     *
+     * @return the instance, or {@code null} if the values have been wiped
+     */
+    synchronized Secret share() {
+        if (offHeapValues == null) {
+            return this;
+        }
+        if (closed || !offHeapValues.retain()) {
+            return null;
+        }
+        final Secret copy = new Secret();
+        copy.name = name;
+        copy.secretTemplateName = secretTemplateName;
+        copy.lastHeartBeatStatus = lastHeartBeatStatus;
+        copy.lastHeartBeatCheck = lastHeartBeatCheck;
+        copy.lastPasswordChangeAttempt = lastPasswordChangeAttempt;
+        copy.id = id;
+        copy.folderId = folderId;
+        copy.secretTemplateId = secretTemplateId;
+        copy.siteId = siteId;
+        copy.active = active;
+        copy.checkedOut = checkedOut;
+        copy.checkoutEnabled = checkoutEnabled;
+        for (Field field : fields) {
+            copy.fields.add(field.copy());
+        }
+        copy.offHeapValues = offHeapValues;
+        copy.reference = FieldContent.CLEANER.register(copy, offHeapValues::release);
+        return copy;
+    }
+
+    /**
+     * Releases the field values of this secret that are held off the heap.
+     * <p>
+     * This only has an effect on secrets read from a {@link SecretCache} with
+     * off-heap storage. Each secret returned by the cache holds its own
+     * reference to the values, as does the copy the cache keeps; the values
+     * are overwritten with zeros once every instance has been closed or
+     * garbage collected. Reading the values of this instance afterwards throws
+     * an {@link IllegalStateException}; copy what you need to keep with
+     * {@link Field#getValueChars()} first.
+     */
+    @Override
+    public synchronized void close() {
+        if (reference == null || closed) {
+            return;
+        }
+        closed = true;
+        fields.forEach(Field::wipe);
+        reference.clean();
+    }
+
+    /** @return whether this instance has been closed or its off-heap values wiped */
+    synchronized boolean isWiped() {
+        return offHeapValues != null && (closed || offHeapValues.isClosed());
+    }
+
+    /** @return whether any field has deferred content that is not loaded yet */
+    boolean hasDeferredContent() {
+        return fields.stream().anyMatch(Field::isContentDeferred);
+    }
+
+    /**
+     * Writes this secret in the binary format read by
+     * {@link #readFrom(DataInputStream, long)}. File attachment contents are
+     * written in full; deferred contents are not loaded and must be excluded by
+     * the caller.
+     *
+     * @param out where the secret is written
+     * @throws IOException if writing fails
+     */
+    void writeTo(final DataOutputStream out) throws IOException {
+        out.writeInt(id);
+        out.writeInt(folderId);
+        out.writeInt(secretTemplateId);
+        out.writeInt(siteId);
+        writeString(out, name);
+        writeString(out, secretTemplateName);
+        writeString(out, lastHeartBeatStatus);
+        out.writeLong(lastHeartBeatCheck != null ? lastHeartBeatCheck.getTime() : Long.MIN_VALUE);
+        out.writeLong(lastPasswordChangeAttempt != null ? lastPasswordChangeAttempt.getTime() : Long.MIN_VALUE);
+        out.writeBoolean(active);
+        out.writeBoolean(checkedOut);
+        out.writeBoolean(checkoutEnabled);
+        out.writeInt(fields.size());
+        for (Field field : fields) {
+            field.writeTo(out);
+        }
+    }
+
+    /**
+     * Reads a secret written by {@link #writeTo(DataOutputStream)}.
+     *
+     * @param in             where the secret is read from
+     * @param spillThreshold the largest file attachment kept in memory
+     * @return the secret
+     * @throws IOException if reading fails or the data is malformed
+     */
+    static Secret readFrom(final DataInputStream in, final long spillThreshold) throws IOException {
+        final Secret secret = new Secret();
+        secret.id = in.readInt();
+        secret.folderId = in.readInt();
+        secret.secretTemplateId = in.readInt();
+        secret.siteId = in.readInt();
+        secret.name = readString(in);
+        secret.secretTemplateName = readString(in);
+        secret.lastHeartBeatStatus = readString(in);
+        final long lastHeartBeatCheck = in.readLong();
+        secret.lastHeartBeatCheck = lastHeartBeatCheck != Long.MIN_VALUE ? new Date(lastHeartBeatCheck) : null;
+        final long lastPasswordChangeAttempt = in.readLong();
+        secret.lastPasswordChangeAttempt = lastPasswordChangeAttempt != Long.MIN_VALUE
+                ? new Date(lastPasswordChangeAttempt) : null;
+        secret.active = in.readBoolean();
+        secret.checkedOut = in.readBoolean();
+        secret.checkoutEnabled = in.readBoolean();
+        final int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid field count " + count);
+        }
+        for (int i = 0; i < count; i++) {
+            secret.fields.add(Field.readFrom(in, spillThreshold));
+        }
+        return secret;
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
     @Override
     public String toString() {
         return String.format("Secret { id: %d, folderId: %d, name: %s, templateName: %s }", 
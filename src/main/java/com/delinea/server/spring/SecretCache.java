@@ -0,0 +1,352 @@
+package com.delinea.server.spring;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.util.Assert;
+
+/**
+ * A bounded, in-process cache of {@link Secret} objects used by
+ * {@link SecretServer}.
+ * <p>
+ * Each entry expires a fixed time-to-live after it was stored. Once either the
+ * maximum number of entries or the estimated byte budget is exceeded, the least
+ * recently used entries are evicted. Without off-heap storage, cached reads
+ * return the stored {@link Secret} instance, so a hit does not allocate a new
+ * object graph.
+ * Expired entries are kept until they are replaced or evicted, so
+ * {@link #getStale(int, boolean)} can serve them during an outage.
+ * <p>
+ * With off-heap storage, the field values and in-memory file attachments of
+ * each stored secret are moved to a direct buffer, keeping them out of the old
+ * generation. The cache then keeps its own instance of the secret and hands out
+ * a separate instance on each read, all reading the same buffer. The cache
+ * closes its instance when the entry is evicted, replaced or invalidated, and
+ * the buffer is wiped once every instance handed out has also been
+ * {@link Secret#close() closed} or garbage collected, so a secret a caller
+ * still holds stays readable.
+ */
+public class SecretCache {
+    private static final class Entry {
+        private final Secret secret;
+        private final long expiresAt;
+        private final long weight;
+
+        private Entry(Secret secret, long expiresAt, long weight) {
+            this.secret = secret;
+            this.expiresAt = expiresAt;
+            this.weight = weight;
+        }
+    }
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final boolean offHeap;
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long estimatedBytes;
+    private long modifications;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a new cache.
+     *
+     * @param ttl        how long an entry stays valid after it was stored
+     * @param maxEntries the maximum number of cached secrets
+     * @param maxBytes   the maximum estimated size of all cached secrets, in bytes
+     */
+    public SecretCache(Duration ttl, int maxEntries, long maxBytes) {
+        this(ttl, maxEntries, maxBytes, false);
+    }
+
+    /**
+     * Creates a new cache, optionally keeping secret values off the heap.
+     *
+     * @param ttl        how long an entry stays valid after it was stored
+     * @param maxEntries the maximum number of cached secrets
+     * @param maxBytes   the maximum estimated size of all cached secrets, in
+     *                   bytes, on and off the heap
+     * @param offHeap    whether field values are moved to wipeable direct
+     *                   buffers
+     */
+    public SecretCache(Duration ttl, int maxEntries, long maxBytes, boolean offHeap) {
+        Assert.isTrue(ttl != null && !ttl.isNegative() && !ttl.isZero(), "ttl must be positive");
+        Assert.isTrue(maxEntries > 0, "maxEntries must be positive");
+        Assert.isTrue(maxBytes > 0, "maxBytes must be positive");
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * Returns the cached {@link Secret}, or {@code null} if there is no live
+     * entry for it.
+     *
+     * @param id                   the ID of the secret
+     * @param fetchFileAttachments whether the secret was fetched with its file
+     *                             attachments
+     * @return the cached secret or {@code null}
+     */
+    public Secret get(int id, boolean fetchFileAttachments) {
+        final long key = key(id, fetchFileAttachments);
+        synchronized (this) {
+            final Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt - System.nanoTime() > 0) {
+                final Secret secret = entry.secret.share();
+                if (secret != null) {
+                    hits.increment();
+                    return secret;
+                }
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Returns the cached {@link Secret} if it has not expired, without counting
+     * a hit or a miss.
+     *
+     * @param id                   the ID of the secret
+     * @param fetchFileAttachments whether the secret was fetched with its file
+     *                             attachments
+     * @return the cached secret or {@code null}
+     */
+    synchronized Secret peek(int id, boolean fetchFileAttachments) {
+        final Entry entry = entries.get(key(id, fetchFileAttachments));
+        return entry != null && entry.expiresAt - System.nanoTime() > 0 ? entry.secret.share() : null;
+    }
+
+    /**
+     * Returns the cached {@link Secret} even if it has expired. Expired entries
+     * are kept until they are replaced, invalidated or evicted, so they can be
+     * served while Secret Server is unreachable.
+     *
+     * @param id                   the ID of the secret
+     * @param fetchFileAttachments whether the secret was fetched with its file
+     *                             attachments
+     * @return the cached secret or {@code null}
+     */
+    public Secret getStale(int id, boolean fetchFileAttachments) {
+        final long key = key(id, fetchFileAttachments);
+        synchronized (this) {
+            final Entry entry = entries.get(key);
+            return entry != null ? entry.secret.share() : null;
+        }
+    }
+
+    /**
+     * Stores a {@link Secret}, evicting the least recently used entries if the
+     * cache is over budget. With off-heap storage, the values of {@code secret}
+     * are moved off the heap in place, and the cache keeps its own instance, so
+     * {@code secret} stays readable after the entry is removed.
+     *
+     * @param id                   the ID of the secret
+     * @param fetchFileAttachments whether the secret was fetched with its file
+     *                             attachments
+     * @param secret               the secret to cache
+     */
+    public void put(int id, boolean fetchFileAttachments, Secret secret) {
+        put(id, fetchFileAttachments, secret, System.nanoTime() + ttlNanos);
+    }
+
+    /**
+     * Stores a {@link Secret} that has already expired, so it is only returned
+     * by {@link #getStale(int, boolean)} until a fresh copy replaces it.
+     *
+     * @param id                   the ID of the secret
+     * @param fetchFileAttachments whether the secret was fetched with its file
+     *                             attachments
+     * @param secret               the secret to cache
+     */
+    void putExpired(int id, boolean fetchFileAttachments, Secret secret) {
+        put(id, fetchFileAttachments, secret, System.nanoTime());
+    }
+
+    private void put(int id, boolean fetchFileAttachments, Secret secret, long expiresAt) {
+        if (secret == null) {
+            return;
+        }
+        if (offHeap) {
+            secret.moveValuesOffHeap();
+        }
+        final long weight = estimateSize(secret);
+        if (weight > maxBytes) {
+            return;
+        }
+        final Secret stored = secret.share();
+        if (stored == null) {
+            return;
+        }
+        final long key = key(id, fetchFileAttachments);
+        final Entry entry = new Entry(stored, expiresAt, weight);
+        synchronized (this) {
+            final Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                estimatedBytes -= previous.weight;
+                if (previous.secret != stored) {
+                    wipe(previous);
+                }
+            }
+            estimatedBytes += weight;
+            modifications++;
+            evictIfNecessary();
+        }
+    }
+
+    /**
+     * Removes every cached copy of a secret.
+     *
+     * @param id the ID of the secret
+     */
+    public synchronized void invalidate(int id) {
+        remove(key(id, true));
+        remove(key(id, false));
+    }
+
+    /**
+     * Removes one cached copy of a secret.
+     *
+     * @param id                   the ID of the secret
+     * @param fetchFileAttachments whether to remove the copy fetched with its
+     *                             file attachments or the one without
+     */
+    public synchronized void invalidate(int id, boolean fetchFileAttachments) {
+        remove(key(id, fetchFileAttachments));
+    }
+
+    /** Removes all cached secrets. */
+    public synchronized void invalidateAll() {
+        entries.values().forEach(this::wipe);
+        entries.clear();
+        estimatedBytes = 0;
+        modifications++;
+    }
+
+    /** @return the number of cached entries, including any that have expired but not been removed yet */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** @return the estimated size of all cached entries, in bytes */
+    public synchronized long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /** @return the number of reads served from the cache */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /** @return the number of reads that were not served from the cache */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /** @return the number of entries evicted to stay within budget */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /** Receives the entries of the cache. */
+    interface EntryVisitor {
+        void visit(int id, boolean fetchFileAttachments, Secret secret) throws IOException;
+    }
+
+    /**
+     * Visits a point-in-time copy of the cached entries, least recently used
+     * first, without holding the cache lock while visiting. Entries removed
+     * meanwhile stay readable until they have been visited.
+     *
+     * @param visitor receives each entry
+     * @throws IOException if the visitor fails
+     */
+    void forEachEntry(EntryVisitor visitor) throws IOException {
+        final List<Map.Entry<Long, Secret>> copy = new ArrayList<>();
+        synchronized (this) {
+            entries.forEach((key, entry) -> {
+                final Secret secret = entry.secret.share();
+                if (secret != null) {
+                    copy.add(Map.entry(key, secret));
+                }
+            });
+        }
+        try {
+            for (Map.Entry<Long, Secret> entry : copy) {
+                visitor.visit((int) (entry.getKey() >> 1), (entry.getKey() & 1L) != 0, entry.getValue());
+            }
+        } finally {
+            copy.forEach(entry -> closeShared(entry.getValue()));
+        }
+    }
+
+    /** @return a counter that changes whenever an entry is stored or removed */
+    synchronized long getModificationCount() {
+        return modifications;
+    }
+
+    private void evictIfNecessary() {
+        final Iterator<Map.Entry<Long, Entry>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || estimatedBytes > maxBytes) && eldest.hasNext()) {
+            final Entry evicted = eldest.next().getValue();
+            estimatedBytes -= evicted.weight;
+            eldest.remove();
+            wipe(evicted);
+            modifications++;
+            evictions.increment();
+        }
+    }
+
+    private void remove(long key) {
+        final Entry removed = entries.remove(key);
+        if (removed != null) {
+            estimatedBytes -= removed.weight;
+            modifications++;
+            wipe(removed);
+        }
+    }
+
+    private void wipe(Entry entry) {
+        if (offHeap) {
+            entry.secret.close();
+        }
+    }
+
+    private void closeShared(Secret secret) {
+        if (offHeap) {
+            secret.close();
+        }
+    }
+
+    private static long key(int id, boolean fetchFileAttachments) {
+        return ((long) id << 1) | (fetchFileAttachments ? 1L : 0L);
+    }
+
+    /**
+     * Roughly estimates the retained heap size of a {@link Secret}: object
+     * headers, references and two bytes per character of each string.
+     */
+    static long estimateSize(Secret secret) {
+        long size = 96 + sizeOf(secret.getName()) + sizeOf(secret.getSecretTemplateName())
+                + sizeOf(secret.getLastHeartBeatStatus());
+        for (Secret.Field field : secret.getFields()) {
+            size += 64 + sizeOf(field.getFieldDescription()) + sizeOf(field.getFieldName())
+                    + sizeOf(field.getFilename()) + sizeOf(field.getSlug()) + field.peekValueSize();
+        }
+        return size;
+    }
+
+    private static long sizeOf(String value) {
+        return value == null ? 0 : 40 + 2L * value.length();
+    }
+}
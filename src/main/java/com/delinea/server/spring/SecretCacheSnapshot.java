@@ -0,0 +1,288 @@
+package com.delinea.server.spring;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Periodically saves the contents of a {@link SecretCache} to an encrypted
+ * file and restores it when the application starts, so secrets are available
+ * before the first call to Secret Server and while it is unreachable.
+ * <p>
+ * The file is encrypted with AES-GCM using a key supplied by the application
+ * and replaced atomically on every write. Restored secrets are stored as
+ * expired, so they are served only as stale copies until they are revalidated
+ * against Secret Server in the background. Snapshots older than the maximum
+ * age, if one is set, are ignored.
+ */
+class SecretCacheSnapshot implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(SecretCacheSnapshot.class);
+    private static final int MAGIC = 0x54535353; // "TSSS"
+    private static final int VERSION = 2;
+    private static final int HEADER_LENGTH = 16;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final Path file;
+    private final SecretKeySpec key;
+    private final Duration interval;
+    private final long spillThreshold;
+    private final Duration maxAge;
+    private final ScheduledExecutorService scheduler;
+    private final List<Long> restored = new ArrayList<>();
+    private SecretCache cache;
+    private long writtenModificationCount = -1;
+
+    /**
+     * Creates a snapshot.
+     *
+     * @param file           the snapshot file
+     * @param key            a 128, 192 or 256 bit AES key
+     * @param interval       how often the cache is saved
+     * @param spillThreshold the largest restored file attachment kept in memory
+     * @param maxAge         the oldest snapshot that is restored, or
+     *                       {@code null} for no limit
+     */
+    SecretCacheSnapshot(Path file, byte[] key, Duration interval, long spillThreshold, Duration maxAge) {
+        Assert.isTrue(key.length == 16 || key.length == 24 || key.length == 32,
+                "the snapshot key must be 16, 24 or 32 bytes");
+        Assert.isTrue(!interval.isNegative() && !interval.isZero(), "interval must be positive");
+        this.file = file.toAbsolutePath();
+        this.key = new SecretKeySpec(key, "AES");
+        this.interval = interval;
+        this.spillThreshold = spillThreshold;
+        this.maxAge = maxAge;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "tss-sdk-cache-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Loads the snapshot file into the cache as expired entries. A missing,
+     * unreadable, tampered or too old file is ignored.
+     *
+     * @param cache the cache to fill
+     * @return the number of restored secrets
+     */
+    synchronized int restore(SecretCache cache) {
+        this.cache = cache;
+        if (!Files.isRegularFile(file)) {
+            return 0;
+        }
+        // read into the heap rather than mapping the file: a mapping keeps the file open until it is
+        // garbage collected, which stops save() from replacing it on some platforms
+        ByteBuffer data = null;
+        ByteBuffer plain = null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size < HEADER_LENGTH + IV_LENGTH || size > Integer.MAX_VALUE) {
+                log.warn("Ignoring secret cache snapshot {} with an unknown format", file);
+                return 0;
+            }
+            data = ByteBuffer.allocate((int) size);
+            while (data.hasRemaining() && channel.read(data) >= 0) {
+                // keep reading until the buffer is full or the file ends
+            }
+            data.flip();
+            if (data.remaining() < HEADER_LENGTH + IV_LENGTH || data.getInt() != MAGIC
+                    || data.getInt() != VERSION) {
+                log.warn("Ignoring secret cache snapshot {} with an unknown format", file);
+                return 0;
+            }
+            final long savedAt = data.getLong();
+            final Duration age = Duration.ofMillis(System.currentTimeMillis() - savedAt);
+            if (maxAge != null && age.compareTo(maxAge) > 0) {
+                log.warn("Ignoring secret cache snapshot {} saved {} seconds ago", file, age.getSeconds());
+                return 0;
+            }
+            final byte[] iv = new byte[IV_LENGTH];
+            data.get(iv);
+            final Cipher cipher = cipher(Cipher.DECRYPT_MODE, iv, savedAt);
+            plain = ByteBuffer.allocate(cipher.getOutputSize(data.remaining()));
+            cipher.doFinal(data, plain);
+            try (DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(plain.array(), 0, plain.position()))) {
+                final int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    final int id = in.readInt();
+                    final boolean fetchFileAttachments = in.readBoolean();
+                    cache.putExpired(id, fetchFileAttachments, Secret.readFrom(in, spillThreshold));
+                    restored.add(((long) id << 1) | (fetchFileAttachments ? 1L : 0L));
+                }
+            }
+            writtenModificationCount = cache.getModificationCount();
+            log.info("Restored {} secrets from cache snapshot {} saved {} seconds ago", restored.size(), file,
+                    age.getSeconds());
+            return restored.size();
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            log.warn("Ignoring unreadable secret cache snapshot {}: {}", file, e.getMessage());
+            cache.invalidateAll();
+            restored.clear();
+            return 0;
+        } finally {
+            if (data != null) {
+                Arrays.fill(data.array(), (byte) 0);
+            }
+            if (plain != null) {
+                Arrays.fill(plain.array(), (byte) 0);
+            }
+        }
+    }
+
+    /** @return whether {@link #restore(SecretCache)} restored any secrets */
+    synchronized boolean hasRestored() {
+        return !restored.isEmpty();
+    }
+
+    /**
+     * Revalidates the restored secrets in the background and starts saving the
+     * cache periodically.
+     *
+     * @param secretServer fetches fresh copies of the restored secrets
+     */
+    synchronized void start(SecretServer secretServer) {
+        final List<Long> keys = new ArrayList<>(restored);
+        restored.clear();
+        scheduler.execute(() -> revalidate(secretServer, keys));
+        scheduler.scheduleWithFixedDelay(this::saveQuietly, interval.toMillis(), interval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void revalidate(SecretServer secretServer, List<Long> keys) {
+        int failed = 0;
+        for (long key : keys) {
+            final int id = (int) (key >> 1);
+            try {
+                secretServer.refresh(id, (key & 1L) != 0);
+            } catch (HttpClientErrorException.Forbidden | HttpClientErrorException.NotFound e) {
+                // deleted or no longer accessible
+                cache.invalidate(id);
+            } catch (RestClientException e) {
+                // throttled, unauthenticated or unreachable; keep serving the snapshot copy
+                failed++;
+            }
+        }
+        if (failed > 0) {
+            log.warn("Unable to revalidate {} of {} restored secrets; serving the snapshot copies", failed,
+                    keys.size());
+        }
+    }
+
+    private void saveQuietly() {
+        try {
+            save();
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            log.warn("Unable to write secret cache snapshot {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the cache to the snapshot file if it changed since the last write.
+     * Secrets whose file attachments are deferred, or whose values were wiped,
+     * are skipped.
+     *
+     * @throws IOException              if the file cannot be written
+     * @throws GeneralSecurityException if encryption fails
+     */
+    synchronized void save() throws IOException, GeneralSecurityException {
+        if (cache == null || cache.getModificationCount() == writtenModificationCount) {
+            return;
+        }
+        final long modificationCount = cache.getModificationCount();
+        final ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        final int[] count = new int[1];
+        try (DataOutputStream out = new DataOutputStream(plain)) {
+            out.writeInt(0);
+            cache.forEachEntry((id, fetchFileAttachments, secret) -> {
+                if (!secret.hasDeferredContent() && !secret.isWiped()) {
+                    out.writeInt(id);
+                    out.writeBoolean(fetchFileAttachments);
+                    secret.writeTo(out);
+                    count[0]++;
+                }
+            });
+        }
+
+        final long savedAt = System.currentTimeMillis();
+        final byte[] iv = new byte[IV_LENGTH];
+        RANDOM.nextBytes(iv);
+        final byte[] plainBytes = plain.toByteArray();
+        ByteBuffer.wrap(plainBytes).putInt(0, count[0]);
+        final byte[] encrypted;
+        try {
+            encrypted = cipher(Cipher.ENCRYPT_MODE, iv, savedAt).doFinal(plainBytes);
+        } finally {
+            Arrays.fill(plainBytes, (byte) 0);
+        }
+
+        Files.createDirectories(file.getParent());
+        final Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try {
+                Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException e) {
+                // not a POSIX file system; rely on the permissions of the directory
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH + IV_LENGTH);
+                header.putInt(MAGIC).putInt(VERSION).putLong(savedAt).put(iv).flip();
+                channel.write(new ByteBuffer[] { header, ByteBuffer.wrap(encrypted) });
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        writtenModificationCount = modificationCount;
+    }
+
+    private Cipher cipher(int mode, byte[] iv, long savedAt) throws GeneralSecurityException {
+        final Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(mode, key, new GCMParameterSpec(TAG_BITS, iv));
+        cipher.updateAAD(ByteBuffer.allocate(HEADER_LENGTH).putInt(MAGIC).putInt(VERSION).putLong(savedAt).array());
+        return cipher;
+    }
+
+    /** Writes the cache one last time and stops the background tasks. */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        saveQuietly();
+    }
+}
@@ -0,0 +1,17 @@
+package com.delinea.server.spring;
+
+/**
+ * Receives notifications from {@link SecretServer#watch} when a watched secret
+ * changes.
+ */
+@FunctionalInterface
+public interface SecretChangeListener {
+    /**
+     * Called on the watch thread when a change to a watched secret is detected.
+     * The secret is fetched without file attachment contents; call
+     * {@link SecretServer#getSecret(int)} to read them.
+     *
+     * @param secret the new version of the secret
+     */
+    void secretChanged(Secret secret);
+}
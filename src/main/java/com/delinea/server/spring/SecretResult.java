@@ -0,0 +1,52 @@
+package com.delinea.server.spring;
+
+/**
+ * The outcome of fetching one secret as part of a bulk request.
+ * <p>
+ * Holds either the fetched {@link Secret} or the exception that prevented it
+ * from being fetched.
+ */
+public class SecretResult {
+    private final int id;
+    private final Secret secret;
+    private final RuntimeException error;
+
+    /**
+     * Creates a new result.
+     *
+     * @param id     the ID of the requested secret
+     * @param secret the fetched secret, or {@code null} if the fetch failed
+     * @param error  the failure, or {@code null} if the fetch succeeded
+     */
+    public SecretResult(int id, Secret secret, RuntimeException error) {
+        this.id = id;
+        this.secret = secret;
+        this.error = error;
+    }
+
+    /** @return the ID of the requested secret */
+    public int getId() {
+        return id;
+    }
+
+    /** @return the fetched secret, or {@code null} if the fetch failed */
+    public Secret getSecret() {
+        return secret;
+    }
+
+    /** @return the exception that caused the fetch to fail, or {@code null} */
+    public RuntimeException getError() {
+        return error;
+    }
+
+    /** @return true if the secret was fetched */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    @Override
+    public String toString() {
+        return isSuccess() ? String.format("SecretResult { id: %d, secret: %s }", id, secret)
+                : String.format("SecretResult { id: %d, error: %s }", id, error);
+    }
+}
@@ -0,0 +1,189 @@
+package com.delinea.server.spring;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Iterates over the results of a secret search one page at a time.
+ * <p>
+ * Each page is parsed record by record with a streaming parser, so only the
+ * current page and the next one are ever held in memory. The next page is
+ * requested in the background as soon as the current one arrives.
+ */
+class SecretSearch implements Iterator<SecretSummary>, AutoCloseable {
+    private static final String SECRETS_URI = "/secrets";
+    private static final ObjectMapper OBJECT_MAPPER = Jackson2ObjectMapperBuilder.json().build();
+    private static final ObjectReader SUMMARY_READER = OBJECT_MAPPER.readerFor(SecretSummary.class);
+
+    /** One page of search results. */
+    private static class Page {
+        private final List<SecretSummary> records;
+        private final boolean hasNext;
+
+        Page(List<SecretSummary> records, boolean hasNext) {
+            this.records = records;
+            this.hasNext = hasNext;
+        }
+    }
+
+    private final SecretServer secretServer;
+    private final String uriTemplate;
+    private final Map<String, Object> uriVariables;
+    private final int pageSize;
+    private List<SecretSummary> records = Collections.emptyList();
+    private int index;
+    private int skip;
+    private CompletableFuture<Page> nextPage;
+    private boolean started;
+    private volatile boolean closed;
+
+    /**
+     * Creates a search. Nothing is requested until the first call to
+     * {@link #hasNext()}.
+     *
+     * @param secretServer the client used to request each page
+     * @param options      the filters and page size
+     */
+    SecretSearch(SecretServer secretServer, SearchSecretsOptions options) {
+        this.secretServer = secretServer;
+        this.pageSize = options.getPageSize();
+        this.uriVariables = new HashMap<>();
+
+        final UriComponentsBuilder builder = UriComponentsBuilder.fromPath(SECRETS_URI);
+        addFilter(builder, "folderId", options.getFolderId());
+        if (options.getFolderId() != null) {
+            addFilter(builder, "includeSubFolders", options.isIncludeSubFolders());
+        }
+        addFilter(builder, "secretTemplateId", options.getSecretTemplateId());
+        addFilter(builder, "siteId", options.getSiteId());
+        addFilter(builder, "searchText", options.getSearchText());
+        if (options.isIncludeInactive()) {
+            addFilter(builder, "includeInactive", true);
+        }
+        builder.queryParam("take", "{take}").queryParam("skip", "{skip}");
+        this.uriTemplate = builder.build().toUriString();
+    }
+
+    /** Adds {@code filter.<name>} as a URI variable, so its value is encoded. */
+    private void addFilter(UriComponentsBuilder builder, String name, Object value) {
+        if (value != null) {
+            builder.queryParam("filter." + name, "{" + name + "}");
+            uriVariables.put(name, value);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (!started) {
+            started = true;
+            nextPage = CompletableFuture.completedFuture(fetch(0));
+        }
+        while (index >= records.size()) {
+            if (nextPage == null) {
+                return false;
+            }
+            final Page page = join(nextPage);
+            records = page.records;
+            index = 0;
+            skip += page.records.size();
+            // an empty page ends the search even if the server claims there is more
+            nextPage = page.hasNext && !page.records.isEmpty() && !closed ? prefetch(skip) : null;
+        }
+        return true;
+    }
+
+    @Override
+    public SecretSummary next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return records.get(index++);
+    }
+
+    /** Stops the search and discards any page being prefetched. */
+    @Override
+    public void close() {
+        closed = true;
+        final CompletableFuture<Page> pending = nextPage;
+        if (pending != null) {
+            pending.cancel(false);
+        }
+    }
+
+    private CompletableFuture<Page> prefetch(int from) {
+        return FanOut.supplyAsync(() -> fetch(from));
+    }
+
+    private Page fetch(int from) {
+        final Map<String, Object> variables = new HashMap<>(uriVariables);
+        variables.put("take", pageSize);
+        variables.put("skip", from);
+        return secretServer.execute(uriTemplate, HttpMethod.GET, null, SecretSearch::readPage, variables);
+    }
+
+    /**
+     * Reads a page with a streaming parser, binding each record as it is
+     * reached and skipping every other property.
+     */
+    private static Page readPage(ClientHttpResponse response) throws IOException {
+        final List<SecretSummary> records = new ArrayList<>();
+        boolean hasNext = false;
+        try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(response.getBody())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new RestClientException("Unexpected secret search response");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String name = parser.currentName();
+                final JsonToken value = parser.nextToken();
+                if ("records".equals(name) && value == JsonToken.START_ARRAY) {
+                    JsonToken element;
+                    while ((element = parser.nextToken()) != JsonToken.END_ARRAY && element != null) {
+                        if (element == JsonToken.START_OBJECT) {
+                            records.add(SUMMARY_READER.readValue(parser));
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else if ("hasNext".equals(name) && value.isBoolean()) {
+                    hasNext = parser.getBooleanValue();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return new Page(records, hasNext);
+    }
+
+    private static Page join(CompletableFuture<Page> page) {
+        try {
+            return page.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
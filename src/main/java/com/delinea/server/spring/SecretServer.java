@@ -1,11 +1,58 @@
 package com.delinea.server.spring;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.Assert;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import com.delinea.server.spring.jfr.AttachmentDownloadEvent;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.delinea.server.spring.jfr.GetSecretEvent;
+
 /**
  * A <a href="https://spring.io/projects/spring-framework">Spring Framework</a>
  * <a href=
@@ -16,16 +63,184 @@ import org.springframework.web.util.UriComponentsBuilder;
  * Use the {@link SecretServerFactoryBean} to create and initialize it.
  */
 public class SecretServer extends RestTemplate {
+	private static final String SECRETS_URI = "/secrets";
+	private static final String SECRET_STUB_URI = SECRETS_URI + "/stub";
 	private static final String SECRET_ID_URI = "/secrets/{id}";
 	private static final String SECRET_FILE_ATTACHMENT_URI = SECRET_ID_URI + "/fields/{slug}";
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+	private static final int DEFAULT_ATTACHMENT_CONCURRENCY = 4;
+	private static final long DEFAULT_ATTACHMENT_SPILL_THRESHOLD = 1024 * 1024;
+	private static final Duration DEFAULT_WATCH_INTERVAL = Duration.ofSeconds(60);
+	private static final int DEFAULT_WATCH_REQUESTS_PER_SECOND = 10;
 	private String autoComment;
+	private SecretCache secretCache;
+	private int attachmentConcurrency = DEFAULT_ATTACHMENT_CONCURRENCY;
+	private boolean lazyFileAttachments;
+	private long attachmentSpillThreshold = DEFAULT_ATTACHMENT_SPILL_THRESHOLD;
+	private boolean serveStaleOnError;
+	private SdkMetrics metrics = SdkMetrics.NOOP;
+	private TokenManager tokenManager;
+	private final Map<Long, CompletableFuture<Secret>> inFlight = new ConcurrentHashMap<>();
+	private final LongAdder fetches = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+	private final SecretWatcher watcher = new SecretWatcher(this, DEFAULT_WATCH_INTERVAL,
+			DEFAULT_WATCH_REQUESTS_PER_SECOND);
 
 	public void setAutoComment(String autoComment) {
 		this.autoComment = autoComment;
 	}
 
+	/**
+	 * Sets the cache used by {@link #getSecret(int, boolean)}. Caching is
+	 * disabled when {@code null}.
+	 *
+	 * @param secretCache the cache, or {@code null}
+	 */
+	public void setSecretCache(SecretCache secretCache) {
+		this.secretCache = secretCache;
+	}
+
+	/**
+	 * Sets the maximum number of file attachments of one secret that are fetched
+	 * at the same time.
+	 *
+	 * @param attachmentConcurrency a positive number of concurrent fetches
+	 */
+	public void setAttachmentConcurrency(int attachmentConcurrency) {
+		Assert.isTrue(attachmentConcurrency > 0, "attachmentConcurrency must be positive");
+		this.attachmentConcurrency = attachmentConcurrency;
+	}
+
+	/**
+	 * Sets whether file attachments are fetched only when
+	 * {@link Secret.Field#getValue()} is first called, rather than together with
+	 * the secret.
+	 *
+	 * @param lazyFileAttachments true to fetch file attachments on first access
+	 */
+	public void setLazyFileAttachments(boolean lazyFileAttachments) {
+		this.lazyFileAttachments = lazyFileAttachments;
+	}
+
+	/**
+	 * Sets the largest file attachment, in bytes, that {@link #getSecret(int, boolean)}
+	 * keeps in memory. Larger attachments are written to a temporary file and
+	 * read back through {@link Secret.Field#openStream()}.
+	 *
+	 * @param attachmentSpillThreshold a non-negative number of bytes
+	 */
+	public void setAttachmentSpillThreshold(long attachmentSpillThreshold) {
+		Assert.isTrue(attachmentSpillThreshold >= 0, "attachmentSpillThreshold must not be negative");
+		this.attachmentSpillThreshold = attachmentSpillThreshold;
+	}
+
+	/**
+	 * Sets whether {@link #getSecret(int, boolean)} returns an expired cached copy
+	 * of a secret when Secret Server cannot be reached or fails with a server
+	 * error, instead of throwing.
+	 *
+	 * @param serveStaleOnError true to serve expired copies during an outage
+	 */
+	public void setServeStaleOnError(boolean serveStaleOnError) {
+		this.serveStaleOnError = serveStaleOnError;
+	}
+
+	/**
+	 * Sets the time between two rounds of polling the secrets watched through
+	 * {@link #watch(Collection, SecretChangeListener)}.
+	 *
+	 * @param watchInterval a positive duration
+	 */
+	public void setWatchInterval(Duration watchInterval) {
+		watcher.setInterval(watchInterval);
+	}
+
+	/**
+	 * Sets the maximum number of requests per second used to poll watched
+	 * secrets.
+	 *
+	 * @param watchRequestsPerSecond a positive rate
+	 */
+	public void setWatchRequestsPerSecond(int watchRequestsPerSecond) {
+		watcher.setRequestsPerSecond(watchRequestsPerSecond);
+	}
+
+	/**
+	 * Sets where file attachment transfers are recorded.
+	 *
+	 * @param metrics the metrics
+	 */
+	void setMetrics(SdkMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Sets the token manager whose authentication state is reported by
+	 * {@link #getAuthenticationState()}.
+	 *
+	 * @param tokenManager the token manager
+	 */
+	void setTokenManager(TokenManager tokenManager) {
+		this.tokenManager = tokenManager;
+	}
+
+	/**
+	 * Returns how far the first authentication has got. Unless
+	 * {@code authentication.deferred} is set, the bean is only created once it
+	 * has succeeded.
+	 *
+	 * @return the authentication state
+	 */
+	public AuthenticationState getAuthenticationState() {
+		return tokenManager == null ? AuthenticationState.AUTHENTICATED : tokenManager.getState();
+	}
+
+	/**
+	 * Returns a future completed once the first authentication has succeeded.
+	 * It is not completed exceptionally when an attempt fails, since attempts
+	 * continue; wait for it with a timeout.
+	 *
+	 * @return the future
+	 */
+	public CompletableFuture<Void> whenAuthenticated() {
+		return tokenManager == null ? CompletableFuture.completedFuture(null) : tokenManager.whenAuthenticated();
+	}
+
+	/**
+	 * Returns the cache used by {@link #getSecret(int, boolean)}.
+	 *
+	 * @return the cache, or {@code null} if caching is disabled
+	 */
+	public SecretCache getSecretCache() {
+		return secretCache;
+	}
+
+	/**
+	 * Returns the number of secrets fetched from Secret Server. Calls served
+	 * from the cache or by joining a fetch already in flight are not counted.
+	 *
+	 * @return the number of fetches
+	 */
+	public long getFetchCount() {
+		return fetches.sum();
+	}
+
+	/**
+	 * Returns the number of calls that waited for a fetch of the same secret
+	 * already in flight instead of making their own request.
+	 *
+	 * @return the number of coalesced calls
+	 */
+	public long getCoalescedCount() {
+		return coalesced.sum();
+	}
+
 	/**
 	 * Fetch and return a {@link Secret} from Delinea Secret Server.
+	 * <p>
+	 * If a {@link SecretCache} is set and holds a live copy of the secret, that
+	 * copy is returned without calling Secret Server. If serving stale copies is
+	 * enabled, an expired copy is returned when Secret Server is unreachable.
 	 *
 	 * @param id                   - the integer ID of the secret to be fetched
 	 * @param fetchFileAttachments - whether to fetch {@code fileAttachments} so
@@ -34,27 +249,222 @@ public class SecretServer extends RestTemplate {
 	 * @return the {@link Secret} object
 	 */
 	public Secret getSecret(final int id, final boolean fetchFileAttachments) {
+		final GetSecretEvent event = new GetSecretEvent();
+		event.begin();
+		final int retries = event.isEnabled() ? Retries.count() : 0;
+		Secret secret = null;
+		try {
+			if (secretCache != null) {
+				secret = secretCache.get(id, fetchFileAttachments);
+				if (secret != null) {
+					event.cached = true;
+					return secret;
+				}
+			}
+			try {
+				secret = refresh(id, fetchFileAttachments);
+				event.status = HttpStatus.OK.value();
+				return secret;
+			} catch (ResourceAccessException | HttpServerErrorException e) {
+				event.status = statusOf(e);
+				secret = serveStaleOnError && secretCache != null
+						? secretCache.getStale(id, fetchFileAttachments) : null;
+				if (secret == null) {
+					throw e;
+				}
+				event.stale = true;
+				return secret;
+			}
+		} catch (RestClientResponseException e) {
+			event.status = e.getStatusCode().value();
+			throw e;
+		} finally {
+			if (event.shouldCommit()) {
+				event.secretId = id;
+				event.fetchFileAttachments = fetchFileAttachments;
+				event.bytes = secret != null ? SecretCache.estimateSize(secret) : 0;
+				event.retries = Retries.count() - retries;
+				event.commit();
+			}
+		}
+	}
 
-		final Map<String, String> uriParams = new HashMap<>();
-		uriParams.put("id", String.valueOf(id));
-
-		UriComponentsBuilder builder = UriComponentsBuilder.fromPath(SECRET_ID_URI);
+	/**
+	 * Fetches a secret from Secret Server, bypassing the cache, and stores it in
+	 * the cache.
+	 * <p>
+	 * Concurrent calls for the same ID and {@code fetchFileAttachments} share a
+	 * single request: the first caller fetches, the others wait for its result
+	 * or exception.
+	 */
+	Secret refresh(final int id, final boolean fetchFileAttachments) {
+		final long key = ((long) id << 1) | (fetchFileAttachments ? 1L : 0L);
+		final CompletableFuture<Secret> fetch = new CompletableFuture<>();
+		final CompletableFuture<Secret> pending = inFlight.putIfAbsent(key, fetch);
+		if (pending != null) {
+			coalesced.increment();
+			try {
+				final Secret secret = pending.join();
+				final Secret shared = secret != null ? secret.share() : null;
+				return shared != null ? shared : secret;
+			} catch (CompletionException e) {
+				throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+			}
+		}
+		try {
+			fetches.increment();
+			final Secret secret = fetchSecret(id, fetchFileAttachments);
+			if (secretCache != null) {
+				secretCache.put(id, fetchFileAttachments, secret);
+			}
+			fetch.complete(secret);
+			return secret;
+		} catch (RuntimeException e) {
+			fetch.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, fetch);
+		}
+	}
 
-		if (!autoComment.isBlank()) {
-			builder.queryParam("autoComment", autoComment);
+	private Secret fetchSecret(final int id, final boolean fetchFileAttachments) {
+		final Secret secret = getForObject(withAutoComment(SECRET_ID_URI), Secret.class,
+				Map.of("id", String.valueOf(id)));
+		if (fetchFileAttachments && secret != null) {
+			final List<Secret.Field> attachments = secret.getFields().stream()
+					.filter(field -> field.getFileAttachmentId() > 0)
+					.collect(Collectors.toList());
+			if (lazyFileAttachments) {
+				attachments.forEach(field -> field.deferContent(() -> fetchFileAttachment(id, field.getSlug())));
+			} else {
+				FanOut.map(attachments, attachmentConcurrency, field -> {
+					field.setContent(fetchFileAttachment(id, field.getSlug()));
+					return field;
+				});
+			}
 		}
+		return secret;
+	}
+
+	private FieldContent fetchFileAttachment(final int id, final String slug) {
+		return downloadAttachment(id, slug, response -> {
+			final MediaType contentType = response.getHeaders().getContentType();
+			final Charset charset = contentType != null && contentType.getCharset() != null
+					? contentType.getCharset() : StandardCharsets.UTF_8;
+			return FieldContent.read(response.getBody(), charset, attachmentSpillThreshold);
+		}, FieldContent::size);
+	}
 
-		final String uri = builder.build().toUriString();
-		final Secret secret = getForObject(uri, Secret.class, uriParams);
-		if (fetchFileAttachments) {
-			secret.getFields().forEach(field -> {
-				if (field.getFileAttachmentId() > 0) {
-					uriParams.put("slug", field.getSlug());
-					field.setValue(getForEntity(SECRET_FILE_ATTACHMENT_URI, String.class, uriParams).getBody());
+	/**
+	 * Stream the contents of a file attachment to an {@link OutputStream}.
+	 * <p>
+	 * The response body is copied through a fixed-size buffer, so the attachment
+	 * is never held on the heap. The stream is not closed.
+	 *
+	 * @param id   - the integer ID of the secret
+	 * @param slug - the slug of the file attachment field
+	 * @param out  - where the attachment is written
+	 * @return the number of bytes written
+	 */
+	public long downloadAttachment(final int id, final String slug, final OutputStream out) {
+		Assert.notNull(out, "out must not be null");
+		return downloadAttachment(id, slug, response -> response.getBody().transferTo(out), Long::longValue);
+	}
+
+	/**
+	 * Stream the contents of a file attachment to a {@link WritableByteChannel}.
+	 * <p>
+	 * The response body is copied through a fixed-size buffer, so the attachment
+	 * is never held on the heap. The channel is not closed.
+	 *
+	 * @param id      - the integer ID of the secret
+	 * @param slug    - the slug of the file attachment field
+	 * @param channel - where the attachment is written
+	 * @return the number of bytes written
+	 */
+	public long downloadAttachment(final int id, final String slug, final WritableByteChannel channel) {
+		Assert.notNull(channel, "channel must not be null");
+		return downloadAttachment(id, slug, response -> {
+			final ReadableByteChannel source = Channels.newChannel(response.getBody());
+			final ByteBuffer buffer = ByteBuffer.allocate(FieldContent.BUFFER_SIZE);
+			long total = 0;
+			while (source.read(buffer) != -1) {
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					total += channel.write(buffer);
 				}
-			});
+				buffer.clear();
+			}
+			return total;
+		}, Long::longValue);
+	}
+
+	/**
+	 * Stream the contents of a file attachment to a file, creating or replacing
+	 * it.
+	 * <p>
+	 * The response body is transferred into the file with
+	 * {@link FileChannel#transferFrom}, so the attachment is never held on the
+	 * heap.
+	 *
+	 * @param id     - the integer ID of the secret
+	 * @param slug   - the slug of the file attachment field
+	 * @param target - the file the attachment is written to
+	 * @return the number of bytes written
+	 */
+	public long downloadAttachment(final int id, final String slug, final Path target) {
+		Assert.notNull(target, "target must not be null");
+		return downloadAttachment(id, slug, response -> {
+			try (FileChannel file = FileChannel.open(target, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				final ReadableByteChannel source = Channels.newChannel(response.getBody());
+				long position = 0;
+				long transferred;
+				while ((transferred = file.transferFrom(source, position, FieldContent.BUFFER_SIZE)) > 0) {
+					position += transferred;
+				}
+				return position;
+			}
+		}, Long::longValue);
+	}
+
+	/**
+	 * Downloads a file attachment and records its size.
+	 *
+	 * @param size returns the number of bytes read from the result of
+	 *             {@code extractor}
+	 */
+	private <T> T downloadAttachment(final int id, final String slug, final ResponseExtractor<T> extractor,
+			final ToLongFunction<T> size) {
+		Assert.hasText(slug, "slug must not be empty");
+		final AttachmentDownloadEvent event = new AttachmentDownloadEvent();
+		event.begin();
+		final int retries = event.isEnabled() ? Retries.count() : 0;
+		long bytes = 0;
+		try {
+			final T result = execute(SECRET_FILE_ATTACHMENT_URI, HttpMethod.GET, null, extractor,
+					Map.of("id", String.valueOf(id), "slug", slug));
+			bytes = result != null ? size.applyAsLong(result) : 0;
+			event.status = HttpStatus.OK.value();
+			metrics.recordAttachmentBytes(bytes);
+			return result;
+		} catch (RestClientException e) {
+			event.status = statusOf(e);
+			throw e;
+		} finally {
+			if (event.shouldCommit()) {
+				event.secretId = id;
+				event.slug = slug;
+				event.bytes = bytes;
+				event.retries = Retries.count() - retries;
+				event.commit();
+			}
 		}
-		return secret;
+	}
+
+	private static int statusOf(final RestClientException e) {
+		return e instanceof RestClientResponseException
+				? ((RestClientResponseException) e).getStatusCode().value() : 0;
 	}
 
 	/**
@@ -69,4 +479,426 @@ public class SecretServer extends RestTemplate {
 	public Secret getSecret(final int id) {
 		return getSecret(id, true);
 	}
+
+	/**
+	 * Fetch several secrets from Delinea Secret Server at once.
+	 * <p>
+	 * Up to {@link GetSecretsOptions#getConcurrency()} secrets are fetched at the
+	 * same time. A failure to fetch one secret does not stop the others; it is
+	 * reported in that secret's {@link SecretResult} instead.
+	 *
+	 * @param ids     - the integer IDs of the secrets to be fetched
+	 * @param options - the concurrency limit and whether to fetch
+	 *                {@code fileAttachments}
+	 * @return one {@link SecretResult} per ID, in the same order as {@code ids}
+	 */
+	public List<SecretResult> getSecrets(final Collection<Integer> ids, final GetSecretsOptions options) {
+		Assert.notNull(ids, "ids must not be null");
+		Assert.notNull(options, "options must not be null");
+		Assert.isTrue(options.getConcurrency() > 0, "concurrency must be positive");
+		Assert.noNullElements(ids, "ids must not contain null");
+
+		final List<Integer> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+		final Map<Integer, SecretResult> results = FanOut.map(distinctIds, options.getConcurrency(), id -> {
+			try {
+				return new SecretResult(id, getSecret(id, options.isFetchFileAttachments()), null);
+			} catch (RuntimeException e) {
+				return new SecretResult(id, null, e);
+			}
+		}).stream().collect(Collectors.toMap(SecretResult::getId, Function.identity()));
+
+		return ids.stream().map(results::get).collect(Collectors.toList());
+	}
+
+	/**
+	 * Search for secrets, returning their summaries as a lazily paginated
+	 * stream.
+	 * <p>
+	 * Pages are requested only as the stream is consumed. While the caller
+	 * works through one page, the next is fetched in the background. Each page
+	 * is parsed with a streaming parser, so memory use depends on the page size,
+	 * not on the number of results. Close the stream, for example with
+	 * try-with-resources, to stop a search that is not read to the end.
+	 *
+	 * @param options - the filters and page size
+	 * @return the matching secrets, in the order returned by Secret Server
+	 */
+	public Stream<SecretSummary> searchSecrets(final SearchSecretsOptions options) {
+		Assert.notNull(options, "options must not be null");
+		Assert.isTrue(options.getPageSize() > 0, "pageSize must be positive");
+		final SecretSearch search = new SecretSearch(this, options);
+		return StreamSupport
+				.stream(Spliterators.spliteratorUnknownSize(search, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(search::close);
+	}
+
+	/**
+	 * Watch secrets for changes.
+	 * <p>
+	 * All watches share one background thread that polls the watched secrets
+	 * every watch interval, in small batches and within the configured request
+	 * rate. A secret counts as changed when its last password change attempt or
+	 * any of its fields differ from the previous poll; {@code listener} is called
+	 * only for those secrets.
+	 *
+	 * @param ids      - the integer IDs of the secrets to watch
+	 * @param listener - called on the watch thread for each changed secret
+	 * @return a {@link SecretWatch} to close when notifications are no longer
+	 *         needed
+	 */
+	public SecretWatch watch(final Collection<Integer> ids, final SecretChangeListener listener) {
+		Assert.notEmpty(ids, "ids must not be empty");
+		Assert.noNullElements(ids, "ids must not contain null");
+		Assert.notNull(listener, "listener must not be null");
+		return watcher.add(new LinkedHashSet<>(ids), listener);
+	}
+
+	/**
+	 * Fetch the value of one field of a secret without fetching the secret.
+	 * <p>
+	 * Only the value is transferred and parsed, which makes this the cheapest
+	 * way to read a single password or key. If a {@link SecretCache} is set and
+	 * holds a live copy of the secret, the value is taken from it instead.
+	 *
+	 * @param id   - the integer ID of the secret
+	 * @param slug - the slug of the field, for example {@code password}
+	 * @return the value of the field; the contents for a file attachment
+	 */
+	public String getSecretField(final int id, final String slug) {
+		Assert.hasText(slug, "slug must not be empty");
+		final String cached = getCachedFieldValue(id, slug);
+		if (cached != null) {
+			return cached;
+		}
+		return execute(withAutoComment(SECRET_FILE_ATTACHMENT_URI), HttpMethod.GET, null,
+				SecretServer::readFieldValue, Map.of("id", String.valueOf(id), "slug", slug));
+	}
+
+	/**
+	 * Fetch the values of several fields of a secret without fetching the
+	 * secret. The fields are fetched in parallel, at most
+	 * {@link #setAttachmentConcurrency(int) attachmentConcurrency} at a time.
+	 *
+	 * @see #getSecretField(int, String)
+	 *
+	 * @param id    - the integer ID of the secret
+	 * @param slugs - the slugs of the fields
+	 * @return the value of each field by slug, in the order of {@code slugs}
+	 */
+	public Map<String, String> getSecretFields(final int id, final String... slugs) {
+		Assert.notEmpty(slugs, "slugs must not be empty");
+		Assert.noNullElements(slugs, "slugs must not contain null");
+
+		final List<String> distinctSlugs = new ArrayList<>(new LinkedHashSet<>(List.of(slugs)));
+		final List<String> values = FanOut.map(distinctSlugs, attachmentConcurrency,
+				slug -> getSecretField(id, slug));
+		final Map<String, String> fields = new LinkedHashMap<>();
+		for (int i = 0; i < distinctSlugs.size(); i++) {
+			fields.put(distinctSlugs.get(i), values.get(i));
+		}
+		return fields;
+	}
+
+	/**
+	 * Returns the value of a field from a live cached copy of the secret. File
+	 * attachments are only taken from a copy fetched with them.
+	 */
+	private String getCachedFieldValue(final int id, final String slug) {
+		if (secretCache == null) {
+			return null;
+		}
+		for (boolean fetchFileAttachments : new boolean[] { true, false }) {
+			final Secret secret = secretCache.peek(id, fetchFileAttachments);
+			if (secret == null) {
+				continue;
+			}
+			try {
+				for (Secret.Field field : secret.getFields()) {
+					if (slug.equals(field.getSlug()) && (fetchFileAttachments || field.getFileAttachmentId() <= 0)) {
+						return field.getValue();
+					}
+				}
+			} finally {
+				// releases the off-heap values of this copy; does nothing without off-heap storage
+				secret.close();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Reads the body of a field response: a JSON scalar for text fields, the raw
+	 * contents for file attachments.
+	 */
+	private static String readFieldValue(final ClientHttpResponse response) throws IOException {
+		final MediaType contentType = response.getHeaders().getContentType();
+		if (contentType != null && MediaType.APPLICATION_JSON.isCompatibleWith(contentType)) {
+			try (JsonParser parser = JSON_FACTORY.createParser(response.getBody())) {
+				final JsonToken token = parser.nextToken();
+				return token == null || token == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+			}
+		}
+		final Charset charset = contentType != null && contentType.getCharset() != null
+				? contentType.getCharset() : StandardCharsets.UTF_8;
+		return StreamUtils.copyToString(response.getBody(), charset);
+	}
+
+	/**
+	 * Fetch several secrets from Delinea Secret Server at once, including
+	 * {@code fileAttachments}, using the default {@link GetSecretsOptions}.
+	 *
+	 * @see #getSecrets(Collection, GetSecretsOptions)
+	 *
+	 * @param ids - the integer IDs of the secrets to be fetched
+	 * @return one {@link SecretResult} per ID, in the same order as {@code ids}
+	 */
+	public List<SecretResult> getSecrets(final Collection<Integer> ids) {
+		return getSecrets(ids, new GetSecretsOptions());
+	}
+
+	/**
+	 * Update the value of one text field of a secret. The cached copy of the
+	 * secret, if any, is invalidated.
+	 *
+	 * @param id    - the integer ID of the secret
+	 * @param slug  - the slug of the field, for example {@code password}
+	 * @param value - the new value
+	 */
+	public void updateSecretField(final int id, final String slug, final String value) {
+		Assert.hasText(slug, "slug must not be empty");
+		Assert.notNull(value, "value must not be null");
+		try {
+			put(withAutoComment(SECRET_FILE_ATTACHMENT_URI), Map.of("value", value),
+					Map.of("id", String.valueOf(id), "slug", slug));
+		} finally {
+			invalidate(id);
+		}
+	}
+
+	/**
+	 * Update the values of several text fields of a secret, one field after the
+	 * other. If one update fails, the fields before it keep their new values
+	 * and the fields after it are not updated.
+	 *
+	 * @see #updateSecretField(int, String, String)
+	 *
+	 * @param id     - the integer ID of the secret
+	 * @param values - the new values by slug
+	 */
+	public void updateSecretFields(final int id, final Map<String, String> values) {
+		Assert.notEmpty(values, "values must not be empty");
+		for (Map.Entry<String, String> value : values.entrySet()) {
+			updateSecretField(id, value.getKey(), value.getValue());
+		}
+	}
+
+	/**
+	 * Update the fields of many secrets at once, for example to rotate
+	 * passwords.
+	 * <p>
+	 * Up to {@link WriteSecretsOptions#getConcurrency()} secrets are updated at
+	 * the same time over the shared connection pool; the fields of one secret
+	 * are updated in order. A failure to update one secret does not stop the
+	 * others; it is reported in that secret's {@link SecretResult}, whose
+	 * {@link SecretResult#getSecret() secret} is always {@code null}.
+	 *
+	 * @see #updateSecretFields(int, Map)
+	 *
+	 * @param updates - the new field values by slug, by secret ID
+	 * @param options - the concurrency limit
+	 * @return one {@link SecretResult} per secret, in the iteration order of
+	 *         {@code updates}
+	 */
+	public List<SecretResult> updateSecrets(final Map<Integer, Map<String, String>> updates,
+			final WriteSecretsOptions options) {
+		Assert.notNull(updates, "updates must not be null");
+		Assert.notNull(options, "options must not be null");
+		Assert.isTrue(options.getConcurrency() > 0, "concurrency must be positive");
+		Assert.noNullElements(updates.keySet(), "updates must not contain null IDs");
+
+		return FanOut.map(new ArrayList<>(updates.entrySet()), options.getConcurrency(), update -> {
+			try {
+				updateSecretFields(update.getKey(), update.getValue());
+				return new SecretResult(update.getKey(), null, null);
+			} catch (RuntimeException e) {
+				return new SecretResult(update.getKey(), null, e);
+			}
+		});
+	}
+
+	/**
+	 * Update the fields of many secrets at once using the default
+	 * {@link WriteSecretsOptions}.
+	 *
+	 * @see #updateSecrets(Map, WriteSecretsOptions)
+	 *
+	 * @param updates - the new field values by slug, by secret ID
+	 * @return one {@link SecretResult} per secret, in the iteration order of
+	 *         {@code updates}
+	 */
+	public List<SecretResult> updateSecrets(final Map<Integer, Map<String, String>> updates) {
+		return updateSecrets(updates, new WriteSecretsOptions());
+	}
+
+	/**
+	 * Create a secret from a template.
+	 * <p>
+	 * The template's stub is fetched, filled in with the name, folder, site and
+	 * text field values of {@code secret}, and posted back. File attachments
+	 * cannot be set this way.
+	 *
+	 * @param secret - the template, location, name and field values
+	 * @return the created {@link Secret}
+	 * @throws IllegalArgumentException if the template has no field with one of
+	 *                                  the given slugs
+	 */
+	public Secret createSecret(final NewSecret secret) {
+		Assert.notNull(secret, "secret must not be null");
+		return postSecret(secret, fetchSecretStub(secret));
+	}
+
+	/**
+	 * Create many secrets at once.
+	 * <p>
+	 * The stub of each distinct template and folder is fetched once. Up to
+	 * {@link WriteSecretsOptions#getConcurrency()} secrets are then created at
+	 * the same time over the shared connection pool. A failure to create one
+	 * secret does not stop the others; it is reported in that secret's
+	 * {@link SecretResult}, whose {@link SecretResult#getId() ID} is then
+	 * {@code 0}.
+	 *
+	 * @see #createSecret(NewSecret)
+	 *
+	 * @param secrets - the secrets to create
+	 * @param options - the concurrency limit
+	 * @return one {@link SecretResult} per secret, in the same order as
+	 *         {@code secrets}
+	 */
+	public List<SecretResult> createSecrets(final List<NewSecret> secrets, final WriteSecretsOptions options) {
+		Assert.notNull(secrets, "secrets must not be null");
+		Assert.notNull(options, "options must not be null");
+		Assert.isTrue(options.getConcurrency() > 0, "concurrency must be positive");
+		Assert.noNullElements(secrets, "secrets must not contain null");
+
+		final List<NewSecret> templates = new ArrayList<>(secrets.stream()
+				.collect(Collectors.toMap(SecretServer::stubKey, Function.identity(), (a, b) -> a, LinkedHashMap::new))
+				.values());
+		final List<Object> stubs = FanOut.map(templates, options.getConcurrency(), template -> {
+			try {
+				return fetchSecretStub(template);
+			} catch (RuntimeException e) {
+				return e;
+			}
+		});
+		final Map<List<Integer>, Object> stubsByKey = new LinkedHashMap<>();
+		for (int i = 0; i < templates.size(); i++) {
+			stubsByKey.put(stubKey(templates.get(i)), stubs.get(i));
+		}
+
+		return FanOut.map(secrets, options.getConcurrency(), secret -> {
+			try {
+				final Object stub = stubsByKey.get(stubKey(secret));
+				if (stub instanceof RuntimeException) {
+					throw (RuntimeException) stub;
+				}
+				final Secret created = postSecret(secret, (ObjectNode) stub);
+				return new SecretResult(created != null ? created.getId() : 0, created, null);
+			} catch (RuntimeException e) {
+				return new SecretResult(0, null, e);
+			}
+		});
+	}
+
+	/**
+	 * Create many secrets at once using the default {@link WriteSecretsOptions}.
+	 *
+	 * @see #createSecrets(List, WriteSecretsOptions)
+	 *
+	 * @param secrets - the secrets to create
+	 * @return one {@link SecretResult} per secret, in the same order as
+	 *         {@code secrets}
+	 */
+	public List<SecretResult> createSecrets(final List<NewSecret> secrets) {
+		return createSecrets(secrets, new WriteSecretsOptions());
+	}
+
+	/** Secrets with the same key are created from the same stub. */
+	private static List<Integer> stubKey(final NewSecret secret) {
+		return Arrays.asList(secret.getSecretTemplateId(), secret.getFolderId());
+	}
+
+	private ObjectNode fetchSecretStub(final NewSecret secret) {
+		final UriComponentsBuilder builder = UriComponentsBuilder.fromPath(SECRET_STUB_URI)
+				.queryParam("filter.secretTemplateId", "{secretTemplateId}");
+		final Map<String, Object> variables = new LinkedHashMap<>();
+		variables.put("secretTemplateId", secret.getSecretTemplateId());
+		if (secret.getFolderId() != null) {
+			builder.queryParam("filter.folderId", "{folderId}");
+			variables.put("folderId", secret.getFolderId());
+		}
+		final ObjectNode stub = getForObject(builder.build().toUriString(), ObjectNode.class, variables);
+		Assert.state(stub != null, "Secret Server returned no stub for template " + secret.getSecretTemplateId());
+		return stub;
+	}
+
+	private Secret postSecret(final NewSecret secret, final ObjectNode stub) {
+		final ObjectNode body = stub.deepCopy();
+		if (secret.getName() != null) {
+			body.put("name", secret.getName());
+		}
+		if (secret.getFolderId() != null) {
+			body.put("folderId", secret.getFolderId());
+		}
+		if (secret.getSiteId() != null) {
+			body.put("siteId", secret.getSiteId());
+		}
+		if (secret.getFields() != null) {
+			for (Map.Entry<String, String> field : secret.getFields().entrySet()) {
+				setItemValue(body, field.getKey(), field.getValue());
+			}
+		}
+		return postForObject(withAutoComment(SECRETS_URI), body, Secret.class);
+	}
+
+	private static void setItemValue(final ObjectNode secret, final String slug, final String value) {
+		for (JsonNode item : secret.path("items")) {
+			if (slug.equals(item.path("slug").asText(null)) && item instanceof ObjectNode) {
+				((ObjectNode) item).put("itemValue", value);
+				return;
+			}
+		}
+		throw new IllegalArgumentException("The secret template has no field with slug " + slug);
+	}
+
+	/** Returns {@code path} with the {@code autoComment} query parameter, if one is set. */
+	private String withAutoComment(final String path) {
+		UriComponentsBuilder builder = UriComponentsBuilder.fromPath(path);
+
+		if (!autoComment.isBlank()) {
+			builder.queryParam("autoComment", autoComment);
+		}
+
+		return builder.build().toUriString();
+	}
+
+	/**
+	 * Removes a secret from the cache so the next read fetches it from Secret
+	 * Server. Does nothing when caching is disabled.
+	 *
+	 * @param id - the integer ID of the secret to be invalidated
+	 */
+	public void invalidate(final int id) {
+		if (secretCache != null) {
+			secretCache.invalidate(id);
+		}
+	}
+
+	/**
+	 * Removes all secrets from the cache. Does nothing when caching is disabled.
+	 */
+	public void invalidateAll() {
+		if (secretCache != null) {
+			secretCache.invalidateAll();
+		}
+	}
 }
\ No newline at end of file
@@ -5,22 +5,24 @@ import java.net.InetAddress;
 import java.net.URLEncoder;
 import java.net.UnknownHostException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.ZonedDateTime;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
-import org.apache.hc.client5.http.auth.AuthScope;
-import org.apache.hc.client5.http.auth.UsernamePasswordCredentials;
-import org.apache.hc.client5.http.config.RequestConfig;
-import org.apache.hc.client5.http.impl.auth.BasicCredentialsProvider;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
-import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
-import org.apache.hc.core5.http.HttpHost;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.core.env.Environment;
 import org.springframework.http.HttpEntity;
@@ -29,18 +31,22 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.ClientHttpRequestFactory;
-import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.http.client.InterceptingClientHttpRequestFactory;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.util.StringUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.DefaultUriBuilderFactory;
 
+import com.delinea.platform.model.OAuthTokens;
 import com.delinea.platform.service.AuthenticationService;
+import com.delinea.platform.service.DiscoveryCache;
+import com.delinea.server.spring.jfr.TokenAcquisitionEvent;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
@@ -48,7 +54,8 @@ import com.fasterxml.jackson.annotation.JsonProperty;
  * properties.
  */
 @Component
-public class SecretServerFactoryBean implements FactoryBean<SecretServer>, InitializingBean {
+@ImportRuntimeHints(SdkRuntimeHints.class)
+public class SecretServerFactoryBean implements FactoryBean<SecretServer>, InitializingBean, DisposableBean {
     static class AccessGrant {
         private String accessToken, refreshToken, tokenType;
         private int expiresIn;
@@ -74,20 +81,23 @@ public class SecretServerFactoryBean implements FactoryBean<SecretServer>, Initi
         }
     };
 
+    private static final Logger log = LoggerFactory.getLogger(SecretServerFactoryBean.class);
+
     private static final String GRANT_REQUEST_USERNAME_PROPERTY = "username";
     private static final String GRANT_REQUEST_PASSWORD_PROPERTY = "password";
     private static final String GRANT_REQUEST_GRANT_TYPE_PROPERTY = "grant_type";
     private static final String GRANT_REQUEST_GRANT_TYPE = "password";
-    private static final String AUTHORIZATION_HEADER_NAME = "Authorization";
-    private static final String AUTHORIZATION_TOKEN_TYPE = "Bearer";
+    private static final String GRANT_REQUEST_REFRESH_TOKEN_PROPERTY = "refresh_token";
+    private static final String GRANT_REQUEST_REFRESH_GRANT_TYPE = "refresh_token";
 
     private String ruleName;
     private String onboardingKey;
     private int authenticationMode;
     private String clientId;
     private String clientSecret;
+    private SdkClientCredentialStore credentialStore;
     private String serverUrl;
-    private String secreterverUrl;
+    private volatile String secreterverUrl;
     private String serverUsername;
     private String serverPassword;
     private String proxyHost;
@@ -95,6 +105,27 @@ public class SecretServerFactoryBean implements FactoryBean<SecretServer>, Initi
     private String proxyUsername;
     private String proxyPassword;
     private String autoComment;
+    private SecretCache secretCache;
+    private SecretCacheSnapshot cacheSnapshot;
+    private boolean serveStaleOnError;
+    private Long watchIntervalSeconds;
+    private Integer watchRequestsPerSecond;
+    private Integer attachmentConcurrency;
+    private boolean lazyFileAttachments;
+    private Long attachmentSpillThreshold;
+    private Duration tokenRefreshSkew;
+    private boolean authenticationDeferred;
+    private boolean platformLogin;
+    private TokenManager tokenManager;
+    private HttpTransport.Settings transportSettings;
+    private HttpTransport httpTransport;
+    private RestTemplate authRestTemplate;
+    private RetryingClientHttpRequestFactory.Settings retrySettings;
+    private RetryBudget retryBudget;
+    private CircuitBreaker circuitBreaker;
+    private ConcurrencyLimiter concurrencyLimiter;
+    private LoadBalancer loadBalancer;
+    private SdkMetrics metrics = SdkMetrics.NOOP;
 
     @Autowired(required = false)
     private ClientHttpRequestFactory requestFactory;
@@ -102,11 +133,21 @@ public class SecretServerFactoryBean implements FactoryBean<SecretServer>, Initi
     @Autowired
     private Environment environment;
 
+    @Autowired(required = false)
+    private BeanFactory beanFactory;
+
     @Autowired
     private AuthenticationService authenticationService;
 
     private static final int SDK_CLIENT_AUTH_MODE = 1;
     private static final int DEFAULT_AUTH_MODE = 0;
+    private static final long DEFAULT_CACHE_TTL_SECONDS = 300;
+    private static final long DEFAULT_TOKEN_REFRESH_SKEW_SECONDS = 60;
+    private static final long DEFAULT_DISCOVERY_CACHE_TTL_SECONDS = 3600;
+    private static final int DEFAULT_CACHE_MAX_ENTRIES = 1000;
+    private static final long DEFAULT_CACHE_MAX_BYTES = 16L * 1024 * 1024;
+    private static final long DEFAULT_SNAPSHOT_INTERVAL_SECONDS = 60;
+    private static final long DEFAULT_ATTACHMENT_SPILL_THRESHOLD = 1024 * 1024;
 
     /**
      * After properties are set, validate configuration and initialize requestFactory if null.
@@ -132,8 +173,15 @@ public class SecretServerFactoryBean implements FactoryBean<SecretServer>, Initi
                     "rule.name and onboarding.key must be set when authenticationMode is 1");
         }
 
-        this.serverUrl = environment.getProperty("server.url");
-        Assert.state(StringUtils.hasText(serverUrl), "server.url must be set.");
+        String[] serverUrls = StringUtils.tokenizeToStringArray(environment.getProperty("server.url"), ",");
+        Assert.state(serverUrls.length > 0, "server.url must be set.");
+        this.serverUrl = serverUrls[0];
+
+        String credentialsFile = environment.getProperty("sdk.client.credentials.file");
+        if (authenticationMode == SDK_CLIENT_AUTH_MODE && StringUtils.hasText(credentialsFile)) {
+            this.credentialStore = new SdkClientCredentialStore(Paths.get(credentialsFile), onboardingKey, serverUrl,
+                    ruleName);
+        }
 
         this.proxyHost = environment.getProperty("proxy.host");
         this.proxyPort = environment.getProperty("proxy.port");
@@ -141,20 +189,212 @@ public class SecretServerFactoryBean implements FactoryBean<SecretServer>, Initi
         this.proxyPassword = environment.getProperty("proxy.password");
         this.autoComment = environment.getProperty("autoComment", "");
 
+        long skewSeconds = environment.getProperty("token.refresh.skew.seconds", Long.class,
+                DEFAULT_TOKEN_REFRESH_SKEW_SECONDS);
+        Assert.state(skewSeconds >= 0, "token.refresh.skew.seconds must not be negative.");
+        this.tokenRefreshSkew = Duration.ofSeconds(skewSeconds);
+        this.authenticationDeferred = environment.getProperty("authentication.deferred", Boolean.class, false);
+
+        this.attachmentConcurrency = environment.getProperty("attachment.concurrency", Integer.class);
+        Assert.state(attachmentConcurrency == null || attachmentConcurrency > 0,
+                "attachment.concurrency must be positive.");
+        this.lazyFileAttachments = environment.getProperty("attachment.lazy", Boolean.class, false);
+        this.attachmentSpillThreshold = environment.getProperty("attachment.spill.threshold", Long.class);
+        Assert.state(attachmentSpillThreshold == null || attachmentSpillThreshold >= 0,
+                "attachment.spill.threshold must not be negative.");
+
+        if (environment.getProperty("cache.enabled", Boolean.class, false)) {
+            long ttlSeconds = environment.getProperty("cache.ttl.seconds", Long.class, DEFAULT_CACHE_TTL_SECONDS);
+            int maxEntries = environment.getProperty("cache.max.entries", Integer.class, DEFAULT_CACHE_MAX_ENTRIES);
+            long maxBytes = environment.getProperty("cache.max.bytes", Long.class, DEFAULT_CACHE_MAX_BYTES);
+            Assert.state(ttlSeconds > 0 && maxEntries > 0 && maxBytes > 0,
+                    "cache.ttl.seconds, cache.max.entries and cache.max.bytes must be positive.");
+            boolean offHeap = environment.getProperty("cache.off.heap", Boolean.class, false);
+            this.secretCache = new SecretCache(Duration.ofSeconds(ttlSeconds), maxEntries, maxBytes, offHeap);
+        }
+
+        String snapshotFile = environment.getProperty("cache.snapshot.file");
+        if (StringUtils.hasText(snapshotFile)) {
+            Assert.state(secretCache != null, "cache.enabled must be true when cache.snapshot.file is set.");
+            String snapshotKey = environment.getProperty("cache.snapshot.key");
+            Assert.state(StringUtils.hasText(snapshotKey), "cache.snapshot.key must be set when cache.snapshot.file is set.");
+            long intervalSeconds = environment.getProperty("cache.snapshot.interval.seconds", Long.class,
+                    DEFAULT_SNAPSHOT_INTERVAL_SECONDS);
+            Assert.state(intervalSeconds > 0, "cache.snapshot.interval.seconds must be positive.");
+            Long maxAgeSeconds = environment.getProperty("cache.snapshot.max.age.seconds", Long.class);
+            Assert.state(maxAgeSeconds == null || maxAgeSeconds > 0, "cache.snapshot.max.age.seconds must be positive.");
+            this.cacheSnapshot = new SecretCacheSnapshot(Paths.get(snapshotFile),
+                    Base64.getDecoder().decode(snapshotKey.trim()), Duration.ofSeconds(intervalSeconds),
+                    attachmentSpillThreshold != null ? attachmentSpillThreshold : DEFAULT_ATTACHMENT_SPILL_THRESHOLD,
+                    maxAgeSeconds != null ? Duration.ofSeconds(maxAgeSeconds) : null);
+            cacheSnapshot.restore(secretCache);
+        }
+        this.serveStaleOnError = environment.getProperty("cache.serve.stale", Boolean.class, cacheSnapshot != null);
+
+        this.watchIntervalSeconds = environment.getProperty("watch.interval.seconds", Long.class);
+        Assert.state(watchIntervalSeconds == null || watchIntervalSeconds > 0,
+                "watch.interval.seconds must be positive.");
+        this.watchRequestsPerSecond = environment.getProperty("watch.max.requests.per.second", Integer.class);
+        Assert.state(watchRequestsPerSecond == null || watchRequestsPerSecond > 0,
+                "watch.max.requests.per.second must be positive.");
+
+        transportSettings = createTransportSettings();
         if (requestFactory == null) {
-            requestFactory = createRequestFactoryWithProxy();
+            httpTransport = new HttpTransport(transportSettings);
+            requestFactory = httpTransport.getRequestFactory();
+        }
+
+        metrics = SdkMetrics.create(beanFactory);
+        if (serverUrls.length > 1) {
+            LoadBalancingClientHttpRequestFactory.Settings settings = createLoadBalancingSettings();
+            loadBalancer = new LoadBalancer(Arrays.asList(serverUrls), requestFactory,
+                    settings.getUnhealthyThreshold(), settings.getHedgePercentile(), settings.getHedgeMinDelay());
+            loadBalancer.start(settings.getHealthCheckInterval());
+            metrics.bindLoadBalancer(loadBalancer);
+            requestFactory = new LoadBalancingClientHttpRequestFactory(requestFactory, loadBalancer,
+                    settings.isHedging());
+        }
+        retrySettings = createRetrySettings();
+        retryBudget = new RetryBudget(retrySettings.getBudgetRatio(), retrySettings.getBudgetMinPerSecond());
+        if (retrySettings.getCircuitBreakerFailureThreshold() > 0) {
+            circuitBreaker = new CircuitBreaker(retrySettings.getCircuitBreakerFailureThreshold(),
+                    retrySettings.getCircuitBreakerOpenDuration());
+            metrics.bindCircuitBreaker(circuitBreaker);
+        }
+        ConcurrencyLimiter.Settings limiterSettings = createConcurrencyLimiterSettings();
+        if (limiterSettings.isEnabled()) {
+            concurrencyLimiter = new ConcurrencyLimiter(limiterSettings);
+            metrics.bindConcurrencyLimiter(concurrencyLimiter);
         }
 
+        authRestTemplate = new RestTemplate(
+                new RetryingClientHttpRequestFactory(requestFactory, retrySettings, retryBudget, null, metrics));
+        if (metrics.isEnabled()) {
+            authRestTemplate.setInterceptors(List.of(new MetricsInterceptor(metrics)));
+            if (httpTransport != null) {
+                metrics.bindConnectionPool(httpTransport.getConnectionManager());
+            }
+            if (secretCache != null) {
+                metrics.bindSecretCache(secretCache);
+            }
+        }
         if (authenticationService != null) {
-            RestTemplate proxyRestTemplate = new RestTemplate(requestFactory);
-            authenticationService.setRestTemplate(proxyRestTemplate);
+            authenticationService.setRestTemplate(authRestTemplate);
+            authenticationService.setDiscoveryCache(createDiscoveryCache());
         }
     }
 
-    private ClientHttpRequestFactory createRequestFactoryWithProxy() {
+    private DiscoveryCache createDiscoveryCache() {
+        long ttlSeconds = environment.getProperty("discovery.cache.ttl.seconds", Long.class,
+                DEFAULT_DISCOVERY_CACHE_TTL_SECONDS);
+        Assert.state(ttlSeconds >= 0, "discovery.cache.ttl.seconds must not be negative.");
+        if (ttlSeconds == 0) {
+            return null;
+        }
+        String file = environment.getProperty("discovery.cache.file");
+        return new DiscoveryCache(Duration.ofSeconds(ttlSeconds), StringUtils.hasText(file) ? Paths.get(file) : null);
+    }
+
+    private LoadBalancingClientHttpRequestFactory.Settings createLoadBalancingSettings() {
+        LoadBalancingClientHttpRequestFactory.Settings settings = new LoadBalancingClientHttpRequestFactory.Settings();
+        settings.setHealthCheckInterval(Duration.ofSeconds(environment.getProperty(
+                "server.health.check.interval.seconds", Long.class, settings.getHealthCheckInterval().getSeconds())));
+        settings.setUnhealthyThreshold(environment.getProperty("server.unhealthy.threshold", Integer.class,
+                settings.getUnhealthyThreshold()));
+        settings.setHedging(environment.getProperty("hedge.enabled", Boolean.class, settings.isHedging()));
+        settings.setHedgePercentile(environment.getProperty("hedge.percentile", Double.class,
+                settings.getHedgePercentile()));
+        settings.setHedgeMinDelay(Duration.ofMillis(environment.getProperty("hedge.min.delay.ms", Long.class,
+                settings.getHedgeMinDelay().toMillis())));
+        Assert.state(settings.getHealthCheckInterval().getSeconds() > 0,
+                "server.health.check.interval.seconds must be positive.");
+        Assert.state(settings.getUnhealthyThreshold() > 0, "server.unhealthy.threshold must be positive.");
+        Assert.state(settings.getHedgePercentile() > 0 && settings.getHedgePercentile() <= 100,
+                "hedge.percentile must be between 0 and 100.");
+        Assert.state(!settings.getHedgeMinDelay().isNegative(), "hedge.min.delay.ms must not be negative.");
+        return settings;
+    }
+
+    private ConcurrencyLimiter.Settings createConcurrencyLimiterSettings() {
+        ConcurrencyLimiter.Settings settings = new ConcurrencyLimiter.Settings();
+        settings.setEnabled(environment.getProperty("concurrency.limit.enabled", Boolean.class,
+                settings.isEnabled()));
+        settings.setInitialLimit(environment.getProperty("concurrency.limit.initial", Integer.class,
+                settings.getInitialLimit()));
+        settings.setMinLimit(environment.getProperty("concurrency.limit.min", Integer.class,
+                settings.getMinLimit()));
+        settings.setMaxLimit(environment.getProperty("concurrency.limit.max", Integer.class,
+                settings.getMaxLimit()));
+        settings.setBackoffRatio(environment.getProperty("concurrency.limit.backoff.ratio", Double.class,
+                settings.getBackoffRatio()));
+        settings.setLatencyTolerance(environment.getProperty("concurrency.limit.latency.tolerance", Double.class,
+                settings.getLatencyTolerance()));
+        settings.setMaxWait(Duration.ofMillis(environment.getProperty("concurrency.limit.max.wait.ms", Long.class,
+                settings.getMaxWait().toMillis())));
+        Assert.state(settings.getMinLimit() > 0 && settings.getMinLimit() <= settings.getInitialLimit()
+                && settings.getInitialLimit() <= settings.getMaxLimit(),
+                "concurrency.limit.min, concurrency.limit.initial and concurrency.limit.max must be positive and in increasing order.");
+        Assert.state(settings.getBackoffRatio() > 0 && settings.getBackoffRatio() < 1,
+                "concurrency.limit.backoff.ratio must be between 0 and 1.");
+        Assert.state(settings.getLatencyTolerance() > 1, "concurrency.limit.latency.tolerance must be greater than 1.");
+        Assert.state(!settings.getMaxWait().isNegative(), "concurrency.limit.max.wait.ms must not be negative.");
+        return settings;
+    }
+
+    private RetryingClientHttpRequestFactory.Settings createRetrySettings() {
+        RetryingClientHttpRequestFactory.Settings settings = new RetryingClientHttpRequestFactory.Settings();
+        settings.setMaxRetries(environment.getProperty("retry.max.retries", Integer.class, settings.getMaxRetries()));
+        settings.setInitialBackoff(Duration.ofMillis(environment.getProperty("retry.initial.backoff.ms", Long.class,
+                settings.getInitialBackoff().toMillis())));
+        settings.setMaxBackoff(Duration.ofMillis(environment.getProperty("retry.max.backoff.ms", Long.class,
+                settings.getMaxBackoff().toMillis())));
+        settings.setBudgetRatio(environment.getProperty("retry.budget.ratio", Double.class,
+                settings.getBudgetRatio()));
+        settings.setBudgetMinPerSecond(environment.getProperty("retry.budget.min.per.second", Double.class,
+                settings.getBudgetMinPerSecond()));
+        settings.setCircuitBreakerFailureThreshold(environment.getProperty("circuit.breaker.failure.threshold",
+                Integer.class, settings.getCircuitBreakerFailureThreshold()));
+        settings.setCircuitBreakerOpenDuration(Duration.ofSeconds(environment.getProperty(
+                "circuit.breaker.open.seconds", Long.class, settings.getCircuitBreakerOpenDuration().getSeconds())));
+        Assert.state(settings.getMaxRetries() >= 0, "retry.max.retries must not be negative.");
+        Assert.state(!settings.getInitialBackoff().isNegative()
+                && settings.getMaxBackoff().compareTo(settings.getInitialBackoff()) >= 0,
+                "retry.max.backoff.ms must not be less than retry.initial.backoff.ms.");
+        Assert.state(settings.getBudgetRatio() >= 0 && settings.getBudgetMinPerSecond() >= 0,
+                "retry.budget.ratio and retry.budget.min.per.second must not be negative.");
+        Assert.state(settings.getCircuitBreakerFailureThreshold() >= 0,
+                "circuit.breaker.failure.threshold must not be negative.");
+        Assert.state(settings.getCircuitBreakerOpenDuration().getSeconds() > 0,
+                "circuit.breaker.open.seconds must be positive.");
+        return settings;
+    }
+
+    private HttpTransport.Settings createTransportSettings() {
+        HttpTransport.Settings settings = new HttpTransport.Settings();
+        settings.setMaxConnections(environment.getProperty("http.max.connections", Integer.class,
+                settings.getMaxConnections()));
+        settings.setMaxConnectionsPerRoute(environment.getProperty("http.max.connections.per.route", Integer.class,
+                settings.getMaxConnectionsPerRoute()));
+        settings.setConnectTimeout(Duration.ofMillis(environment.getProperty("http.connect.timeout.ms", Long.class,
+                settings.getConnectTimeout().toMillis())));
+        settings.setResponseTimeout(Duration.ofMillis(environment.getProperty("http.response.timeout.ms", Long.class,
+                settings.getResponseTimeout().toMillis())));
+        settings.setLeaseTimeout(Duration.ofMillis(environment.getProperty("http.pool.lease.timeout.ms", Long.class,
+                settings.getLeaseTimeout().toMillis())));
+        settings.setConnectionTtl(Duration.ofSeconds(environment.getProperty("http.connection.ttl.seconds",
+                Long.class, settings.getConnectionTtl().getSeconds())));
+        settings.setIdleEviction(Duration.ofSeconds(environment.getProperty("http.idle.eviction.seconds",
+                Long.class, settings.getIdleEviction().getSeconds())));
+        Assert.state(settings.getMaxConnections() > 0 && settings.getMaxConnectionsPerRoute() > 0,
+                "http.max.connections and http.max.connections.per.route must be positive.");
+        Assert.state(!settings.getConnectTimeout().isNegative() && !settings.getResponseTimeout().isNegative()
+                && !settings.getLeaseTimeout().isNegative(), "http timeouts must not be negative.");
+        Assert.state(settings.getConnectionTtl().getSeconds() > 0 && settings.getIdleEviction().getSeconds() > 0,
+                "http.connection.ttl.seconds and http.idle.eviction.seconds must be positive.");
+
         if (!StringUtils.hasText(proxyHost)) {
             System.out.println("[INFO] No proxy configured — using direct connection.");
-            return new SimpleClientHttpRequestFactory();
+            return settings;
         }
 
         int port = -1;
@@ -162,54 +402,118 @@ public class SecretServerFactoryBean implements FactoryBean<SecretServer>, Initi
             port = Integer.parseInt(proxyPort);
         } catch (Exception e) {
             System.out.println("[WARN] Invalid proxy port: " + proxyPort + " — using direct connection.");
-            return new SimpleClientHttpRequestFactory();
+            return settings;
         }
 
         if (port <= 0) {
             System.out.println("[WARN] Proxy port not valid (" + proxyPort + ") — using direct connection.");
-            return new SimpleClientHttpRequestFactory();
+            return settings;
         }
 
-        HttpHost proxy = new HttpHost(proxyHost, port);
+        settings.setProxyHost(proxyHost);
+        settings.setProxyPort(port);
+        settings.setProxyUsername(proxyUsername);
+        settings.setProxyPassword(proxyPassword);
+        return settings;
+    }
 
-        BasicCredentialsProvider credsProvider = new BasicCredentialsProvider();
-        if (StringUtils.hasText(proxyUsername) && proxyPassword != null) {
-            credsProvider.setCredentials(
-                    new AuthScope(proxyHost, port),
-                    new UsernamePasswordCredentials(proxyUsername, proxyPassword.toCharArray()));
+    private AccessGrant getAccessGrant() throws UnknownHostException, UnsupportedEncodingException, Exception {
+        final TokenAcquisitionEvent event = new TokenAcquisitionEvent();
+        event.begin();
+        try {
+            final AccessGrant grant = authenticationMode == DEFAULT_AUTH_MODE ? getUserAccessGrant()
+                    : getSdkClientAccessGrant(event);
+            event.success = grant != null;
+            return grant;
+        } catch (RestClientResponseException e) {
+            event.status = e.getStatusCode().value();
+            throw e;
+        } finally {
+            if (event.shouldCommit()) {
+                event.grant = authenticationMode != DEFAULT_AUTH_MODE ? "client_credentials"
+                        : platformLogin ? "platform" : GRANT_REQUEST_GRANT_TYPE;
+                event.commit();
+            }
         }
-
-        RequestConfig config = RequestConfig.custom()
-                .setProxy(proxy)
-                .build();
-
-        CloseableHttpClient httpClient = HttpClients.custom()
-                .setDefaultCredentialsProvider(credsProvider)
-                .setDefaultRequestConfig(config)
-                .setConnectionManager(new PoolingHttpClientConnectionManager())
-                .addRequestInterceptorLast((request, entity, context) -> {})
-                .build();
-        return new HttpComponentsClientHttpRequestFactory(httpClient);
     }
 
-    private AccessGrant getAccessGrant() throws UnknownHostException, UnsupportedEncodingException, Exception {
-        if (authenticationMode == DEFAULT_AUTH_MODE) {
-            AuthenticationModel authenticationModel = isPlatfromOrSS();
-                if (authenticationModel.isPlatformLogin()) {
-                    AccessGrant accessGrant = new AccessGrant();
-                    accessGrant.accessToken = authenticationModel.getToken();
-                    this.secreterverUrl = authenticationModel.getVaultURL();
-                    return accessGrant;
-                } else {
-                    return getTokenUsingSScred();
-                }
+    private AccessGrant getUserAccessGrant() throws Exception {
+        AuthenticationModel authenticationModel = isPlatfromOrSS();
+        this.platformLogin = authenticationModel.isPlatformLogin();
+        if (authenticationModel.isPlatformLogin()) {
+            AccessGrant accessGrant = new AccessGrant();
+            accessGrant.accessToken = authenticationModel.getToken();
+            accessGrant.refreshToken = authenticationModel.getRefreshToken();
+            if (authenticationModel.getTokenExpiration() != null) {
+                accessGrant.expiresIn = (int) Math.max(0, Duration.between(ZonedDateTime.now(),
+                        authenticationModel.getTokenExpiration()).getSeconds());
+            }
+            this.secreterverUrl = authenticationModel.getVaultURL();
+            return accessGrant;
         } else {
-            this.secreterverUrl = serverUrl;
-            setSDKClientCred();
+            try {
+                return getTokenUsingSScred();
+            } catch (RestClientException e) {
+                authenticationService.invalidateDiscovery(serverUrl);
+                throw e;
+            }
+        }
+    }
+
+    private AccessGrant getSdkClientAccessGrant(TokenAcquisitionEvent event) throws Exception {
+        this.secreterverUrl = serverUrl;
+        if (clientId == null) {
+            setSDKClientCred(null);
+        }
+        try {
+            return getTokenUsingSDKClient();
+        } catch (HttpClientErrorException e) {
+            if (e.getStatusCode() != HttpStatus.BAD_REQUEST && e.getStatusCode() != HttpStatus.UNAUTHORIZED) {
+                throw e;
+            }
+            log.info("Stored SDK client credentials were rejected — registering again.");
+            event.retries++;
+            setSDKClientCred(new SdkClientCredentialStore.Credentials(clientId, clientSecret));
             return getTokenUsingSDKClient();
         }
     }
 
+    private AccessGrant refreshAccessGrant(String refreshToken) throws Exception {
+        final TokenAcquisitionEvent event = new TokenAcquisitionEvent();
+        event.begin();
+        try {
+            final AccessGrant grant = refreshUserAccessGrant(refreshToken);
+            event.success = grant != null;
+            return grant;
+        } catch (RestClientResponseException e) {
+            event.status = e.getStatusCode().value();
+            throw e;
+        } finally {
+            if (event.shouldCommit()) {
+                event.grant = GRANT_REQUEST_REFRESH_GRANT_TYPE;
+                event.commit();
+            }
+        }
+    }
+
+    private AccessGrant refreshUserAccessGrant(String refreshToken) throws Exception {
+        if (platformLogin) {
+            OAuthTokens tokens = authenticationService.refreshPlatformToken(
+                    new AuthenticationModel(serverUsername, serverPassword, serverUrl), refreshToken);
+            AccessGrant accessGrant = new AccessGrant();
+            accessGrant.accessToken = tokens.getAccessToken();
+            accessGrant.refreshToken = tokens.getRefreshToken();
+            accessGrant.expiresIn = tokens.getExpiresIn();
+            return accessGrant;
+        }
+
+        final MultiValueMap<String, String> request = new LinkedMultiValueMap<String, String>();
+        request.add(GRANT_REQUEST_GRANT_TYPE_PROPERTY, GRANT_REQUEST_REFRESH_GRANT_TYPE);
+        request.add(GRANT_REQUEST_REFRESH_TOKEN_PROPERTY, refreshToken);
+
+        return authRestTemplate.postForObject(secreterverUrl + "/oauth2/token", request, AccessGrant.class);
+    }
+
 	private AuthenticationModel isPlatfromOrSS() throws Exception {
 		// authenticationService now has RestTemplate injected in afterPropertiesSet
 		AuthenticationModel authenticationModel = authenticationService
@@ -229,9 +533,7 @@ public class SecretServerFactoryBean implements FactoryBean<SecretServer>, Initi
         request.add(GRANT_REQUEST_PASSWORD_PROPERTY, serverPassword);
         request.add(GRANT_REQUEST_GRANT_TYPE_PROPERTY, GRANT_REQUEST_GRANT_TYPE);
 
-        // Use requestFactory-backed RestTemplate so proxy is used
-        RestTemplate rt = new RestTemplate(requestFactory);
-        return rt.postForObject(secreterverUrl + "/oauth2/token".replaceAll("/*$", ""), request, AccessGrant.class);
+        return authRestTemplate.postForObject(secreterverUrl + "/oauth2/token".replaceAll("/*$", ""), request, AccessGrant.class);
     }
 
     private AccessGrant getTokenUsingSDKClient() throws UnsupportedEncodingException {
@@ -244,8 +546,7 @@ public class SecretServerFactoryBean implements FactoryBean<SecretServer>, Initi
 
         HttpEntity<String> entity = new HttpEntity<>(body, headers);
 
-        RestTemplate rt = new RestTemplate(requestFactory);
-        ResponseEntity<AccessGrant> response = rt.exchange(serverUrl + "/oauth2/token", HttpMethod.POST, entity,
+        ResponseEntity<AccessGrant> response = authRestTemplate.exchange(serverUrl + "/oauth2/token", HttpMethod.POST, entity,
                 AccessGrant.class);
 
         if (response.getStatusCode() == HttpStatus.OK) {
@@ -254,7 +555,17 @@ public class SecretServerFactoryBean implements FactoryBean<SecretServer>, Initi
         return null;
     }
 
-    private void setSDKClientCred() throws UnknownHostException {
+    private void setSDKClientCred(SdkClientCredentialStore.Credentials rejected) throws Exception {
+        final SdkClientCredentialStore.Credentials credentials = credentialStore != null
+                ? credentialStore.obtain(rejected, this::registerSdkClient)
+                : registerSdkClient();
+        if (credentials != null) {
+            clientId = credentials.getClientId();
+            clientSecret = credentials.getClientSecret();
+        }
+    }
+
+    private SdkClientCredentialStore.Credentials registerSdkClient() throws UnknownHostException {
         Map<String, Object> payload = new HashMap<>();
         payload.put("Description",
                 String.format("Machine: %s, OS: %s - %s %s", InetAddress.getLocalHost().getHostName(),
@@ -270,33 +581,161 @@ public class SecretServerFactoryBean implements FactoryBean<SecretServer>, Initi
 
         HttpEntity<Map<String, Object>> entity = new HttpEntity<>(payload, headers);
 
-        // Use requestFactory-backed RestTemplate so proxy is used
-        RestTemplate rt = new RestTemplate(requestFactory);
-        ResponseEntity<Map<String, Object>> response = rt.exchange(serverUrl + "/api/v1/sdk-client-accounts", HttpMethod.POST, entity, new ParameterizedTypeReference<Map<String, Object>>() {
+        ResponseEntity<Map<String, Object>> response = authRestTemplate.exchange(serverUrl + "/api/v1/sdk-client-accounts", HttpMethod.POST, entity, new ParameterizedTypeReference<Map<String, Object>>() {
         });
 
         if (response.getStatusCode() == HttpStatus.OK) {
             Map<String, Object> responseBody = response.getBody();
             if (responseBody != null) {
-                clientId = (String) responseBody.get("clientId");
-                clientSecret = (String) responseBody.get("clientSecret");
+                return new SdkClientCredentialStore.Credentials((String) responseBody.get("clientId"),
+                        (String) responseBody.get("clientSecret"));
             }
         }
+        return null;
+    }
+
+    /**
+     * Returns the token manager shared by {@link SecretServer} and
+     * {@link AsyncSecretServer}, authenticating on the first call, or with
+     * {@code authentication.deferred} starting to authenticate in the
+     * background.
+     */
+    synchronized TokenManager getTokenManager() throws Exception {
+        if (tokenManager == null) {
+            TokenManager manager = new TokenManager(new TokenManager.TokenSource() {
+                @Override
+                public AccessGrant authenticate() throws Exception {
+                    return getAccessGrant();
+                }
+
+                @Override
+                public AccessGrant refresh(String refreshToken) throws Exception {
+                    return refreshAccessGrant(refreshToken);
+                }
+            }, tokenRefreshSkew);
+            manager.setMetrics(metrics);
+            if (authenticationDeferred) {
+                manager.startDeferred();
+            } else {
+                try {
+                    manager.start();
+                } catch (Exception e) {
+                    if (cacheSnapshot == null || !cacheSnapshot.hasRestored()) {
+                        manager.close();
+                        throw e;
+                    }
+                    log.warn("Authentication failed ({}) — serving the cache snapshot and retrying in the background.",
+                            e.getMessage());
+                    manager.startInBackground();
+                }
+            }
+            metrics.bindTokenManager(manager);
+            tokenManager = manager;
+        }
+        return tokenManager;
+    }
+
+    /**
+     * @return the base URL of the Secret Server REST API; before the first
+     *         successful authentication, the vault URL from the discovery cache
+     *         or the configured server URL
+     */
+    String getApiBaseUrl() {
+        String baseUrl = secreterverUrl;
+        if (baseUrl == null && authenticationMode == DEFAULT_AUTH_MODE && authenticationService != null) {
+            baseUrl = authenticationService.getCachedVaultURL(serverUrl);
+        }
+        return (baseUrl != null ? baseUrl : serverUrl) + "/api/v1";
+    }
+
+    /** @return the secret cache, or {@code null} if caching is disabled */
+    SecretCache getSecretCache() {
+        return secretCache;
+    }
+
+    /** @return the value of the {@code autoComment} property */
+    String getAutoComment() {
+        return autoComment;
+    }
+
+    /** @return the {@code attachment.concurrency} property, or {@code null} if unset */
+    Integer getAttachmentConcurrency() {
+        return attachmentConcurrency;
+    }
+
+    /** @return where requests, token renewals and attachment transfers are recorded */
+    SdkMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** @return the {@code attachment.lazy} property */
+    boolean isLazyFileAttachments() {
+        return lazyFileAttachments;
+    }
+
+    /** @return the {@code attachment.spill.threshold} property, or {@code null} if unset */
+    Long getAttachmentSpillThreshold() {
+        return attachmentSpillThreshold;
+    }
+
+    /** @return the circuit breaker, or {@code null} if it is disabled */
+    CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /** @return the load balancer, or {@code null} with a single {@code server.url} */
+    LoadBalancer getLoadBalancer() {
+        return loadBalancer;
+    }
+
+    /** @return the connection pool, timeout and proxy settings */
+    HttpTransport.Settings getTransportSettings() {
+        return transportSettings;
     }
 
     @Override
     public SecretServer getObject() throws Exception {
-        AccessGrant accessGrant = getAccessGrant();
+        final TokenManager tokenManager = getTokenManager();
+
         final SecretServer secretServer = new SecretServer();
         secretServer.setAutoComment(autoComment); 
-        secretServer.setUriTemplateHandler(new DefaultUriBuilderFactory(secreterverUrl + "/api/v1"));
-
-        secretServer.setRequestFactory(new InterceptingClientHttpRequestFactory(requestFactory,
-                Arrays.asList((request, body, execution) -> {
-                    request.getHeaders().add(AUTHORIZATION_HEADER_NAME,
-                            String.format("%s %s", AUTHORIZATION_TOKEN_TYPE, accessGrant.accessToken));
-                    return execution.execute(request, body);
-                })));
+        secretServer.setSecretCache(secretCache);
+        secretServer.setServeStaleOnError(serveStaleOnError);
+        if (watchIntervalSeconds != null) {
+            secretServer.setWatchInterval(Duration.ofSeconds(watchIntervalSeconds));
+        }
+        if (watchRequestsPerSecond != null) {
+            secretServer.setWatchRequestsPerSecond(watchRequestsPerSecond);
+        }
+        if (attachmentConcurrency != null) {
+            secretServer.setAttachmentConcurrency(attachmentConcurrency);
+        }
+        secretServer.setLazyFileAttachments(lazyFileAttachments);
+        if (attachmentSpillThreshold != null) {
+            secretServer.setAttachmentSpillThreshold(attachmentSpillThreshold);
+        }
+        // while authentication is pending, deferred or after a failed start served from the
+        // snapshot, the vault URL of a Platform server is not known yet
+        secretServer.setUriTemplateHandler(authenticationDeferred || tokenManager.peekToken() == null
+                ? new DeferredUriTemplateHandler(tokenManager, this::getApiBaseUrl)
+                : new DefaultUriBuilderFactory(getApiBaseUrl()));
+        secretServer.setTokenManager(tokenManager);
+
+        secretServer.setMetrics(metrics);
+        metrics.bindSecretServer(secretServer);
+        ClientHttpRequestFactory secretServerRequestFactory = concurrencyLimiter != null
+                ? new ConcurrencyLimitingClientHttpRequestFactory(requestFactory, concurrencyLimiter)
+                : requestFactory;
+        secretServerRequestFactory = new RetryingClientHttpRequestFactory(secretServerRequestFactory,
+                retrySettings, retryBudget, circuitBreaker, metrics);
+        secretServer.setRequestFactory(new InterceptingClientHttpRequestFactory(secretServerRequestFactory,
+                metrics.isEnabled()
+                        ? Arrays.asList(new MetricsInterceptor(metrics), new AuthInterceptor(tokenManager))
+                        : Arrays.asList(new AuthInterceptor(tokenManager))));
+
+        if (cacheSnapshot != null) {
+            cacheSnapshot.start(secretServer);
+        }
 
         return secretServer;
     }
@@ -305,4 +744,24 @@ public class SecretServerFactoryBean implements FactoryBean<SecretServer>, Initi
     public Class<?> getObjectType() {
         return SecretServer.class;
     }
+
+    /**
+     * Saves the cache snapshot, stops renewing the access token and probing
+     * nodes, and closes pooled connections.
+     */
+    @Override
+    public void destroy() {
+        if (cacheSnapshot != null) {
+            cacheSnapshot.close();
+        }
+        if (tokenManager != null) {
+            tokenManager.close();
+        }
+        if (loadBalancer != null) {
+            loadBalancer.close();
+        }
+        if (httpTransport != null) {
+            httpTransport.close();
+        }
+    }
 }
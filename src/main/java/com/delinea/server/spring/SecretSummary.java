@@ -0,0 +1,76 @@
+package com.delinea.server.spring;
+
+/**
+ * Java representation of a <i>Secret</i> as listed by a search: its metadata
+ * without any field values.
+ *
+ * @see SecretServer#searchSecrets(SearchSecretsOptions)
+ */
+public class SecretSummary {
+    private int id;
+    private String name;
+    private int folderId;
+    private String folderPath;
+    private int secretTemplateId;
+    private String secretTemplateName;
+    private int siteId;
+    private boolean active;
+    private boolean checkedOut;
+    private String lastHeartBeatStatus;
+
+    /** @return the unique ID of the secret */
+    public int getId() {
+        return id;
+    }
+
+    /** @return the secret name */
+    public String getName() {
+        return name;
+    }
+
+    /** @return the ID of the folder containing the secret */
+    public int getFolderId() {
+        return folderId;
+    }
+
+    /** @return the path of the folder containing the secret */
+    public String getFolderPath() {
+        return folderPath;
+    }
+
+    /** @return the ID of the template the secret was created from */
+    public int getSecretTemplateId() {
+        return secretTemplateId;
+    }
+
+    /** @return the name of the template the secret was created from */
+    public String getSecretTemplateName() {
+        return secretTemplateName;
+    }
+
+    /** @return the ID of the site the secret is assigned to */
+    public int getSiteId() {
+        return siteId;
+    }
+
+    /** @return true if the secret is active */
+    public boolean isActive() {
+        return active;
+    }
+
+    /** @return true if the secret is checked out */
+    public boolean isCheckedOut() {
+        return checkedOut;
+    }
+
+    /** @return the most recent heartbeat status */
+    public String getLastHeartBeatStatus() {
+        return lastHeartBeatStatus;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SecretSummary { id: %d, name: %s, folderId: %d, secretTemplateName: %s }", id, name,
+                folderId, secretTemplateName);
+    }
+}
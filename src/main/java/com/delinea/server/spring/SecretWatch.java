@@ -0,0 +1,28 @@
+package com.delinea.server.spring;
+
+import java.util.Set;
+
+/**
+ * A registration created by {@link SecretServer#watch}. Close it to stop
+ * receiving notifications.
+ */
+public final class SecretWatch implements AutoCloseable {
+    private final Set<Integer> ids;
+    private final SecretWatcher watcher;
+
+    SecretWatch(Set<Integer> ids, SecretWatcher watcher) {
+        this.ids = ids;
+        this.watcher = watcher;
+    }
+
+    /** @return the IDs of the watched secrets */
+    public Set<Integer> getIds() {
+        return ids;
+    }
+
+    /** Stops watching. Notifications already in progress may still complete. */
+    @Override
+    public void close() {
+        watcher.remove(this);
+    }
+}
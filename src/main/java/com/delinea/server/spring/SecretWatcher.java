@@ -0,0 +1,193 @@
+package com.delinea.server.spring;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Polls the secrets watched through {@link SecretServer#watch} and notifies
+ * listeners of the ones that changed.
+ * <p>
+ * All watches share one scheduler thread, which exists only while at least one
+ * watch is open. Each round fetches every watched secret once, a few at a time
+ * and no faster than the configured rate, and compares its
+ * {@link Secret#fingerprint() fingerprint} with the previous round.
+ */
+class SecretWatcher {
+    private static final Logger log = LoggerFactory.getLogger(SecretWatcher.class);
+    private static final int MAX_CONCURRENCY = 4;
+
+    private final SecretServer secretServer;
+    private final Map<SecretWatch, SecretChangeListener> watches = new LinkedHashMap<>();
+    private final Map<Integer, Long> fingerprints = new ConcurrentHashMap<>();
+    private Duration interval;
+    private int requestsPerSecond;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates a watcher.
+     *
+     * @param secretServer      fetches the watched secrets
+     * @param interval          the time between the end of one round and the
+     *                          start of the next
+     * @param requestsPerSecond the maximum rate of requests to Secret Server
+     */
+    SecretWatcher(SecretServer secretServer, Duration interval, int requestsPerSecond) {
+        this.secretServer = secretServer;
+        setInterval(interval);
+        setRequestsPerSecond(requestsPerSecond);
+    }
+
+    synchronized void setInterval(Duration interval) {
+        Assert.isTrue(interval != null && !interval.isNegative() && !interval.isZero(), "interval must be positive");
+        this.interval = interval;
+    }
+
+    synchronized void setRequestsPerSecond(int requestsPerSecond) {
+        Assert.isTrue(requestsPerSecond > 0, "requestsPerSecond must be positive");
+        this.requestsPerSecond = requestsPerSecond;
+    }
+
+    /**
+     * Starts watching secrets. Their current versions are fetched right away to
+     * serve as the baseline for later rounds.
+     *
+     * @param ids      the IDs of the secrets to watch
+     * @param listener notified when one of them changes
+     * @return the registration
+     */
+    synchronized SecretWatch add(Set<Integer> ids, SecretChangeListener listener) {
+        final SecretWatch watch = new SecretWatch(Collections.unmodifiableSet(new LinkedHashSet<>(ids)), this);
+        watches.put(watch, listener);
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "tss-sdk-secret-watch");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::pollAll, interval.toMillis(), interval.toMillis(),
+                    TimeUnit.MILLISECONDS);
+        }
+        scheduler.execute(() -> baseline(watch.getIds()));
+        return watch;
+    }
+
+    /**
+     * Stops a watch, and the scheduler thread with the last one.
+     *
+     * @param watch the registration to remove
+     */
+    synchronized void remove(SecretWatch watch) {
+        if (watches.remove(watch) != null && watches.isEmpty() && scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+            fingerprints.clear();
+        }
+    }
+
+    private void baseline(Set<Integer> ids) {
+        final List<Integer> unknown = new ArrayList<>();
+        for (Integer id : ids) {
+            if (!fingerprints.containsKey(id)) {
+                unknown.add(id);
+            }
+        }
+        poll(unknown, Map.of());
+    }
+
+    private void pollAll() {
+        final Map<SecretWatch, SecretChangeListener> current;
+        synchronized (this) {
+            current = new LinkedHashMap<>(watches);
+        }
+        final Set<Integer> ids = new LinkedHashSet<>();
+        current.keySet().forEach(watch -> ids.addAll(watch.getIds()));
+        fingerprints.keySet().retainAll(ids);
+        poll(new ArrayList<>(ids), current);
+    }
+
+    /**
+     * Fetches secrets in rate-limited batches and notifies the listeners of the
+     * ones whose fingerprint changed. Secrets seen for the first time only record
+     * their fingerprint.
+     */
+    private void poll(List<Integer> ids, Map<SecretWatch, SecretChangeListener> listeners) {
+        final int rate;
+        synchronized (this) {
+            rate = requestsPerSecond;
+        }
+        final int batchSize = Math.min(rate, MAX_CONCURRENCY);
+        for (int from = 0; from < ids.size() && !Thread.currentThread().isInterrupted(); from += batchSize) {
+            final long started = System.nanoTime();
+            final List<Integer> batch = ids.subList(from, Math.min(from + batchSize, ids.size()));
+            final List<Secret> secrets = FanOut.map(batch, batchSize, this::fetch);
+            for (Secret secret : secrets) {
+                if (secret != null) {
+                    compare(secret, listeners);
+                }
+            }
+            if (!pace(started, batch.size(), rate)) {
+                return;
+            }
+        }
+    }
+
+    private Secret fetch(int id) {
+        try {
+            return secretServer.refresh(id, false);
+        } catch (RestClientException e) {
+            log.debug("Unable to poll secret {}: {}", id, e.getMessage());
+            return null;
+        }
+    }
+
+    private void compare(Secret secret, Map<SecretWatch, SecretChangeListener> listeners) {
+        final long fingerprint = secret.fingerprint();
+        final Long previous = fingerprints.put(secret.getId(), fingerprint);
+        if (previous == null || previous == fingerprint) {
+            return;
+        }
+        final SecretCache cache = secretServer.getSecretCache();
+        if (cache != null) {
+            // refresh() has stored the new copy without file attachments; drop the one with them, now out of date
+            cache.invalidate(secret.getId(), true);
+        }
+        listeners.forEach((watch, listener) -> {
+            if (watch.getIds().contains(secret.getId())) {
+                try {
+                    listener.secretChanged(secret);
+                } catch (RuntimeException e) {
+                    log.warn("Secret change listener failed for secret {}", secret.getId(), e);
+                }
+            }
+        });
+    }
+
+    /** Sleeps so that {@code requests} take at least their share of the rate. */
+    private static boolean pace(long started, int requests, int rate) {
+        final long remaining = started + TimeUnit.SECONDS.toNanos(requests) / rate - System.nanoTime();
+        if (remaining > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+}
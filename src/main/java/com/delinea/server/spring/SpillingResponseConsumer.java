@@ -0,0 +1,147 @@
+package com.delinea.server.spring;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.hc.client5.http.async.methods.AbstractBinResponseConsumer;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpResponse;
+
+/**
+ * Reads a response body into a {@link FieldContent} as it arrives, keeping at
+ * most {@code spillThreshold} bytes in memory and writing larger bodies to a
+ * temporary file, as {@link FieldContent#read} does for the blocking client.
+ */
+class SpillingResponseConsumer extends AbstractBinResponseConsumer<SpillingResponseConsumer.Result> {
+    /** The status line and headers of a response, and its body. */
+    static final class Result {
+        private final HttpResponse head;
+        private final ContentType contentType;
+        private final FieldContent content;
+
+        private Result(HttpResponse head, ContentType contentType, FieldContent content) {
+            this.head = head;
+            this.contentType = contentType;
+            this.content = content;
+        }
+
+        int getCode() {
+            return head.getCode();
+        }
+
+        FieldContent getContent() {
+            return content;
+        }
+
+        /**
+         * Copies this response, body included, into a {@link SimpleHttpResponse}.
+         * Only meant for error responses, whose bodies are small.
+         *
+         * @return the copy
+         * @throws IOException if a spilled body cannot be read
+         */
+        SimpleHttpResponse toSimpleResponse() throws IOException {
+            final SimpleHttpResponse response = SimpleHttpResponse.copy(head);
+            try (InputStream in = content.openStream()) {
+                response.setBody(in.readAllBytes(), contentType);
+            }
+            return response;
+        }
+    }
+
+    private final long spillThreshold;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private HttpResponse head;
+    private ContentType contentType;
+    private Path file;
+    private FileChannel channel;
+    private long size;
+
+    /**
+     * Creates a consumer for one response.
+     *
+     * @param spillThreshold the largest body kept in memory, in bytes
+     */
+    SpillingResponseConsumer(long spillThreshold) {
+        this.spillThreshold = spillThreshold;
+    }
+
+    @Override
+    protected void start(HttpResponse response, ContentType contentType) {
+        this.head = response;
+        this.contentType = contentType;
+    }
+
+    @Override
+    protected int capacityIncrement() {
+        return FieldContent.BUFFER_SIZE * 8;
+    }
+
+    @Override
+    protected void data(ByteBuffer src, boolean endOfStream) throws IOException {
+        size += src.remaining();
+        if (channel == null && buffer.size() + src.remaining() > spillThreshold) {
+            file = FieldContent.createTempFile();
+            channel = FileChannel.open(file, StandardOpenOption.WRITE);
+            writeFully(ByteBuffer.wrap(buffer.toByteArray()));
+            buffer.reset();
+        }
+        if (channel != null) {
+            writeFully(src);
+        } else {
+            final byte[] bytes = new byte[src.remaining()];
+            src.get(bytes);
+            buffer.write(bytes);
+        }
+    }
+
+    private void writeFully(ByteBuffer src) throws IOException {
+        while (src.hasRemaining()) {
+            channel.write(src);
+        }
+    }
+
+    @Override
+    protected Result buildResult() {
+        final Charset charset = contentType != null && contentType.getCharset() != null ? contentType.getCharset()
+                : StandardCharsets.UTF_8;
+        if (channel == null) {
+            return new Result(head, contentType, new FieldContent.InMemory(buffer.toByteArray(), charset));
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // a file channel buffers nothing, so every byte has already been written
+        }
+        channel = null;
+        final FieldContent content = new FieldContent.Spilled(file, size, charset);
+        file = null;
+        return new Result(head, contentType, content);
+    }
+
+    @Override
+    public void releaseResources() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            // the temporary file is left behind
+        } finally {
+            channel = null;
+            file = null;
+        }
+    }
+}
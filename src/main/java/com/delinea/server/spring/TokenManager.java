@@ -0,0 +1,385 @@
+package com.delinea.server.spring;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StringUtils;
+
+import com.delinea.server.spring.SecretServerFactoryBean.AccessGrant;
+
+/**
+ * Keeps the access token used by {@link SecretServer} valid for the lifetime of
+ * the application.
+ * <p>
+ * The token is renewed on a background thread a configurable skew before it
+ * expires, using the {@code refresh_token} grant when one was issued and a full
+ * re-authentication otherwise. Request threads read the current token without
+ * locking and only wait for a renewal if the token has actually expired.
+ * <p>
+ * Renewals are single-flight: however many threads find the same token to be
+ * unusable at once, only one of them renews it and the others wait for its
+ * result. The same holds for the first authentication when it is started in
+ * the background with {@link #startDeferred()}: a request made before it has
+ * finished waits for it rather than authenticating a second time.
+ */
+class TokenManager implements AutoCloseable {
+    /** Obtains access grants from Secret Server or Platform. */
+    interface TokenSource {
+        /**
+         * Authenticates from scratch.
+         *
+         * @return a new access grant
+         * @throws Exception if authentication fails
+         */
+        AccessGrant authenticate() throws Exception;
+
+        /**
+         * Exchanges a refresh token for a new access grant.
+         *
+         * @param refreshToken the refresh token of the current grant
+         * @return a new access grant
+         * @throws Exception if the refresh token is rejected or the call fails
+         */
+        AccessGrant refresh(String refreshToken) throws Exception;
+    }
+
+    /** An access token and when it expires. */
+    static final class Token {
+        private final String accessToken;
+        private final String authorizationHeader;
+        private final String refreshToken;
+        private final Instant issuedAt;
+        private final Instant expiresAt;
+
+        Token(AccessGrant grant, Instant issuedAt) {
+            this.accessToken = grant.getAccessToken();
+            this.authorizationHeader = "Bearer " + grant.getAccessToken();
+            this.refreshToken = grant.getRefreshToken();
+            this.issuedAt = issuedAt;
+            this.expiresAt = grant.getExpiresIn() > 0 ? issuedAt.plusSeconds(grant.getExpiresIn()) : null;
+        }
+
+        String getAccessToken() {
+            return accessToken;
+        }
+
+        /** @return the value of the {@code Authorization} header for this token */
+        String getAuthorizationHeader() {
+            return authorizationHeader;
+        }
+
+        Instant getIssuedAt() {
+            return issuedAt;
+        }
+
+        /** @return when this token expires, or {@code null} if the server did not say */
+        Instant getExpiresAt() {
+            return expiresAt;
+        }
+
+        boolean isExpired(Instant now) {
+            return expiresAt != null && !now.isBefore(expiresAt);
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(TokenManager.class);
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(10);
+
+    private final TokenSource source;
+    private final Duration skew;
+    private final Duration retryDelay;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicReference<CompletableFuture<Token>> renewal = new AtomicReference<>();
+    private final CompletableFuture<Void> authenticated = new CompletableFuture<>();
+    private volatile Token token;
+    private volatile RuntimeException failure;
+    private volatile SdkMetrics metrics = SdkMetrics.NOOP;
+    private ScheduledFuture<?> scheduledRefresh;
+
+    /**
+     * Creates a token manager. Call {@link #start()} to obtain the first token.
+     *
+     * @param source obtains new grants
+     * @param skew   how long before expiry the token is renewed
+     */
+    TokenManager(TokenSource source, Duration skew) {
+        this(source, skew, RETRY_DELAY);
+    }
+
+    /**
+     * Creates a token manager that waits {@code retryDelay} between failed
+     * background attempts.
+     *
+     * @param source     obtains new grants
+     * @param skew       how long before expiry the token is renewed
+     * @param retryDelay how long to wait after a failed background attempt
+     */
+    TokenManager(TokenSource source, Duration skew, Duration retryDelay) {
+        this.source = source;
+        this.skew = skew;
+        this.retryDelay = retryDelay;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "tss-sdk-token-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sets where token renewals are recorded.
+     *
+     * @param metrics the metrics
+     */
+    void setMetrics(SdkMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /** @return the current token without renewing it, or {@code null} if there is none yet */
+    Token peekToken() {
+        return token;
+    }
+
+    /**
+     * Authenticates and schedules the first renewal.
+     *
+     * @throws Exception if authentication fails
+     */
+    synchronized void start() throws Exception {
+        try {
+            install(authenticate());
+        } catch (Exception e) {
+            recordFailure(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Keeps trying to authenticate in the background, for when the first attempt
+     * in {@link #start()} failed. Callers of {@link #getToken()} authenticate
+     * themselves until a token is installed.
+     */
+    synchronized void startInBackground() {
+        if (token == null) {
+            schedule(retryDelay);
+        }
+    }
+
+    /**
+     * Authenticates on the refresh thread and returns at once, retrying after
+     * the retry delay until it succeeds. Callers of {@link #getToken()}
+     * wait for an attempt that is in progress, or make their own.
+     */
+    synchronized void startDeferred() {
+        if (token == null) {
+            schedule(Duration.ZERO);
+        }
+    }
+
+    /** @return how far the first authentication has got */
+    AuthenticationState getState() {
+        return token != null ? AuthenticationState.AUTHENTICATED
+                : failure != null ? AuthenticationState.FAILED : AuthenticationState.PENDING;
+    }
+
+    /** @return the error of the last failed authentication, or {@code null} once a token is installed */
+    RuntimeException getFailure() {
+        return failure;
+    }
+
+    /** @return a future completed once the first token is installed */
+    CompletableFuture<Void> whenAuthenticated() {
+        return authenticated.copy();
+    }
+
+    /** @return the time left before the next background renewal, or {@code null} if none is scheduled */
+    synchronized Duration getNextRenewalDelay() {
+        return scheduledRefresh == null || scheduledRefresh.isDone() ? null
+                : Duration.ofMillis(scheduledRefresh.getDelay(TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Returns a valid access token, waiting for a renewal only if the current
+     * token has expired.
+     *
+     * @return the access token
+     */
+    String getAccessToken() {
+        return getToken().getAccessToken();
+    }
+
+    /**
+     * Returns a valid token, waiting for a renewal only if the current token has
+     * expired.
+     *
+     * @return the token
+     */
+    Token getToken() {
+        Token current = token;
+        if (current == null || current.isExpired(Instant.now())) {
+            current = renew(current);
+        }
+        return current;
+    }
+
+    /**
+     * Returns a valid token without blocking the calling thread. An expired token
+     * is renewed on the refresh thread.
+     *
+     * @return a future completed with the token
+     */
+    CompletableFuture<Token> getTokenAsync() {
+        final Token current = token;
+        return current == null || current.isExpired(Instant.now()) ? renewAsync(current)
+                : CompletableFuture.completedFuture(current);
+    }
+
+    /**
+     * Does the same as {@link #renew(Token)} without blocking the calling thread.
+     *
+     * @param stale the token the caller found to be unusable
+     * @return a future completed with the current token
+     */
+    CompletableFuture<Token> renewAsync(Token stale) {
+        final Token current = token;
+        if (current != stale) {
+            return CompletableFuture.completedFuture(current);
+        }
+        final CompletableFuture<Token> inFlight = renewal.get();
+        if (inFlight != null) {
+            return inFlight.copy();
+        }
+        return CompletableFuture.supplyAsync(() -> renew(stale), scheduler);
+    }
+
+    /**
+     * Replaces {@code stale} with a new token unless another thread has already
+     * done so. If a renewal is already in progress the caller waits for it
+     * instead of starting another one.
+     *
+     * @param stale the token the caller found to be unusable
+     * @return the current token
+     */
+    Token renew(Token stale) {
+        final Token current = token;
+        if (current != stale) {
+            return current;
+        }
+        final CompletableFuture<Token> mine = new CompletableFuture<>();
+        final CompletableFuture<Token> inFlight = renewal.compareAndExchange(null, mine);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+        try {
+            mine.complete(token != stale ? token : install(acquire(stale)));
+        } catch (Exception e) {
+            mine.completeExceptionally(e);
+            if (token == null) {
+                recordFailure(e);
+            }
+        } finally {
+            renewal.set(null);
+        }
+        return await(mine);
+    }
+
+    private static Token await(CompletableFuture<Token> renewal) {
+        try {
+            return renewal.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Unable to renew the access token: " + e.getCause().getMessage(),
+                    e.getCause());
+        }
+    }
+
+    private void recordFailure(Exception e) {
+        failure = e instanceof RuntimeException ? (RuntimeException) e
+                : new IllegalStateException("Unable to authenticate: " + e.getMessage(), e);
+    }
+
+    private AccessGrant acquire(Token current) throws Exception {
+        if (current != null && StringUtils.hasText(current.refreshToken)) {
+            try {
+                final AccessGrant grant = source.refresh(current.refreshToken);
+                if (grant != null && StringUtils.hasText(grant.getAccessToken())) {
+                    metrics.recordTokenRenewal("refresh", true);
+                    return grant;
+                }
+            } catch (Exception e) {
+                log.warn("Refreshing the access token failed, re-authenticating: {}", e.getMessage());
+            }
+            metrics.recordTokenRenewal("refresh", false);
+        }
+        return authenticate();
+    }
+
+    private AccessGrant authenticate() throws Exception {
+        boolean success = false;
+        try {
+            final AccessGrant grant = source.authenticate();
+            success = grant != null && StringUtils.hasText(grant.getAccessToken());
+            return grant;
+        } finally {
+            metrics.recordTokenRenewal("authenticate", success);
+        }
+    }
+
+    private synchronized Token install(AccessGrant grant) {
+        if (grant == null || !StringUtils.hasText(grant.getAccessToken())) {
+            throw new IllegalStateException("No access token was returned by the server.");
+        }
+        final Instant now = Instant.now();
+        final Token installed = new Token(grant, now);
+        token = installed;
+        failure = null;
+        authenticated.complete(null);
+        if (installed.expiresAt != null) {
+            Duration lifetime = Duration.between(now, installed.expiresAt);
+            Duration delay = lifetime.compareTo(skew.multipliedBy(2)) > 0 ? lifetime.minus(skew) : lifetime.dividedBy(2);
+            schedule(delay);
+        }
+        return installed;
+    }
+
+    private void schedule(Duration delay) {
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+        }
+        if (!scheduler.isShutdown()) {
+            scheduledRefresh = scheduler.schedule(this::refreshInBackground, delay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void refreshInBackground() {
+        final Token current = token;
+        try {
+            renew(current);
+            log.debug(current == null ? "Authenticated" : "Access token renewed");
+        } catch (RuntimeException e) {
+            log.warn("{} failed, retrying in {}: {}", current == null ? "Authentication" : "Renewing the access token",
+                    retryDelay, e.getMessage());
+            synchronized (this) {
+                if (token == current) {
+                    schedule(retryDelay);
+                }
+            }
+        }
+    }
+
+    /** Stops background renewal. */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,16 @@
+package com.delinea.server.spring;
+
+import lombok.Data;
+
+/**
+ * Options for the bulk write methods of {@link SecretServer}, such as
+ * {@link SecretServer#updateSecrets(java.util.Map, WriteSecretsOptions)}.
+ */
+@Data
+public class WriteSecretsOptions {
+    /** The default maximum number of secrets written at the same time. */
+    public static final int DEFAULT_CONCURRENCY = 8;
+
+    /** The maximum number of secrets written at the same time. */
+    private int concurrency = DEFAULT_CONCURRENCY;
+}
@@ -0,0 +1,35 @@
+package com.delinea.server.spring.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** The download of one file attachment. */
+@Name("com.delinea.tss.AttachmentDownload")
+@Label("Attachment Download")
+@Category({ "Delinea", "Secret Server SDK" })
+@Description("File attachment read from Secret Server")
+@StackTrace(false)
+public final class AttachmentDownloadEvent extends Event {
+    @Label("Secret ID")
+    public int secretId;
+
+    @Label("Slug")
+    public String slug;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Status")
+    @Description("HTTP status of the last response, or 0 if none was received")
+    public int status;
+
+    @Label("Retries")
+    @Description("Requests sent again after a rejected access token, an I/O error or a transient status")
+    public int retries;
+}
@@ -0,0 +1,27 @@
+package com.delinea.server.spring.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Time spent waiting for a connection from the shared pool. */
+@Name("com.delinea.tss.ConnectionLease")
+@Label("Connection Lease")
+@Category({ "Delinea", "Secret Server SDK" })
+@Description("Wait for a pooled HTTP connection")
+@StackTrace(false)
+public final class ConnectionLeaseEvent extends Event {
+    @Label("Route")
+    public String route;
+
+    @Label("Leased")
+    @Description("Whether a connection was obtained before the lease timeout")
+    public boolean leased;
+
+    @Label("Pending")
+    @Description("Requests waiting for a connection on this route when the lease ended")
+    public int pending;
+}
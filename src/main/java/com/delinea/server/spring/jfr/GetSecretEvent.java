@@ -0,0 +1,44 @@
+package com.delinea.server.spring.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** A call to {@code SecretServer.getSecret}, whether or not it reached Secret Server. */
+@Name("com.delinea.tss.GetSecret")
+@Label("Get Secret")
+@Category({ "Delinea", "Secret Server SDK" })
+@Description("Secret read through SecretServer.getSecret")
+@StackTrace(false)
+public final class GetSecretEvent extends Event {
+    @Label("Secret ID")
+    public int secretId;
+
+    @Label("Fetch File Attachments")
+    public boolean fetchFileAttachments;
+
+    @Label("Cached")
+    @Description("Served from the secret cache without calling Secret Server")
+    public boolean cached;
+
+    @Label("Stale")
+    @Description("An expired cached copy served because Secret Server failed")
+    public boolean stale;
+
+    @Label("Status")
+    @Description("HTTP status of the last response, or 0 if none was received")
+    public int status;
+
+    @Label("Size")
+    @Description("Estimated heap size of the returned secret, including loaded attachments")
+    @DataAmount
+    public long bytes;
+
+    @Label("Retries")
+    @Description("Requests sent again after a rejected access token, an I/O error or a transient status")
+    public int retries;
+}
@@ -0,0 +1,30 @@
+package com.delinea.server.spring.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Authentication against the Delinea Platform and the vault lookup that follows. */
+@Name("com.delinea.tss.PlatformLogin")
+@Label("Platform Login")
+@Category({ "Delinea", "Secret Server SDK" })
+@Description("Token request and vault lookup on the Delinea Platform")
+@StackTrace(false)
+public final class PlatformLoginEvent extends Event {
+    @Label("Server URL")
+    public String serverUrl;
+
+    @Label("Vault Lookup")
+    @Description("Whether the vault URL was looked up rather than taken from the discovery cache")
+    public boolean vaultLookup;
+
+    @Label("Success")
+    public boolean success;
+
+    @Label("Status")
+    @Description("HTTP status of a rejected request, or 0")
+    public int status;
+}
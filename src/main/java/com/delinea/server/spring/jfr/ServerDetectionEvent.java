@@ -0,0 +1,27 @@
+package com.delinea.server.spring.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Detection of whether the server URL points to Secret Server or the Delinea Platform. */
+@Name("com.delinea.tss.ServerDetection")
+@Label("Server Detection")
+@Category({ "Delinea", "Secret Server SDK" })
+@Description("Health checks deciding between Secret Server and the Delinea Platform")
+@StackTrace(false)
+public final class ServerDetectionEvent extends Event {
+    @Label("Server URL")
+    public String serverUrl;
+
+    @Label("Server Type")
+    @Description("Platform, Secret Server, or unknown if neither health check succeeded")
+    public String serverType;
+
+    @Label("Cached")
+    @Description("Taken from the discovery cache without a health check")
+    public boolean cached;
+}
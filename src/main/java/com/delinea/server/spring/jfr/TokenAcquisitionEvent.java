@@ -0,0 +1,31 @@
+package com.delinea.server.spring.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** An attempt to obtain an access token, including server type detection. */
+@Name("com.delinea.tss.TokenAcquisition")
+@Label("Token Acquisition")
+@Category({ "Delinea", "Secret Server SDK" })
+@Description("Access token obtained or refreshed by the SDK")
+@StackTrace(false)
+public final class TokenAcquisitionEvent extends Event {
+    @Label("Grant")
+    @Description("password, client_credentials, platform or refresh_token")
+    public String grant;
+
+    @Label("Success")
+    public boolean success;
+
+    @Label("Status")
+    @Description("HTTP status of a rejected request, or 0")
+    public int status;
+
+    @Label("Retries")
+    @Description("Times the SDK client was registered again after its credentials were rejected")
+    public int retries;
+}
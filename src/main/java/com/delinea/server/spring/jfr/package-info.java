@@ -0,0 +1,12 @@
+/**
+ * Java Flight Recorder events emitted by the SDK.
+ *
+ * <p>The events are enabled by default and are cheap enough to leave on: none
+ * of them records a stack trace, and when no recording is running
+ * {@code begin()} and {@code commit()} do nothing. They appear under
+ * <em>Delinea / Secret Server SDK</em> in JDK Mission Control, next to GC, lock
+ * and socket events of the same thread.
+ *
+ * @see com.delinea.server.spring.SecretServer
+ */
+package com.delinea.server.spring.jfr;
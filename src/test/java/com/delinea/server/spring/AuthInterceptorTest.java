@@ -0,0 +1,123 @@
+package com.delinea.server.spring;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.InterceptingClientHttpRequestFactory;
+
+import com.delinea.server.spring.SecretServerFactoryBean.AccessGrant;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class AuthInterceptorTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final URI SECRET = URI.create("https://ss.example.com/SecretServer/api/v1/secrets/1");
+    private static final int CALLERS = 8;
+
+    private TokenManager manager;
+
+    @AfterEach
+    void closeManager() {
+        if (manager != null) {
+            manager.close();
+        }
+    }
+
+    /** Hands out {@code token-1}, {@code token-2}, ... and counts the authentications. */
+    private static final class CountingTokenSource implements TokenManager.TokenSource {
+        private final AtomicInteger authentications = new AtomicInteger();
+        private volatile boolean failing;
+
+        @Override
+        public AccessGrant authenticate() throws Exception {
+            final int n = authentications.incrementAndGet();
+            if (failing) {
+                throw new IllegalStateException("invalid credentials");
+            }
+            return MAPPER.readValue("{\"access_token\":\"token-" + n + "\",\"expires_in\":3600}", AccessGrant.class);
+        }
+
+        @Override
+        public AccessGrant refresh(String refreshToken) {
+            throw new IllegalStateException("no refresh token");
+        }
+    }
+
+    private static int get(ClientHttpRequestFactory factory) throws Exception {
+        try (ClientHttpResponse response = factory.createRequest(SECRET, HttpMethod.GET).execute()) {
+            return response.getStatusCode().value();
+        }
+    }
+
+    @Test
+    void concurrentUnauthorizedRequestsShareOneReauthentication() throws Exception {
+        final CountingTokenSource source = new CountingTokenSource();
+        manager = new TokenManager(source, Duration.ofSeconds(60));
+        manager.start();
+        final CountDownLatch rejected = new CountDownLatch(CALLERS);
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory().otherwise(request -> {
+            if ("Bearer token-2".equals(request.headers.getFirst(HttpHeaders.AUTHORIZATION))) {
+                return new StubClientHttpRequestFactory.Response(200);
+            }
+            // hold every rejection until all callers have been rejected with the first token
+            rejected.countDown();
+            try {
+                rejected.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new StubClientHttpRequestFactory.Response(401);
+        });
+        final ClientHttpRequestFactory factory = new InterceptingClientHttpRequestFactory(stub,
+                List.of(new AuthInterceptor(manager)));
+
+        final ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        try {
+            final List<Future<Integer>> statuses = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                statuses.add(callers.submit(() -> get(factory)));
+            }
+            for (Future<Integer> status : statuses) {
+                assertEquals(200, status.get(5, TimeUnit.SECONDS).intValue());
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(2, source.authentications.get());
+        assertEquals(2 * CALLERS, stub.count());
+        for (StubClientHttpRequestFactory.Sent request : stub.sent().subList(0, CALLERS)) {
+            assertEquals("Bearer token-1", request.headers.getFirst(HttpHeaders.AUTHORIZATION));
+        }
+    }
+
+    @Test
+    void unauthorizedResponseIsReturnedWhenReauthenticationFails() throws Exception {
+        final CountingTokenSource source = new CountingTokenSource();
+        manager = new TokenManager(source, Duration.ofSeconds(60));
+        manager.start();
+        source.failing = true;
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory().thenStatus(401);
+        final ClientHttpRequestFactory factory = new InterceptingClientHttpRequestFactory(stub,
+                List.of(new AuthInterceptor(manager)));
+
+        assertEquals(401, get(factory));
+        assertEquals(1, stub.count());
+        assertTrue(source.authentications.get() >= 2);
+    }
+}
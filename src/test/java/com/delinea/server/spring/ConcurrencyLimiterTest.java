@@ -0,0 +1,83 @@
+package com.delinea.server.spring;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class ConcurrencyLimiterTest {
+
+    private static final long MILLIS = 1_000_000L;
+
+    private static ConcurrencyLimiter limiter() {
+        final ConcurrencyLimiter.Settings settings = new ConcurrencyLimiter.Settings();
+        settings.setMaxWait(Duration.ZERO);
+        return new ConcurrencyLimiter(settings);
+    }
+
+    @Test
+    void limitStaysStableUnderSteadyMixedLatency() throws Exception {
+        final ConcurrencyLimiter limiter = limiter();
+        final long[] latencies = { 5 * MILLIS, 20 * MILLIS, 150 * MILLIS, 400 * MILLIS };
+        final Random random = new Random(42);
+
+        for (int i = 0; i < 5000; i++) {
+            limiter.release(limiter.acquire(), false, latencies[random.nextInt(latencies.length)]);
+        }
+        assertEquals(20, limiter.getLimit());
+    }
+
+    @Test
+    void limitShrinksOnOverload() throws Exception {
+        final ConcurrencyLimiter limiter = limiter();
+
+        for (int i = 0; i < 5; i++) {
+            limiter.release(limiter.acquire(), true, 10 * MILLIS);
+        }
+        assertTrue(limiter.getLimit() < 20, "limit " + limiter.getLimit());
+    }
+
+    @Test
+    void limitShrinksWhenResponsesSlowDownAndSettlesOnceTheBaselineCatchesUp() throws Exception {
+        final ConcurrencyLimiter limiter = limiter();
+        for (int i = 0; i < 1000; i++) {
+            limiter.release(limiter.acquire(), false, 10 * MILLIS);
+        }
+        assertEquals(20, limiter.getLimit());
+
+        for (int i = 0; i < 10; i++) {
+            limiter.release(limiter.acquire(), false, 100 * MILLIS);
+        }
+        assertTrue(limiter.getLimit() < 20, "limit " + limiter.getLimit());
+
+        for (int i = 0; i < 2000; i++) {
+            limiter.release(limiter.acquire(), false, 100 * MILLIS);
+        }
+        final int settled = limiter.getLimit();
+        for (int i = 0; i < 2000; i++) {
+            limiter.release(limiter.acquire(), false, 100 * MILLIS);
+        }
+        assertEquals(settled, limiter.getLimit());
+    }
+
+    @Test
+    void callersBeyondTheLimitAreTurnedAway() throws Exception {
+        final ConcurrencyLimiter.Settings settings = new ConcurrencyLimiter.Settings();
+        settings.setInitialLimit(2);
+        settings.setMaxWait(Duration.ZERO);
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(settings);
+
+        final ConcurrencyLimiter.Permit first = limiter.acquire();
+        final ConcurrencyLimiter.Permit second = limiter.acquire();
+        assertNull(limiter.acquire());
+        assertEquals(1, limiter.getRejectedCount());
+
+        limiter.release(first, false, MILLIS);
+        limiter.release(second, false, MILLIS);
+        assertEquals(0, limiter.getInFlight());
+    }
+}
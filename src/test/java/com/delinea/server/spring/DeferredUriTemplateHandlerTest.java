@@ -0,0 +1,117 @@
+package com.delinea.server.spring;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.InterceptingClientHttpRequestFactory;
+import org.springframework.web.client.ResourceAccessException;
+
+import com.delinea.server.spring.SecretServerFactoryBean.AccessGrant;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class DeferredUriTemplateHandlerTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String VAULT = "https://tenant.secretsvaultcloud.com/v1";
+
+    private TokenManager manager;
+
+    @AfterEach
+    void closeManager() {
+        if (manager != null) {
+            manager.close();
+        }
+    }
+
+    /**
+     * Waits for {@code release} before each authentication, then learns the vault
+     * URL along with the token, as a Delinea Platform login does.
+     */
+    private static final class PlatformTokenSource implements TokenManager.TokenSource {
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger authentications = new AtomicInteger();
+        private volatile boolean failing;
+        private volatile String vaultUrl;
+
+        @Override
+        public AccessGrant authenticate() throws Exception {
+            authentications.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+            if (failing) {
+                throw new IllegalStateException("invalid credentials");
+            }
+            vaultUrl = VAULT;
+            return MAPPER.readValue("{\"access_token\":\"token\",\"expires_in\":3600}", AccessGrant.class);
+        }
+
+        @Override
+        public AccessGrant refresh(String refreshToken) {
+            throw new IllegalStateException("no refresh token");
+        }
+    }
+
+    private SecretServer server(PlatformTokenSource source, StubClientHttpRequestFactory stub) {
+        final SecretServer server = new SecretServer();
+        server.setAutoComment("");
+        server.setUriTemplateHandler(new DeferredUriTemplateHandler(manager, () -> source.vaultUrl));
+        server.setRequestFactory(new InterceptingClientHttpRequestFactory(stub, List.of(new AuthInterceptor(manager))));
+        server.setTokenManager(manager);
+        return server;
+    }
+
+    @Test
+    void requestsWaitForTheDeferredAuthenticationAndGoToTheVaultUrl() throws Exception {
+        final PlatformTokenSource source = new PlatformTokenSource();
+        manager = new TokenManager(source, Duration.ofSeconds(60), Duration.ofMillis(50));
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory()
+                .otherwise(request -> StubClientHttpRequestFactory.Response.json(200, SecretServerTest.secretJson(1)));
+        final SecretServer server = server(source, stub);
+        manager.startDeferred();
+
+        assertEquals(AuthenticationState.PENDING, server.getAuthenticationState());
+        final CompletableFuture<Void> authenticated = server.whenAuthenticated();
+        final CompletableFuture<Secret> secret = CompletableFuture.supplyAsync(() -> server.getSecret(1));
+        Thread.sleep(100);
+        assertFalse(authenticated.isDone());
+        assertFalse(secret.isDone());
+        assertEquals(0, stub.count());
+
+        source.release.countDown();
+
+        assertEquals(1, secret.get(5, TimeUnit.SECONDS).getId());
+        authenticated.get(5, TimeUnit.SECONDS);
+        assertEquals(AuthenticationState.AUTHENTICATED, server.getAuthenticationState());
+        assertEquals(1, source.authentications.get());
+        final StubClientHttpRequestFactory.Sent sent = stub.sent().get(0);
+        assertEquals(VAULT + "/secrets/1", sent.uri.toString());
+        assertEquals("Bearer token", sent.headers.getFirst(HttpHeaders.AUTHORIZATION));
+    }
+
+    @Test
+    void failedAuthenticationIsReportedWithoutSendingTheRequest() {
+        final PlatformTokenSource source = new PlatformTokenSource();
+        source.failing = true;
+        source.release.countDown();
+        manager = new TokenManager(source, Duration.ofSeconds(60), Duration.ofMinutes(5));
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory();
+        final SecretServer server = server(source, stub);
+
+        final ResourceAccessException e = assertThrows(ResourceAccessException.class, () -> server.getSecret(1));
+
+        assertTrue(e.getMessage().contains("invalid credentials"), e.getMessage());
+        assertEquals(AuthenticationState.FAILED, server.getAuthenticationState());
+        assertFalse(server.whenAuthenticated().isDone());
+        assertEquals(0, stub.count());
+    }
+}
@@ -0,0 +1,77 @@
+package com.delinea.server.spring;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.hc.core5.pool.PoolStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StreamUtils;
+
+import com.sun.net.httpserver.HttpServer;
+
+class HttpTransportTest {
+    private HttpServer server;
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            final byte[] body = "{\"healthy\":true}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+
+    @Test
+    void poolIsSizedFromTheSettings() {
+        final HttpTransport.Settings settings = new HttpTransport.Settings();
+        settings.setMaxConnections(7);
+        settings.setMaxConnectionsPerRoute(3);
+        try (HttpTransport transport = new HttpTransport(settings)) {
+            assertEquals(7, transport.getConnectionManager().getMaxTotal());
+            assertEquals(3, transport.getConnectionManager().getDefaultMaxPerRoute());
+        }
+    }
+
+    @Test
+    void sequentialRequestsReuseOneKeptAliveConnection() throws Exception {
+        try (HttpTransport transport = new HttpTransport(new HttpTransport.Settings())) {
+            for (String path : new String[] { "/api/v1/healthcheck", "/oauth2/token", "/api/v1/secrets/1",
+                    "/api/v1/secrets/2" }) {
+                try (ClientHttpResponse response = transport.getRequestFactory().createRequest(uri(path),
+                        HttpMethod.GET).execute()) {
+                    assertEquals(200, response.getStatusCode().value());
+                    StreamUtils.drain(response.getBody());
+                }
+            }
+
+            assertEquals(1, clientPorts.size());
+            final PoolStats stats = transport.getConnectionManager().getTotalStats();
+            assertEquals(0, stats.getLeased());
+            assertEquals(1, stats.getAvailable());
+        }
+    }
+}
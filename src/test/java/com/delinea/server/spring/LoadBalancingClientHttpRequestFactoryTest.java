@@ -0,0 +1,170 @@
+package com.delinea.server.spring;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpResponse;
+
+import com.delinea.server.spring.LoadBalancer.Endpoint;
+
+class LoadBalancingClientHttpRequestFactoryTest {
+    private static final String NODE_1 = "https://ss1.example.com/SecretServer";
+    private static final String NODE_2 = "https://ss2.example.com/SecretServer";
+    private static final URI SECRET = URI.create(NODE_1 + "/api/v1/secrets/1");
+    private static final long MILLIS = 1_000_000L;
+
+    private static LoadBalancer loadBalancer(StubClientHttpRequestFactory stub, int unhealthyThreshold) {
+        return new LoadBalancer(List.of(NODE_1, NODE_2 + "/"), stub, unhealthyThreshold, 95, Duration.ofMillis(20));
+    }
+
+    private static int execute(LoadBalancingClientHttpRequestFactory factory, URI uri) throws IOException {
+        try (ClientHttpResponse response = factory.createRequest(uri, HttpMethod.GET).execute()) {
+            return response.getStatusCode().value();
+        }
+    }
+
+    private static void respond(LoadBalancer loadBalancer, Endpoint endpoint, int status, long nanos) {
+        loadBalancer.onStart(endpoint);
+        loadBalancer.onResponse(endpoint, status, nanos);
+    }
+
+    @Test
+    void requestsGoToTheFasterNodeAndOtherUrlsPassThrough() throws Exception {
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory()
+                .otherwise(request -> new StubClientHttpRequestFactory.Response(200));
+        final LoadBalancer loadBalancer = loadBalancer(stub, 3);
+        final List<Endpoint> endpoints = loadBalancer.getEndpoints();
+        respond(loadBalancer, endpoints.get(0), 200, 500 * MILLIS);
+        respond(loadBalancer, endpoints.get(1), 200, MILLIS);
+        final LoadBalancingClientHttpRequestFactory factory = new LoadBalancingClientHttpRequestFactory(stub,
+                loadBalancer, false);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(200, execute(factory, SECRET));
+        }
+        final URI vault = URI.create("https://tenant.secretsvaultcloud.com/api/v1/secrets/1");
+        assertEquals(200, execute(factory, vault));
+
+        final List<StubClientHttpRequestFactory.Sent> sent = stub.sent();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(URI.create(NODE_2 + "/api/v1/secrets/1"), sent.get(i).uri);
+        }
+        assertEquals(vault, sent.get(10).uri);
+    }
+
+    @Test
+    void failingNodesAreTakenOutUntilEveryNodeIsOut() {
+        final LoadBalancer loadBalancer = loadBalancer(new StubClientHttpRequestFactory(), 2);
+        final Endpoint first = loadBalancer.getEndpoints().get(0);
+        final Endpoint second = loadBalancer.getEndpoints().get(1);
+
+        respond(loadBalancer, first, 503, MILLIS);
+        assertTrue(first.isHealthy());
+        loadBalancer.onStart(first);
+        loadBalancer.onError(first, new IOException("connection refused"));
+        assertFalse(first.isHealthy());
+        assertEquals(1, loadBalancer.healthyCount());
+        for (int i = 0; i < 10; i++) {
+            assertSame(second, loadBalancer.choose(null));
+        }
+        assertSame(second, loadBalancer.choose(first));
+
+        respond(loadBalancer, second, 500, MILLIS);
+        respond(loadBalancer, second, 500, MILLIS);
+        assertEquals(0, loadBalancer.healthyCount());
+        assertSame(second, loadBalancer.choose(first));
+    }
+
+    @Test
+    void unreadableStatusClosesTheResponseAndCountsAsAnError() throws Exception {
+        final StubClientHttpRequestFactory.Response broken = new StubClientHttpRequestFactory.Response(200) {
+            @Override
+            public HttpStatusCode getStatusCode() throws IOException {
+                throw new IOException("malformed status line");
+            }
+        };
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory().then(request -> broken);
+        final LoadBalancer loadBalancer = loadBalancer(stub, 1);
+        final LoadBalancingClientHttpRequestFactory factory = new LoadBalancingClientHttpRequestFactory(stub,
+                loadBalancer, false);
+
+        assertThrows(IOException.class, () -> execute(factory, SECRET));
+        assertTrue(broken.closed);
+        final String node = stub.sent().get(0).uri.toString().startsWith(NODE_1) ? NODE_1 : NODE_2;
+        for (Endpoint endpoint : loadBalancer.getEndpoints()) {
+            assertEquals(!endpoint.getBaseUrl().equals(node), endpoint.isHealthy());
+        }
+    }
+
+    @Test
+    void slowGetIsHedgedToTheOtherNode() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        final StubClientHttpRequestFactory.Response slow = new StubClientHttpRequestFactory.Response(200);
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory().otherwise(request -> {
+            if (calls.getAndIncrement() == 0) {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return slow;
+            }
+            return new StubClientHttpRequestFactory.Response(204);
+        });
+        final LoadBalancer loadBalancer = loadBalancer(stub, 3);
+        for (int i = 0; i < 32; i++) {
+            respond(loadBalancer, loadBalancer.getEndpoints().get(i % 2), 200, MILLIS);
+        }
+        assertEquals(20 * MILLIS, loadBalancer.getHedgeDelayNanos());
+        final LoadBalancingClientHttpRequestFactory factory = new LoadBalancingClientHttpRequestFactory(stub,
+                loadBalancer, true);
+
+        assertEquals(204, execute(factory, SECRET));
+        assertEquals(1, loadBalancer.getHedgeCount());
+        final List<StubClientHttpRequestFactory.Sent> sent = stub.sent();
+        assertEquals(2, sent.size());
+        assertFalse(sent.get(0).uri.getHost().equals(sent.get(1).uri.getHost()));
+
+        // the late response is closed when it arrives
+        for (int i = 0; i < 100 && !slow.closed; i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(slow.closed);
+    }
+
+    @Test
+    void postsAreNeverHedged() throws Exception {
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory().otherwise(request -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new StubClientHttpRequestFactory.Response(200);
+        });
+        final LoadBalancer loadBalancer = loadBalancer(stub, 3);
+        for (int i = 0; i < 32; i++) {
+            respond(loadBalancer, loadBalancer.getEndpoints().get(i % 2), 200, MILLIS);
+        }
+        final LoadBalancingClientHttpRequestFactory factory = new LoadBalancingClientHttpRequestFactory(stub,
+                loadBalancer, true);
+
+        try (ClientHttpResponse response = factory.createRequest(SECRET, HttpMethod.POST).execute()) {
+            assertEquals(200, response.getStatusCode().value());
+        }
+        assertEquals(0, loadBalancer.getHedgeCount());
+        assertEquals(1, stub.count());
+    }
+}
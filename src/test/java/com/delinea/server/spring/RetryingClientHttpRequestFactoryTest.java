@@ -0,0 +1,191 @@
+package com.delinea.server.spring;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+class RetryingClientHttpRequestFactoryTest {
+    private static final URI SECRET = URI.create("https://ss.example.com/SecretServer/api/v1/secrets/1");
+
+    private static RetryingClientHttpRequestFactory.Settings settings() {
+        final RetryingClientHttpRequestFactory.Settings settings = new RetryingClientHttpRequestFactory.Settings();
+        settings.setInitialBackoff(Duration.ofMillis(1));
+        settings.setMaxBackoff(Duration.ofMillis(10));
+        return settings;
+    }
+
+    private static RetryingClientHttpRequestFactory factory(StubClientHttpRequestFactory stub, RetryBudget budget,
+            CircuitBreaker circuitBreaker) {
+        return new RetryingClientHttpRequestFactory(stub, settings(), budget, circuitBreaker, SdkMetrics.NOOP);
+    }
+
+    private static RetryingClientHttpRequestFactory factory(StubClientHttpRequestFactory stub) {
+        return factory(stub, new RetryBudget(0.1, 10), null);
+    }
+
+    private static int execute(ClientHttpRequestFactory factory, HttpMethod method) throws IOException {
+        try (ClientHttpResponse response = factory.createRequest(SECRET, method).execute()) {
+            return response.getStatusCode().value();
+        }
+    }
+
+    @Test
+    void idempotentRequestsAreRetriedOnTransientStatus() throws Exception {
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory().thenStatus(503).thenStatus(200);
+
+        assertEquals(200, execute(factory(stub), HttpMethod.GET));
+        assertEquals(2, stub.count());
+    }
+
+    @Test
+    void nonIdempotentRequestsAreNotRetried() throws Exception {
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory().thenStatus(503)
+                .thenFail("connection reset");
+        final RetryingClientHttpRequestFactory factory = factory(stub);
+
+        assertEquals(503, execute(factory, HttpMethod.POST));
+        assertThrows(IOException.class, () -> execute(factory, HttpMethod.PUT));
+        assertEquals(2, stub.count());
+    }
+
+    @Test
+    void retryAfterLongerThanTheMaximumBackoffIsReturnedAsIs() throws Exception {
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory()
+                .thenStatus(429, HttpHeaders.RETRY_AFTER, "60")
+                .thenStatus(429, HttpHeaders.RETRY_AFTER, "0").thenStatus(200);
+        final RetryingClientHttpRequestFactory factory = factory(stub);
+
+        assertEquals(429, execute(factory, HttpMethod.GET));
+        assertEquals(1, stub.count());
+        assertEquals(200, execute(factory, HttpMethod.GET));
+        assertEquals(3, stub.count());
+    }
+
+    @Test
+    void exhaustedBudgetStopsRetries() throws Exception {
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory();
+        for (int i = 0; i < 4; i++) {
+            stub.thenStatus(503);
+        }
+        final RetryingClientHttpRequestFactory factory = factory(stub, new RetryBudget(0, 0), null);
+
+        // the budget holds a single retry and is never refilled
+        assertEquals(503, execute(factory, HttpMethod.GET));
+        assertEquals(2, stub.count());
+        assertEquals(503, execute(factory, HttpMethod.GET));
+        assertEquals(3, stub.count());
+    }
+
+    @Test
+    void halfOpenBreakerLetsASingleTrialThrough() throws Exception {
+        final CircuitBreaker breaker = new CircuitBreaker(1, Duration.ofMillis(20));
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+
+        Thread.sleep(40);
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void trialThatThrowsLetsTheNextTrialThrough() throws Exception {
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory()
+                .thenFail("connection refused")
+                .then(request -> {
+                    throw new IllegalStateException("no access token");
+                })
+                .thenStatus(200);
+        final CircuitBreaker breaker = new CircuitBreaker(1, Duration.ofMillis(20));
+        final RetryingClientHttpRequestFactory.Settings settings = settings();
+        settings.setMaxRetries(0);
+        final RetryingClientHttpRequestFactory factory = new RetryingClientHttpRequestFactory(stub, settings,
+                new RetryBudget(0.1, 10), breaker, SdkMetrics.NOOP);
+
+        assertThrows(IOException.class, () -> execute(factory, HttpMethod.GET));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        Thread.sleep(40);
+        assertThrows(IllegalStateException.class, () -> execute(factory, HttpMethod.GET));
+        assertEquals(200, execute(factory, HttpMethod.GET));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(3, stub.count());
+    }
+
+    @Test
+    void attemptsTakeTheirOwnPermitAndAFullLimitDoesNotTripTheBreaker() throws Exception {
+        final ConcurrencyLimiter.Settings limiterSettings = new ConcurrencyLimiter.Settings();
+        limiterSettings.setInitialLimit(1);
+        limiterSettings.setMaxLimit(1);
+        limiterSettings.setMaxWait(Duration.ZERO);
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(limiterSettings);
+        final int[] inFlight = new int[2];
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory()
+                .then(request -> {
+                    inFlight[0] = limiter.getInFlight();
+                    return new StubClientHttpRequestFactory.Response(503);
+                })
+                .then(request -> {
+                    inFlight[1] = limiter.getInFlight();
+                    return new StubClientHttpRequestFactory.Response(200);
+                });
+        final CircuitBreaker breaker = new CircuitBreaker(2, Duration.ofMinutes(1));
+        final ClientHttpRequestFactory limited = new RetryingClientHttpRequestFactory(
+                new ConcurrencyLimitingClientHttpRequestFactory(stub, limiter), settings(), new RetryBudget(0.1, 10),
+                breaker, SdkMetrics.NOOP);
+
+        assertEquals(200, execute(limited, HttpMethod.GET));
+        assertEquals(1, inFlight[0]);
+        assertEquals(1, inFlight[1]);
+        assertEquals(0, limiter.getInFlight());
+
+        final ConcurrencyLimiter.Permit held = limiter.acquire();
+        assertThrows(ConcurrencyLimitingClientHttpRequestFactory.LimitReachedException.class,
+                () -> execute(limited, HttpMethod.GET));
+        limiter.release(held, false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(2, stub.count());
+    }
+
+    @Test
+    void breakerOpeningBeforeARetryKeepsTheLastOutcome() throws Exception {
+        final CircuitBreaker breaker = new CircuitBreaker(1, Duration.ofMinutes(1));
+        final StubClientHttpRequestFactory.Response unavailable = new StubClientHttpRequestFactory.Response(503);
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory()
+                .then(request -> unavailable)
+                .thenFail("connection reset");
+        final RetryingClientHttpRequestFactory factory = factory(stub, new RetryBudget(0.1, 10), breaker);
+
+        // the 503 opens the breaker, so the retry is not sent and the 503 is returned
+        try (ClientHttpResponse response = factory.createRequest(SECRET, HttpMethod.GET).execute()) {
+            assertSame(unavailable, response);
+            assertFalse(unavailable.closed);
+        }
+        assertEquals(1, stub.count());
+
+        final CircuitBreaker ioBreaker = new CircuitBreaker(1, Duration.ofMinutes(1));
+        final RetryingClientHttpRequestFactory ioFactory = factory(stub, new RetryBudget(0.1, 10), ioBreaker);
+        final IOException error = assertThrows(IOException.class, () -> execute(ioFactory, HttpMethod.GET));
+        assertEquals("connection reset", error.getMessage());
+        assertEquals(1, error.getSuppressed().length);
+        assertEquals(2, stub.count());
+    }
+}
@@ -0,0 +1,106 @@
+package com.delinea.server.spring;
+
+import static com.delinea.server.spring.SecretCacheTest.password;
+import static com.delinea.server.spring.SecretCacheTest.secret;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+class SecretCacheSnapshotTest {
+    private static final byte[] KEY = new byte[16];
+
+    @TempDir
+    Path directory;
+
+    private static SecretCache cache() {
+        return new SecretCache(Duration.ofMinutes(5), 100, 1024 * 1024);
+    }
+
+    private SecretCacheSnapshot snapshot() {
+        return snapshot(null);
+    }
+
+    private SecretCacheSnapshot snapshot(Duration maxAge) {
+        return new SecretCacheSnapshot(directory.resolve("cache.bin"), KEY, Duration.ofHours(1), 1024, maxAge);
+    }
+
+    private void save(int... ids) throws Exception {
+        final SecretCache cache = cache();
+        for (int id : ids) {
+            cache.put(id, false, secret(id, "password-" + id));
+        }
+        final SecretCacheSnapshot writer = snapshot();
+        writer.restore(cache);
+        writer.save();
+    }
+
+    /** Answers every refresh with the status registered for the secret. */
+    private static final class StubSecretServer extends SecretServer {
+        private final Map<Integer, HttpStatus> statuses;
+        private final Set<Integer> refreshed = ConcurrentHashMap.newKeySet();
+
+        private StubSecretServer(Map<Integer, HttpStatus> statuses) {
+            this.statuses = statuses;
+        }
+
+        @Override
+        Secret refresh(int id, boolean fetchFileAttachments) {
+            refreshed.add(id);
+            throw HttpClientErrorException.create(statuses.get(id), "", null, null, null);
+        }
+    }
+
+    @Test
+    void revalidationDropsOnlyDeletedOrForbiddenSecrets() throws Exception {
+        save(1, 2, 3, 4);
+
+        final SecretCache cache = cache();
+        final SecretCacheSnapshot snapshot = snapshot();
+        assertEquals(4, snapshot.restore(cache));
+        final StubSecretServer server = new StubSecretServer(Map.of(1, HttpStatus.FORBIDDEN, 2, HttpStatus.NOT_FOUND,
+                3, HttpStatus.TOO_MANY_REQUESTS, 4, HttpStatus.UNAUTHORIZED));
+        snapshot.start(server);
+        final long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (server.refreshed.size() < 4 && deadline - System.nanoTime() > 0) {
+            Thread.sleep(10);
+        }
+        snapshot.close();
+
+        assertEquals(4, server.refreshed.size());
+        assertNull(cache.getStale(1, false));
+        assertNull(cache.getStale(2, false));
+        assertEquals("password-3", password(cache.getStale(3, false)));
+        assertEquals("password-4", password(cache.getStale(4, false)));
+    }
+
+    @Test
+    void restoredSecretsAreServedOnlyAsStaleCopies() throws Exception {
+        save(1);
+
+        final SecretCache cache = cache();
+        assertEquals(1, snapshot().restore(cache));
+        assertNull(cache.get(1, false));
+        assertEquals("password-1", password(cache.getStale(1, false)));
+    }
+
+    @Test
+    void snapshotOlderThanTheMaximumAgeIsIgnored() throws Exception {
+        save(1);
+        Thread.sleep(20);
+
+        final SecretCache cache = cache();
+        assertEquals(0, snapshot(Duration.ofMillis(10)).restore(cache));
+        assertNull(cache.getStale(1, false));
+        assertEquals(1, snapshot(Duration.ofHours(1)).restore(cache));
+    }
+}
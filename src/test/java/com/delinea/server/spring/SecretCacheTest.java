@@ -0,0 +1,167 @@
+package com.delinea.server.spring;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class SecretCacheTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static Secret secret(int id, String password) throws JsonProcessingException {
+        return MAPPER.readValue("{\"id\":" + id + ",\"name\":\"secret-" + id + "\",\"items\":["
+                + "{\"itemId\":1,\"slug\":\"username\",\"itemValue\":\"user-" + id + "\"},"
+                + "{\"itemId\":2,\"slug\":\"password\",\"itemValue\":\"" + password + "\"}]}", Secret.class);
+    }
+
+    static String password(Secret secret) {
+        return secret.getFields().stream().filter(field -> "password".equals(field.getSlug())).findFirst()
+                .orElseThrow().getValue();
+    }
+
+    private static SecretCache offHeapCache(int maxEntries) {
+        return new SecretCache(Duration.ofMinutes(5), maxEntries, 1024 * 1024, true);
+    }
+
+    @Test
+    void offHeapSecretHeldByCallerSurvivesReplaceAndInvalidate() throws Exception {
+        final SecretCache cache = offHeapCache(10);
+        final Secret fetched = secret(1, "first");
+        cache.put(1, false, fetched);
+        final Secret held = cache.get(1, false);
+        assertNotNull(held);
+        assertNotSame(fetched, held);
+
+        cache.put(1, false, secret(1, "second"));
+        assertEquals("first", password(held));
+        assertEquals("first", password(fetched));
+        assertEquals("second", password(cache.get(1, false)));
+
+        cache.invalidate(1);
+        assertEquals("first", password(held));
+        assertArrayEquals("first".toCharArray(), held.getFields().get(1).getValueChars());
+    }
+
+    @Test
+    void offHeapSecretHeldByCallerSurvivesEviction() throws Exception {
+        final SecretCache cache = offHeapCache(1);
+        cache.put(1, false, secret(1, "one"));
+        final Secret held = cache.get(1, false);
+
+        cache.put(2, false, secret(2, "two"));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals("one", password(held));
+    }
+
+    @Test
+    void closingOneInstanceLeavesTheOthersReadable() throws Exception {
+        final SecretCache cache = offHeapCache(10);
+        cache.put(1, false, secret(1, "pw"));
+        final Secret first = cache.get(1, false);
+        final Secret second = cache.get(1, false);
+
+        first.close();
+        assertThrows(IllegalStateException.class, () -> password(first));
+        assertEquals("pw", password(second));
+        assertEquals("pw", password(cache.get(1, false)));
+    }
+
+    @Test
+    void offHeapValuesAreWipedOnceEveryInstanceIsClosed() throws Exception {
+        final SecretCache cache = offHeapCache(10);
+        final Secret fetched = secret(1, "pw");
+        cache.put(1, false, fetched);
+        final Secret held = cache.get(1, false);
+        final Secret other = cache.get(1, false);
+
+        cache.invalidate(1);
+        fetched.close();
+        held.close();
+        assertEquals("pw", password(other));
+        other.close();
+        assertTrue(other.isWiped());
+        assertThrows(IllegalStateException.class, () -> password(other));
+    }
+
+    @Test
+    void invalidateRemovesOnlyTheRequestedCopy() throws Exception {
+        final SecretCache cache = offHeapCache(10);
+        cache.put(1, true, secret(1, "with-attachments"));
+        cache.put(1, false, secret(1, "without"));
+
+        cache.invalidate(1, true);
+        assertNull(cache.get(1, true));
+        assertEquals("without", password(cache.get(1, false)));
+    }
+
+    @Test
+    void entriesExpireAfterTheTtl() throws Exception {
+        final SecretCache cache = new SecretCache(Duration.ofMillis(50), 10, 1024 * 1024);
+        cache.put(1, false, secret(1, "pw"));
+        assertNotNull(cache.get(1, false));
+
+        Thread.sleep(100);
+        assertNull(cache.get(1, false));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvictedFirst() throws Exception {
+        final SecretCache cache = new SecretCache(Duration.ofMinutes(5), 2, 1024 * 1024);
+        cache.put(1, false, secret(1, "one"));
+        cache.put(2, false, secret(2, "two"));
+        assertNotNull(cache.get(1, false));
+
+        cache.put(3, false, secret(3, "three"));
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.getStale(2, false));
+        assertEquals("one", password(cache.get(1, false)));
+        assertEquals("three", password(cache.get(3, false)));
+    }
+
+    @Test
+    void byteBudgetEvictsTheOldestEntries() throws Exception {
+        final long weight = SecretCache.estimateSize(secret(1, "pw"));
+        final SecretCache cache = new SecretCache(Duration.ofMinutes(5), 10, weight * 5 / 2);
+        cache.put(1, false, secret(1, "pw"));
+        cache.put(2, false, secret(2, "pw"));
+        assertEquals(2 * weight, cache.getEstimatedBytes());
+
+        cache.put(3, false, secret(3, "pw"));
+        assertEquals(2, cache.size());
+        assertEquals(2 * weight, cache.getEstimatedBytes());
+        assertNull(cache.getStale(1, false));
+
+        cache.put(4, false, secret(4, "x".repeat((int) weight * 2)));
+        assertNull(cache.getStale(4, false));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void staleReadsReturnExpiredEntriesUntilTheyAreRemoved() throws Exception {
+        final SecretCache cache = new SecretCache(Duration.ofMillis(50), 10, 1024 * 1024);
+        cache.put(1, false, secret(1, "pw"));
+
+        Thread.sleep(100);
+        assertNull(cache.get(1, false));
+        assertEquals("pw", password(cache.getStale(1, false)));
+
+        cache.put(1, false, secret(1, "fresh"));
+        assertEquals("fresh", password(cache.get(1, false)));
+
+        cache.invalidate(1);
+        assertNull(cache.getStale(1, false));
+    }
+}
@@ -0,0 +1,114 @@
+package com.delinea.server.spring;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+class SecretSearchTest {
+    private static final Pattern SKIP = Pattern.compile("[?&]skip=(\\d+)");
+    private static final Pattern TAKE = Pattern.compile("[?&]take=(\\d+)");
+
+    /**
+     * Answers searches over {@code total} secrets with IDs 1 to {@code total},
+     * honoring {@code take} and {@code skip}.
+     */
+    private static StubClientHttpRequestFactory.Exchange secrets(int total) {
+        return request -> {
+            final int skip = parameter(SKIP, request.path());
+            final int take = parameter(TAKE, request.path());
+            final StringBuilder json = new StringBuilder("{\"skip\":" + skip + ",\"records\":[");
+            for (int id = skip + 1; id <= Math.min(total, skip + take); id++) {
+                json.append(id > skip + 1 ? "," : "").append("{\"id\":").append(id)
+                        .append(",\"name\":\"secret-").append(id).append("\",\"folderId\":3,\"active\":true}");
+            }
+            json.append("],\"hasNext\":").append(skip + take < total)
+                    .append(",\"sortBy\":[{\"name\":\"name\",\"direction\":\"asc\"}]}");
+            return StubClientHttpRequestFactory.Response.json(200, json.toString());
+        };
+    }
+
+    private static int parameter(Pattern pattern, String path) {
+        final Matcher matcher = pattern.matcher(path);
+        assertTrue(matcher.find(), path);
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    private static SearchSecretsOptions options(int pageSize) {
+        final SearchSecretsOptions options = new SearchSecretsOptions();
+        options.setPageSize(pageSize);
+        return options;
+    }
+
+    @Test
+    void searchWalksEveryPageWithTheEncodedFilters() {
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory().otherwise(secrets(5));
+        final SearchSecretsOptions options = options(2);
+        options.setFolderId(3);
+        options.setSearchText("db & cache");
+
+        final List<Integer> ids;
+        try (Stream<SecretSummary> results = SecretServerTest.server(stub).searchSecrets(options)) {
+            ids = results.map(SecretSummary::getId).collect(Collectors.toList());
+        }
+
+        assertEquals(List.of(1, 2, 3, 4, 5), ids);
+        final List<StubClientHttpRequestFactory.Sent> sent = stub.sent();
+        assertEquals(3, sent.size());
+        for (int page = 0; page < 3; page++) {
+            final String path = sent.get(page).path();
+            assertEquals(2 * page, parameter(SKIP, path));
+            assertTrue(path.contains("filter.folderId=3"), path);
+            assertTrue(path.contains("filter.includeSubFolders=false"), path);
+            assertTrue(path.contains("filter.searchText=db%20%26%20cache"), path);
+        }
+    }
+
+    @Test
+    void pagesAreRequestedAsTheStreamIsReadWithOnePagePrefetched() throws Exception {
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory().otherwise(secrets(100));
+
+        try (Stream<SecretSummary> results = SecretServerTest.server(stub).searchSecrets(options(10))) {
+            assertEquals(0, stub.count());
+            final Iterator<SecretSummary> iterator = results.iterator();
+            assertEquals(1, iterator.next().getId());
+
+            // the second page is fetched in the background while the first is read
+            for (int i = 0; i < 100 && stub.count() < 2; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, stub.count());
+            for (int id = 2; id <= 10; id++) {
+                assertEquals(id, iterator.next().getId());
+            }
+            Thread.sleep(50);
+            assertEquals(2, stub.count());
+
+            assertEquals(11, iterator.next().getId());
+        }
+        Thread.sleep(50);
+        // closing the stream discards the prefetched third page and requests no more
+        assertTrue(stub.count() <= 3, "requests " + stub.count());
+    }
+
+    @Test
+    void emptyPageEndsTheSearch() {
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory()
+                .then(request -> StubClientHttpRequestFactory.Response.json(200,
+                        "{\"records\":[{\"id\":1,\"name\":\"only\"}],\"hasNext\":true}"))
+                .then(request -> StubClientHttpRequestFactory.Response.json(200,
+                        "{\"records\":[],\"hasNext\":true}"));
+
+        try (Stream<SecretSummary> results = SecretServerTest.server(stub).searchSecrets(options(1))) {
+            assertEquals(1, results.count());
+        }
+        assertEquals(2, stub.count());
+    }
+}
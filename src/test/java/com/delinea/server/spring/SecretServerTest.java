@@ -0,0 +1,398 @@
+package com.delinea.server.spring;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+class SecretServerTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String API = "http://ss.example.com/SecretServer/api/v1";
+
+    static SecretServer server(StubClientHttpRequestFactory stub) {
+        final SecretServer server = new SecretServer();
+        server.setAutoComment("");
+        server.setUriTemplateHandler(new DefaultUriBuilderFactory(API));
+        server.setRequestFactory(stub);
+        return server;
+    }
+
+    static String secretJson(int id, String... attachmentSlugs) {
+        final StringBuilder json = new StringBuilder("{\"id\":" + id + ",\"name\":\"secret-" + id + "\",\"items\":["
+                + "{\"itemId\":1,\"slug\":\"username\",\"itemValue\":\"user-" + id + "\",\"fileAttachmentId\":0},"
+                + "{\"itemId\":2,\"slug\":\"password\",\"itemValue\":\"password-" + id + "\",\"fileAttachmentId\":0}");
+        for (int i = 0; i < attachmentSlugs.length; i++) {
+            json.append(",{\"itemId\":").append(3 + i).append(",\"slug\":\"").append(attachmentSlugs[i])
+                    .append("\",\"itemValue\":\"*** Not Valid For Display ***\",\"fileAttachmentId\":")
+                    .append(100 + i).append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    /** Answers {@code GET /secrets/{id}} with a secret, or 404 for the given IDs. */
+    private static StubClientHttpRequestFactory.Exchange secrets(int... missing) {
+        return request -> {
+            final int id = Integer.parseInt(request.uri.getPath().replaceFirst(".*/secrets/", ""));
+            for (int m : missing) {
+                if (m == id) {
+                    return StubClientHttpRequestFactory.Response.json(404, "{\"message\":\"Not found\"}");
+                }
+            }
+            return StubClientHttpRequestFactory.Response.json(200, secretJson(id));
+        };
+    }
+
+    /**
+     * Answers {@code GET /secrets/{id}} with a secret holding the given file
+     * attachments, and each attachment with its slug in upper case, after a
+     * short delay. Records the peak number of attachment downloads at once.
+     */
+    private static StubClientHttpRequestFactory.Exchange secretWithAttachments(AtomicInteger peak,
+            String... slugs) {
+        final AtomicInteger running = new AtomicInteger();
+        return request -> {
+            final String path = request.uri.getPath();
+            if (!path.contains("/fields/")) {
+                return StubClientHttpRequestFactory.Response.json(200, secretJson(1, slugs));
+            }
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(30);
+                final String slug = path.substring(path.lastIndexOf('/') + 1);
+                return StubClientHttpRequestFactory.Response.bytes(200,
+                        slug.toUpperCase().getBytes(StandardCharsets.UTF_8));
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            } finally {
+                running.decrementAndGet();
+            }
+        };
+    }
+
+    private static String value(Secret secret, String slug) {
+        return secret.getFields().stream().filter(field -> slug.equals(field.getSlug())).findFirst().orElseThrow()
+                .getValue();
+    }
+
+    @Test
+    void fileAttachmentsAreFetchedConcurrentlyUpToTheLimit() {
+        final AtomicInteger peak = new AtomicInteger();
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory()
+                .otherwise(secretWithAttachments(peak, "cert", "key", "keytab", "config"));
+        final SecretServer server = server(stub);
+        server.setAttachmentConcurrency(2);
+
+        final Secret secret = server.getSecret(1);
+
+        assertEquals("CERT", value(secret, "cert"));
+        assertEquals("KEY", value(secret, "key"));
+        assertEquals("KEYTAB", value(secret, "keytab"));
+        assertEquals("CONFIG", value(secret, "config"));
+        assertEquals("password-1", value(secret, "password"));
+        assertEquals(5, stub.count());
+        assertEquals(2, peak.get());
+    }
+
+    @Test
+    void lazyFileAttachmentsAreFetchedOnFirstRead() {
+        final AtomicInteger peak = new AtomicInteger();
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory()
+                .otherwise(secretWithAttachments(peak, "cert", "key"));
+        final SecretServer server = server(stub);
+        server.setLazyFileAttachments(true);
+
+        final Secret secret = server.getSecret(1);
+        assertEquals(1, stub.count());
+        assertTrue(secret.hasDeferredContent());
+
+        assertEquals("KEY", value(secret, "key"));
+        assertEquals("KEY", value(secret, "key"));
+        assertEquals(2, stub.count());
+        assertEquals("/SecretServer/api/v1/secrets/1/fields/key", stub.sent().get(1).uri.getPath());
+        assertEquals("CERT", value(secret, "cert"));
+        assertEquals(3, stub.count());
+    }
+
+    @Test
+    void getSecretsKeepsTheOrderOfTheIdsAndReportsErrorsPerId() {
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory().otherwise(secrets(3));
+        final SecretServer server = server(stub);
+
+        final List<SecretResult> results = server.getSecrets(List.of(5, 3, 1, 5));
+
+        assertEquals(4, results.size());
+        assertEquals(5, results.get(0).getId());
+        assertEquals("password-5", SecretCacheTest.password(results.get(0).getSecret()));
+        assertEquals(3, results.get(1).getId());
+        assertFalse(results.get(1).isSuccess());
+        assertNull(results.get(1).getSecret());
+        assertTrue(results.get(1).getError() instanceof HttpClientErrorException.NotFound);
+        assertEquals("password-1", SecretCacheTest.password(results.get(2).getSecret()));
+        // a repeated ID is fetched once and reported at every position
+        assertSame(results.get(0), results.get(3));
+        assertEquals(3, stub.count());
+    }
+
+    @Test
+    void getSecretsFetchesAtMostTheConfiguredNumberAtOnce() {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+        final StubClientHttpRequestFactory.Exchange secrets = secrets();
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory().otherwise(request -> {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+                return secrets.execute(request);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+        final GetSecretsOptions options = new GetSecretsOptions();
+        options.setConcurrency(3);
+        options.setFetchFileAttachments(false);
+
+        final List<SecretResult> results = server(stub).getSecrets(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10),
+                options);
+
+        assertEquals(10, results.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i + 1, results.get(i).getId());
+            assertTrue(results.get(i).isSuccess());
+        }
+        assertTrue(peak.get() <= 3, "peak " + peak.get());
+        assertTrue(peak.get() > 1, "peak " + peak.get());
+    }
+
+    /** Answers {@code GET /secrets/{id}/fields/{slug}} with the JSON or raw body given for each slug. */
+    private static StubClientHttpRequestFactory.Exchange fields(Map<String, String> json, Map<String, String> raw) {
+        return request -> {
+            final String path = request.uri.getPath();
+            final String slug = path.substring(path.lastIndexOf('/') + 1);
+            if (json.containsKey(slug)) {
+                return StubClientHttpRequestFactory.Response.json(200, json.get(slug));
+            }
+            if (raw.containsKey(slug)) {
+                return StubClientHttpRequestFactory.Response.bytes(200, raw.get(slug).getBytes(StandardCharsets.UTF_8));
+            }
+            return StubClientHttpRequestFactory.Response.json(404, "{\"message\":\"Not found\"}");
+        };
+    }
+
+    @Test
+    void getSecretFieldParsesJsonScalarsAndReadsAttachmentsAsIs() {
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory().otherwise(fields(
+                Map.of("password", "\"p\\\"ss\\u00e9\"", "port", "5432", "notes", "null"),
+                Map.of("config", "{\"raw\": true}")));
+        final SecretServer server = server(stub);
+
+        assertEquals("p\"ss\u00e9", server.getSecretField(7, "password"));
+        assertEquals("5432", server.getSecretField(7, "port"));
+        assertNull(server.getSecretField(7, "notes"));
+        assertEquals("{\"raw\": true}", server.getSecretField(7, "config"));
+        assertEquals("/SecretServer/api/v1/secrets/7/fields/password", stub.sent().get(0).uri.getPath());
+        assertThrows(HttpClientErrorException.NotFound.class, () -> server.getSecretField(7, "missing"));
+    }
+
+    @Test
+    void getSecretFieldsReturnsEachSlugOnceInOrder() {
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory().otherwise(fields(
+                Map.of("username", "\"admin\"", "password", "\"secret\""), Map.of()));
+
+        final Map<String, String> values = server(stub).getSecretFields(7, "password", "username", "password");
+
+        assertEquals(List.of("password", "username"), new ArrayList<>(values.keySet()));
+        assertEquals("secret", values.get("password"));
+        assertEquals("admin", values.get("username"));
+        assertEquals(2, stub.count());
+    }
+
+    @Test
+    void getSecretFieldIsServedFromALiveCachedSecret() throws Exception {
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory()
+                .otherwise(fields(Map.of("password", "\"fresh\""), Map.of()));
+        final SecretServer server = server(stub);
+        final SecretCache cache = new SecretCache(Duration.ofMinutes(5), 10, 1024 * 1024, false);
+        cache.put(7, false, SecretCacheTest.secret(7, "cached"));
+        server.setSecretCache(cache);
+
+        assertEquals("cached", server.getSecretField(7, "password"));
+        assertEquals(0, stub.count());
+        assertEquals("fresh", server.getSecretField(8, "password"));
+        assertEquals(1, stub.count());
+    }
+
+    @Test
+    void concurrentGetSecretCallsForOneIdShareOneFetch() throws Exception {
+        final int callers = 8;
+        final CountDownLatch release = new CountDownLatch(1);
+        final StubClientHttpRequestFactory.Exchange secrets = secrets(2);
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory().otherwise(request -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return secrets.execute(request);
+        });
+        final SecretServer server = server(stub);
+
+        final ExecutorService pool = Executors.newFixedThreadPool(2 * callers);
+        try {
+            final List<Future<String>> found = new ArrayList<>();
+            final List<Future<RuntimeException>> missing = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                found.add(pool.submit(() -> SecretCacheTest.password(server.getSecret(1, false))));
+                missing.add(pool.submit(() -> {
+                    try {
+                        server.getSecret(2, false);
+                        return null;
+                    } catch (RuntimeException e) {
+                        return e;
+                    }
+                }));
+            }
+            // release the two fetches once every other caller is waiting for them
+            for (int i = 0; i < 500 && server.getCoalescedCount() < 2 * (callers - 1); i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(2 * (callers - 1), server.getCoalescedCount());
+            release.countDown();
+
+            for (int i = 0; i < callers; i++) {
+                assertEquals("password-1", found.get(i).get(5, TimeUnit.SECONDS));
+                assertTrue(missing.get(i).get(5, TimeUnit.SECONDS) instanceof HttpClientErrorException.NotFound);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(2, server.getFetchCount());
+        assertEquals(2, stub.count());
+
+        // a finished fetch is not shared with later calls
+        server.getSecret(1, false);
+        server.getSecret(1, true);
+        assertEquals(4, server.getFetchCount());
+        assertEquals(2 * (callers - 1), server.getCoalescedCount());
+    }
+
+    private static final String AUTO_COMMENT = "Rotated by SDK";
+
+    @Test
+    void updateSecretsPutsEachFieldWithTheAutoCommentAndReportsErrorsPerSecret() throws Exception {
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory().otherwise(request -> {
+            final int status = request.uri.getPath().contains("/secrets/2/") ? 404 : 200;
+            return StubClientHttpRequestFactory.Response.json(status, status == 200 ? "\"ok\"" : "{}");
+        });
+        final SecretServer server = server(stub);
+        server.setAutoComment(AUTO_COMMENT);
+        final SecretCache cache = new SecretCache(Duration.ofMinutes(5), 10, 1024 * 1024, false);
+        cache.put(1, false, SecretCacheTest.secret(1, "old"));
+        server.setSecretCache(cache);
+        final Map<Integer, Map<String, String>> updates = new LinkedHashMap<>();
+        updates.put(3, Map.of("password", "new-3"));
+        updates.put(2, Map.of("password", "new-2"));
+        final Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("username", "admin");
+        fields.put("password", "new \"1\"");
+        updates.put(1, fields);
+
+        final List<SecretResult> results = server.updateSecrets(updates);
+
+        assertEquals(List.of(3, 2, 1), results.stream().map(SecretResult::getId).collect(Collectors.toList()));
+        assertTrue(results.get(0).isSuccess());
+        assertTrue(results.get(1).getError() instanceof HttpClientErrorException.NotFound);
+        assertTrue(results.get(2).isSuccess());
+        assertNull(cache.get(1, false));
+
+        final List<StubClientHttpRequestFactory.Sent> sent = stub.sent();
+        assertEquals(4, sent.size());
+        final List<String> secretOne = new ArrayList<>();
+        for (StubClientHttpRequestFactory.Sent request : sent) {
+            assertEquals(HttpMethod.PUT, request.method);
+            assertEquals("autoComment=" + AUTO_COMMENT, request.uri.getQuery());
+            if (request.uri.getPath().contains("/secrets/1/")) {
+                secretOne.add(request.uri.getPath().replaceFirst(".*/fields/", "") + "="
+                        + MAPPER.readTree(request.body).path("value").asText());
+            }
+        }
+        // the fields of one secret are updated in order
+        assertEquals(List.of("username=admin", "password=new \"1\""), secretOne);
+    }
+
+    @Test
+    void createSecretsFetchesEachStubOnceAndPostsTheFilledInStubs() throws Exception {
+        final String stubJson = "{\"name\":null,\"folderId\":-1,\"secretTemplateId\":6,\"items\":["
+                + "{\"slug\":\"username\",\"itemValue\":null},{\"slug\":\"password\",\"itemValue\":null}]}";
+        final AtomicInteger nextId = new AtomicInteger(100);
+        final StubClientHttpRequestFactory stub = new StubClientHttpRequestFactory().otherwise(request -> {
+            if (request.method == HttpMethod.GET) {
+                return StubClientHttpRequestFactory.Response.json(200, stubJson);
+            }
+            final ObjectNode body = (ObjectNode) MAPPER.readTree(request.body);
+            body.put("id", nextId.getAndIncrement());
+            return StubClientHttpRequestFactory.Response.json(200, body.toString());
+        });
+        final SecretServer server = server(stub);
+        server.setAutoComment(AUTO_COMMENT);
+
+        final NewSecret first = newSecret(6, 3, "db-1", "username", "app");
+        final NewSecret second = newSecret(6, 3, "db-2", "password", "s3cret");
+        final NewSecret invalid = newSecret(6, 3, "db-3", "hostname", "db.example.com");
+        final List<SecretResult> results = server.createSecrets(List.of(first, second, invalid));
+
+        assertEquals(3, results.size());
+        assertEquals("db-1", results.get(0).getSecret().getName());
+        assertEquals("app", value(results.get(0).getSecret(), "username"));
+        assertEquals(3, results.get(0).getSecret().getFolderId());
+        assertEquals("s3cret", value(results.get(1).getSecret(), "password"));
+        assertTrue(results.get(0).getId() >= 100 && results.get(1).getId() >= 100);
+        assertEquals(0, results.get(2).getId());
+        assertTrue(results.get(2).getError() instanceof IllegalArgumentException);
+
+        final List<StubClientHttpRequestFactory.Sent> sent = stub.sent();
+        assertEquals(3, sent.size());
+        assertEquals(HttpMethod.GET, sent.get(0).method);
+        assertEquals("/SecretServer/api/v1/secrets/stub", sent.get(0).uri.getPath());
+        assertEquals("filter.secretTemplateId=6&filter.folderId=3", sent.get(0).uri.getQuery());
+        for (StubClientHttpRequestFactory.Sent request : sent.subList(1, 3)) {
+            assertEquals(HttpMethod.POST, request.method);
+            assertEquals("/SecretServer/api/v1/secrets", request.uri.getPath());
+            assertEquals("autoComment=" + AUTO_COMMENT, request.uri.getQuery());
+        }
+    }
+
+    private static NewSecret newSecret(int templateId, int folderId, String name, String slug, String value) {
+        final NewSecret secret = new NewSecret();
+        secret.setSecretTemplateId(templateId);
+        secret.setFolderId(folderId);
+        secret.setName(name);
+        secret.getFields().put(slug, value);
+        return secret;
+    }
+}
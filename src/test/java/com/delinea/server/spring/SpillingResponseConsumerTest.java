@@ -0,0 +1,79 @@
+package com.delinea.server.spring;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.junit.jupiter.api.Test;
+
+class SpillingResponseConsumerTest {
+    private static byte[] bytes(int length) {
+        final byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) 'x');
+        return bytes;
+    }
+
+    private static byte[] read(FieldContent content) throws IOException {
+        try (InputStream in = content.openStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static long spilledFiles() throws IOException {
+        try (Stream<Path> files = Files.list(Paths.get(System.getProperty("java.io.tmpdir")))) {
+            return files.filter(file -> file.getFileName().toString().startsWith("tss-attachment-")).count();
+        }
+    }
+
+    private static SpillingResponseConsumer.Result consume(SpillingResponseConsumer consumer, byte[]... chunks)
+            throws IOException {
+        consumer.start(new BasicHttpResponse(200), ContentType.APPLICATION_OCTET_STREAM);
+        for (int i = 0; i < chunks.length; i++) {
+            consumer.data(ByteBuffer.wrap(chunks[i]), i == chunks.length - 1);
+        }
+        return consumer.buildResult();
+    }
+
+    @Test
+    void bodyWithinTheThresholdStaysInMemory() throws Exception {
+        final SpillingResponseConsumer.Result result = consume(new SpillingResponseConsumer(100), bytes(60),
+                bytes(40));
+
+        assertTrue(result.getContent() instanceof FieldContent.InMemory);
+        assertEquals(100, result.getContent().size());
+        assertArrayEquals(bytes(100), read(result.getContent()));
+    }
+
+    @Test
+    void bodyBeyondTheThresholdIsWrittenToAFile() throws Exception {
+        final SpillingResponseConsumer.Result result = consume(new SpillingResponseConsumer(100), bytes(60),
+                bytes(60), bytes(1000));
+
+        assertTrue(result.getContent() instanceof FieldContent.Spilled);
+        assertEquals(1120, result.getContent().size());
+        assertArrayEquals(bytes(1120), read(result.getContent()));
+    }
+
+    @Test
+    void abandonedResponseDeletesItsFile() throws Exception {
+        final long before = spilledFiles();
+        final SpillingResponseConsumer consumer = new SpillingResponseConsumer(10);
+        consumer.start(new BasicHttpResponse(200), ContentType.APPLICATION_OCTET_STREAM);
+        consumer.data(ByteBuffer.wrap(bytes(100)), false);
+        assertEquals(before + 1, spilledFiles());
+
+        consumer.releaseResources();
+        assertEquals(before, spilledFiles());
+    }
+}
@@ -0,0 +1,207 @@
+package com.delinea.server.spring;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Answers requests without a server: with the queued exchanges, one per
+ * request, and once they run out with the handler. Every request sent is
+ * recorded. Safe to use from several threads.
+ */
+class StubClientHttpRequestFactory implements ClientHttpRequestFactory {
+
+    /** The outcome of one exchange: a response or an exception. */
+    interface Exchange {
+        ClientHttpResponse execute(Sent request) throws IOException;
+    }
+
+    /** A request as it was sent. */
+    static final class Sent {
+        final URI uri;
+        final HttpMethod method;
+        final HttpHeaders headers;
+        final byte[] body;
+
+        private Sent(URI uri, HttpMethod method, HttpHeaders headers, byte[] body) {
+            this.uri = uri;
+            this.method = method;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        /** @return the path and query, relative to the host */
+        String path() {
+            return uri.getRawQuery() == null ? uri.getRawPath() : uri.getRawPath() + "?" + uri.getRawQuery();
+        }
+
+        String bodyAsString() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String toString() {
+            return method + " " + uri;
+        }
+    }
+
+    /** A canned response that remembers whether it was closed. */
+    static class Response implements ClientHttpResponse {
+        private final int status;
+        private final HttpHeaders headers = new HttpHeaders();
+        private byte[] body = new byte[0];
+        volatile boolean closed;
+
+        Response(int status, String... headers) {
+            this.status = status;
+            for (int i = 0; i < headers.length; i += 2) {
+                this.headers.add(headers[i], headers[i + 1]);
+            }
+        }
+
+        /** @return a response with a JSON body */
+        static Response json(int status, String json) {
+            final Response response = new Response(status, HttpHeaders.CONTENT_TYPE,
+                    MediaType.APPLICATION_JSON_VALUE);
+            response.body = json.getBytes(StandardCharsets.UTF_8);
+            return response;
+        }
+
+        /** @return a response with a binary body */
+        static Response bytes(int status, byte[] body) {
+            final Response response = new Response(status, HttpHeaders.CONTENT_TYPE,
+                    MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            response.body = body;
+            return response;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return HttpStatusCode.valueOf(status);
+        }
+
+        @Override
+        public String getStatusText() {
+            return "";
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+
+    private final Deque<Exchange> exchanges = new ArrayDeque<>();
+    private final List<Sent> sent = new ArrayList<>();
+    private volatile Exchange handler = request -> {
+        throw new AssertionError("Unexpected request " + request);
+    };
+
+    /** Queues the outcome of the next request. */
+    synchronized StubClientHttpRequestFactory then(Exchange exchange) {
+        exchanges.add(exchange);
+        return this;
+    }
+
+    /** Queues a response without a body. */
+    StubClientHttpRequestFactory thenStatus(int status, String... headers) {
+        return then(request -> new Response(status, headers));
+    }
+
+    /** Queues an I/O error. */
+    StubClientHttpRequestFactory thenFail(String message) {
+        return then(request -> {
+            throw new IOException(message);
+        });
+    }
+
+    /** Answers the requests that find the queue empty. */
+    StubClientHttpRequestFactory otherwise(Exchange handler) {
+        this.handler = handler;
+        return this;
+    }
+
+    /** @return the requests sent so far, in order */
+    synchronized List<Sent> sent() {
+        return new ArrayList<>(sent);
+    }
+
+    /** @return the number of requests sent so far */
+    synchronized int count() {
+        return sent.size();
+    }
+
+    private synchronized Exchange next(Sent request) {
+        sent.add(request);
+        return exchanges.isEmpty() ? handler : exchanges.remove();
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) {
+        return new ClientHttpRequest() {
+            private final HttpHeaders headers = new HttpHeaders();
+            private final Map<String, Object> attributes = new LinkedHashMap<>();
+            private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+            @Override
+            public ClientHttpResponse execute() throws IOException {
+                final Sent request = new Sent(uri, httpMethod, HttpHeaders.readOnlyHttpHeaders(headers),
+                        body.toByteArray());
+                return next(request).execute(request);
+            }
+
+            @Override
+            public OutputStream getBody() {
+                return body;
+            }
+
+            @Override
+            public HttpMethod getMethod() {
+                return httpMethod;
+            }
+
+            @Override
+            public URI getURI() {
+                return uri;
+            }
+
+            @Override
+            public Map<String, Object> getAttributes() {
+                return attributes;
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+        };
+    }
+}
@@ -0,0 +1,171 @@
+package com.delinea.server.spring;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.delinea.server.spring.SecretServerFactoryBean.AccessGrant;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class TokenManagerTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Duration SKEW = Duration.ofSeconds(60);
+
+    private TokenManager manager;
+
+    @AfterEach
+    void closeManager() {
+        if (manager != null) {
+            manager.close();
+        }
+    }
+
+    private static AccessGrant grant(String accessToken, String refreshToken, int expiresIn) throws Exception {
+        return MAPPER.readValue("{\"access_token\":\"" + accessToken + "\",\"refresh_token\":"
+                + (refreshToken != null ? "\"" + refreshToken + "\"" : "null") + ",\"expires_in\":" + expiresIn
+                + "}", AccessGrant.class);
+    }
+
+    /** Counts the calls of each grant and answers them with the given handlers. */
+    private static final class StubTokenSource implements TokenManager.TokenSource {
+        private final AtomicInteger authentications = new AtomicInteger();
+        private final AtomicInteger refreshes = new AtomicInteger();
+        private volatile GrantSupplier onAuthenticate;
+        private volatile GrantSupplier onRefresh = () -> {
+            throw new IllegalStateException("refresh token rejected");
+        };
+
+        @Override
+        public AccessGrant authenticate() throws Exception {
+            authentications.incrementAndGet();
+            return onAuthenticate.get();
+        }
+
+        @Override
+        public AccessGrant refresh(String refreshToken) throws Exception {
+            refreshes.incrementAndGet();
+            return onRefresh.get();
+        }
+    }
+
+    private interface GrantSupplier {
+        AccessGrant get() throws Exception;
+    }
+
+    @Test
+    void concurrentRenewalsAuthenticateOnce() throws Exception {
+        final StubTokenSource source = new StubTokenSource();
+        final CountDownLatch release = new CountDownLatch(1);
+        source.onAuthenticate = () -> {
+            release.await(5, TimeUnit.SECONDS);
+            return grant("token", null, 3600);
+        };
+        manager = new TokenManager(source, SKEW);
+
+        final ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<TokenManager.Token>> tokens = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                tokens.add(callers.submit(manager::getToken));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<TokenManager.Token> token : tokens) {
+                token.get(5, TimeUnit.SECONDS);
+            }
+            for (Future<TokenManager.Token> token : tokens) {
+                assertSame(manager.peekToken(), token.get());
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(1, source.authentications.get());
+    }
+
+    @Test
+    void rejectedRefreshTokenFallsBackToAuthentication() throws Exception {
+        final StubTokenSource source = new StubTokenSource();
+        source.onAuthenticate = () -> grant("token-" + source.authentications.get(), "refresh", 3600);
+        manager = new TokenManager(source, SKEW);
+        manager.start();
+        final TokenManager.Token first = manager.peekToken();
+
+        final TokenManager.Token second = manager.renew(first);
+        assertEquals(1, source.refreshes.get());
+        assertEquals(2, source.authentications.get());
+        assertEquals("token-2", second.getAccessToken());
+
+        source.onRefresh = () -> grant("refreshed", "refresh", 3600);
+        assertEquals("refreshed", manager.renew(second).getAccessToken());
+        assertEquals(2, source.authentications.get());
+
+        // a stale token is not renewed again
+        assertSame(manager.peekToken(), manager.renew(second));
+        assertEquals(2, source.refreshes.get());
+    }
+
+    @Test
+    void renewalIsScheduledTheSkewBeforeExpiry() throws Exception {
+        final StubTokenSource source = new StubTokenSource();
+        source.onAuthenticate = () -> grant("token", null, 3600);
+        manager = new TokenManager(source, SKEW);
+        manager.start();
+
+        final Duration delay = manager.getNextRenewalDelay();
+        assertTrue(delay.compareTo(Duration.ofSeconds(3538)) > 0 && delay.compareTo(Duration.ofSeconds(3540)) <= 0,
+                "delay " + delay);
+    }
+
+    @Test
+    void shortLivedTokenIsRenewedHalfwayThroughItsLifetime() throws Exception {
+        final StubTokenSource source = new StubTokenSource();
+        source.onAuthenticate = () -> grant("token", null, 100);
+        manager = new TokenManager(source, SKEW);
+        manager.start();
+
+        final Duration delay = manager.getNextRenewalDelay();
+        assertTrue(delay.compareTo(Duration.ofSeconds(48)) > 0 && delay.compareTo(Duration.ofSeconds(50)) <= 0,
+                "delay " + delay);
+    }
+
+    @Test
+    void deferredAuthenticationRetriesInTheBackground() throws Exception {
+        final StubTokenSource source = new StubTokenSource();
+        final List<AuthenticationState> statesSeen = new ArrayList<>();
+        source.onAuthenticate = () -> {
+            synchronized (statesSeen) {
+                statesSeen.add(manager.getState());
+            }
+            if (source.authentications.get() == 1) {
+                throw new IllegalStateException("Secret Server is unreachable");
+            }
+            return grant("token", null, 3600);
+        };
+        manager = new TokenManager(source, SKEW, Duration.ofMillis(50));
+        manager.startDeferred();
+
+        manager.whenAuthenticated().get(5, TimeUnit.SECONDS);
+        assertEquals(AuthenticationState.AUTHENTICATED, manager.getState());
+        assertNull(manager.getFailure());
+        assertEquals(2, source.authentications.get());
+        synchronized (statesSeen) {
+            assertEquals(List.of(AuthenticationState.PENDING, AuthenticationState.FAILED), statesSeen);
+        }
+        assertNotNull(manager.getNextRenewalDelay());
+    }
+}